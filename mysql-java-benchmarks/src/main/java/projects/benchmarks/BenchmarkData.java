@@ -0,0 +1,92 @@
+package projects.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+// Embedded database and synthetic data shared by the benchmarks. The DAO layer is pointed at an in-memory H2 database
+// in MySQL mode through -Dprojects.db.url, and the schema is loaded from the application's projects-schema.sql.
+public class BenchmarkData {
+	public static final String URL = "jdbc:h2:mem:projects;MODE=MySQL;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE";
+
+	private static final String SCHEMA_RESOURCE = "/projects-schema.sql";
+
+
+
+	// resetDatabase method to point the DAO layer at the embedded database and (re)create every table empty
+	public static void resetDatabase() throws SQLException, IOException {
+		System.setProperty("projects.db.url", URL);
+
+		String schema;
+
+		try (InputStream in = BenchmarkData.class.getResourceAsStream(SCHEMA_RESOURCE)) {
+			schema = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+
+		try (Connection conn = DriverManager.getConnection(URL); Statement stmt = conn.createStatement()) {
+			for (String sql : schema.split(";")) {
+				if (!sql.isBlank()) {
+					stmt.execute(sql);
+				}
+			}
+
+			stmt.execute("INSERT INTO category (category_name) VALUES ('Doors and Windows'), ('Repairs'), ('Gardening')");
+		}
+	}
+
+
+
+	// project method to build an unsaved project with the given number of materials and steps and one category
+	public static Project project(int index, int childCount) {
+		Project project = new Project();
+
+		project.setProjectName("Project " + index);
+		project.setEstimatedHours(new BigDecimal("12.50"));
+		project.setActualHours(new BigDecimal("14.25"));
+		project.setDifficulty(1 + index % 5);
+		project.setNotes("Benchmark project number " + index);
+
+		for (int child = 0; child < childCount; child++) {
+			Material material = new Material();
+			material.setMaterialName("Material " + child);
+			material.setNumRequired(child + 1);
+			material.setCost(new BigDecimal("3.99"));
+			project.getMaterials().add(material);
+
+			Step step = new Step();
+			step.setStepText("Step " + child + " of project " + index);
+			project.getSteps().add(step);
+		}
+
+		Category category = new Category();
+		category.setCategoryId(1 + index % 3);
+		category.setCategoryName("Category " + category.getCategoryId());
+		project.getCategories().add(category);
+
+		return project;
+	}
+
+
+
+	public static List<Project> projects(int count, int childCount) {
+		List<Project> projects = new ArrayList<>(count);
+
+		for (int index = 0; index < count; index++) {
+			projects.add(project(index, childCount));
+		}
+
+		return projects;
+	}
+}
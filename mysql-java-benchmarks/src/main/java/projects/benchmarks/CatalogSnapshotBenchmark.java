@@ -0,0 +1,83 @@
+package projects.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import projects.entity.Project;
+import projects.snapshot.CatalogSnapshot;
+import projects.snapshot.SnapshotWriter;
+
+// Start-up and lookup cost of a memory-mapped snapshot of projectCount projects with ten materials and ten steps each:
+// mapping the file and checking its header, which is all a restart waits for, and decoding one project by ID.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogSnapshotBenchmark {
+	@Param({ "10000", "200000" })
+	private int projectCount;
+
+	private Path directory;
+	private Path file;
+	private CatalogSnapshot snapshot;
+
+
+
+	@Setup
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("projects-snapshot");
+		file = directory.resolve("projects.snapshot");
+
+		try (SnapshotWriter writer = new SnapshotWriter(file, System.currentTimeMillis())) {
+			for (int index = 0; index < projectCount; index++) {
+				Project project = BenchmarkData.project(index, 10);
+				project.setProjectId(index + 1);
+				writer.write(project);
+			}
+
+			writer.finish();
+		}
+
+		snapshot = CatalogSnapshot.open(file);
+	}
+
+
+
+	@TearDown
+	public void tearDown() throws IOException {
+		snapshot = null;
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(directory);
+	}
+
+
+
+	@Benchmark
+	public CatalogSnapshot open() {
+		return CatalogSnapshot.open(file);
+	}
+
+	@Benchmark
+	public Optional<Project> findProject() {
+		return snapshot.find(1 + ThreadLocalRandom.current().nextInt(projectCount));
+	}
+}
@@ -0,0 +1,88 @@
+package projects.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import projects.analytics.HoursRollup;
+import projects.analytics.ProjectAnalytics;
+import projects.analytics.ProjectTotal;
+
+// Cost of the columnar reports over a snapshot of projectCount projects with materialCount materials between them.
+// Every invocation uses a fresh snapshot, so the per-project material cost is recomputed each time.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectAnalyticsBenchmark {
+	@Param({ "10000", "100000" })
+	private int projectCount;
+
+	@Param({ "100000", "1000000" })
+	private int materialCount;
+
+	private ProjectAnalytics.Builder builder;
+
+
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		builder = new ProjectAnalytics.Builder();
+
+		for (int id = 1; id <= projectCount; id++) {
+			builder.addProject(id, "Project " + id, random.nextInt(10_000), random.nextInt(10_000), 1 + random.nextInt(5));
+		}
+
+		for (int i = 0; i < materialCount; i++) {
+			builder.addMaterial(1 + random.nextInt(projectCount), random.nextInt(5_000) * (1 + random.nextInt(4)));
+		}
+
+		for (int id = 1; id <= projectCount; id++) {
+			builder.addCategoryLink(id, 1 + id % 8);
+		}
+	}
+
+
+
+	@Benchmark
+	public BigDecimal totalMaterialCost() {
+		return builder.build().totalMaterialCost();
+	}
+
+	@Benchmark
+	public Map<Integer, BigDecimal> materialCostByCategory() {
+		return builder.build().materialCostByCategory();
+	}
+
+	@Benchmark
+	public List<ProjectTotal> topProjectsByMaterialCost() {
+		return builder.build().topProjectsByMaterialCost(10);
+	}
+
+	@Benchmark
+	public HoursRollup hoursRollup() {
+		return builder.build().hoursRollup();
+	}
+
+	@Benchmark
+	public long[] difficultyDistribution() {
+		return builder.build().difficultyDistribution();
+	}
+}
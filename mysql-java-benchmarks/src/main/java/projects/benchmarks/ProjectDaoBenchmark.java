@@ -0,0 +1,122 @@
+package projects.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import projects.dao.DbConnection;
+import projects.dao.ProjectDao;
+import projects.entity.Project;
+
+// End-to-end ProjectDao operations against an in-memory H2 database seeded with projectCount projects, each with
+// childCount materials and steps. These measure the JDBC and mapping work in the DAO, not network latency, so compare
+// results across commits rather than with a production MySQL server.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectDaoBenchmark {
+	@Param({ "100", "10000" })
+	private int projectCount;
+
+	@Param({ "5" })
+	private int childCount;
+
+	private ProjectDao projectDao;
+	private List<Integer> projectIds;
+	private List<Integer> someProjectIds;
+
+
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		BenchmarkData.resetDatabase();
+
+		projectDao = new ProjectDao();
+		projectIds = new ArrayList<>(projectCount);
+
+		for (Project project : projectDao.insertProjects(BenchmarkData.projects(projectCount, childCount))) {
+			projectIds.add(project.getProjectId());
+		}
+
+		someProjectIds = projectIds.subList(0, Math.min(50, projectIds.size()));
+	}
+
+
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		DbConnection.shutdown();
+	}
+
+
+
+	@Benchmark
+	public Optional<Project> fetchProjectById() {
+		return projectDao.fetchProjectById(randomProjectId());
+	}
+
+
+
+	@Benchmark
+	public List<Project> fetchProjectsByIds() {
+		return projectDao.fetchProjectsByIds(someProjectIds);
+	}
+
+
+
+	@Benchmark
+	public List<Project> fetchAllProjects() {
+		return projectDao.fetchAllProjects();
+	}
+
+
+
+	@Benchmark
+	public boolean modifyProjectDetails() {
+		Project project = new Project();
+
+		project.setProjectId(randomProjectId());
+		project.setProjectName("Modified project");
+		project.setEstimatedHours(new BigDecimal("8.00"));
+		project.setActualHours(new BigDecimal("9.00"));
+		project.setDifficulty(2);
+		project.setNotes("Modified by the benchmark");
+
+		return projectDao.modifyProjectDetails(project);
+	}
+
+
+
+	// insertAndDeleteProject benchmark; deleting the new project keeps the dataset at projectCount between invocations
+	@Benchmark
+	public boolean insertAndDeleteProject() {
+		Project project = projectDao.insertProject(BenchmarkData.project(projectCount, 0));
+		return projectDao.deleteProject(project.getProjectId());
+	}
+
+
+
+	private Integer randomProjectId() {
+		return projectIds.get(ThreadLocalRandom.current().nextInt(projectIds.size()));
+	}
+}
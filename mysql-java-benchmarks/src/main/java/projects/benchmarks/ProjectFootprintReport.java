@@ -0,0 +1,99 @@
+package projects.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import projects.entity.CompactProject;
+import projects.entity.Material;
+import projects.entity.NameDictionary;
+import projects.entity.Project;
+import projects.entity.Step;
+
+// Measured heap bytes per project of a working set of loaded aggregates, as Project objects and as CompactProjects
+// sharing one NameDictionary. Not a JMH benchmark: it fills a list, forces garbage collection and reads the used heap
+// before and after, so run it on its own JVM with a fixed heap, e.g.
+//
+//   java -Xms2g -Xmx2g -cp mysql-java-benchmarks/target/benchmarks.jar projects.benchmarks.ProjectFootprintReport 20000 10
+//
+// The arguments are the number of projects and the number of materials and steps per project. The projects look as
+// if loaded from the database: every row has its IDs and each name is its own String, as a JDBC driver returns it.
+public class ProjectFootprintReport {
+	public static void main(String[] args) {
+		int projectCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+		int childCount = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		System.out.println(projectCount + " projects with " + childCount + " materials and " + childCount + " steps each");
+
+		long before = usedHeap();
+		List<Project> projects = new ArrayList<>(projectCount);
+
+		for (int index = 0; index < projectCount; index++) {
+			projects.add(loadedProject(index, childCount));
+		}
+
+		long projectBytes = usedHeap() - before;
+		report("Project", projectBytes, projectCount);
+
+		projects = null;
+		before = usedHeap();
+
+		NameDictionary dictionary = new NameDictionary();
+		List<CompactProject> compactProjects = new ArrayList<>(projectCount);
+
+		for (int index = 0; index < projectCount; index++) {
+			compactProjects.add(CompactProject.of(loadedProject(index, childCount), dictionary));
+		}
+
+		long compactBytes = usedHeap() - before;
+		report("CompactProject", compactBytes, compactProjects.size());
+
+		System.out.printf("%-16s %d distinct names%n", "NameDictionary", dictionary.size());
+		System.out.printf("%-16s %.2fx smaller%n", "Ratio", (double) projectBytes / compactBytes);
+	}
+
+
+
+	// loadedProject method to give a benchmark project the IDs and version a project loaded from the database has
+	private static Project loadedProject(int index, int childCount) {
+		Project project = BenchmarkData.project(index, childCount);
+		int projectId = index + 1;
+		int childId = index * childCount;
+
+		project.setProjectId(projectId);
+		project.setVersion(0);
+		project.clearChangedColumns();
+
+		for (Material material : project.getMaterials()) {
+			material.setMaterialId(++childId);
+			material.setProjectId(projectId);
+		}
+
+		int stepOrder = 0;
+
+		for (Step step : project.getSteps()) {
+			step.setStepId(childId + ++stepOrder);
+			step.setProjectId(projectId);
+			step.setStepOrder(stepOrder);
+		}
+
+		return project;
+	}
+
+
+
+	private static void report(String label, long bytes, int projectCount) {
+		System.out.printf("%-16s %,d bytes, %,d bytes per project%n", label, bytes, bytes / projectCount);
+	}
+
+
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
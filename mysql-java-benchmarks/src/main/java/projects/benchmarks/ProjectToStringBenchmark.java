@@ -0,0 +1,59 @@
+package projects.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import projects.entity.Project;
+import projects.entity.ProjectRenderer;
+
+// Cost of rendering a project aggregate as text: into a String, and streamed into a buffered Writer as the console does
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectToStringBenchmark {
+	// Number of materials and of steps on the project
+	@Param({ "0", "10", "100", "1000" })
+	private int childCount;
+
+	private Project project;
+	private Writer writer;
+
+
+
+	@Setup
+	public void setUp() {
+		project = BenchmarkData.project(1, childCount);
+		writer = new BufferedWriter(Writer.nullWriter(), 1 << 16);
+	}
+
+
+
+	@Benchmark
+	public String projectToString() {
+		return project.toString();
+	}
+
+	@Benchmark
+	public Writer renderDetails() throws IOException {
+		ProjectRenderer.renderDetails(project, writer);
+		writer.flush();
+		return writer;
+	}
+}
@@ -0,0 +1,119 @@
+package provided.util;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import projects.benchmarks.BenchmarkData;
+import projects.dao.DbConnection;
+import projects.dao.ProjectDao;
+import projects.entity.Project;
+
+/**
+ * Benchmarks for the row mapping and parameter binding helpers in {@link DaoBase}. This class lives in the
+ * {@code provided.util} package so it can reach the protected and package-private helpers directly.
+ * 
+ * <p>The mapping benchmarks read a scrollable, fully materialized result set of {@code rows} projects, so they measure
+ * the mapping and not the query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaoBaseBenchmark {
+  private static final String[] FIELD_NAMES =
+      {"projectId", "projectName", "estimatedHours", "actualHours", "difficulty", "notes"};
+
+  @Param({"1", "100", "10000"})
+  private int rows;
+
+  private final DaoBase dao = new DaoBase() {};
+
+  private Connection conn;
+  private Statement query;
+  private ResultSet projects;
+  private PreparedStatement bind;
+
+  @Setup
+  public void setUp() throws Exception {
+    BenchmarkData.resetDatabase();
+    new ProjectDao().insertProjects(BenchmarkData.projects(rows, 0));
+
+    conn = DriverManager.getConnection(BenchmarkData.URL);
+    query = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+    projects = query.executeQuery("SELECT * FROM project");
+    bind = conn.prepareStatement("SELECT ?, ?, ?, ?, ?");
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    conn.close();
+    DbConnection.shutdown();
+  }
+
+  /**
+   * Maps every row with {@link DaoBase#extract(ResultSet, Class)}, once per row as the original DAO code did.
+   */
+  @Benchmark
+  public void extract(Blackhole blackhole) throws SQLException {
+    projects.beforeFirst();
+
+    while (projects.next()) {
+      blackhole.consume(dao.extract(projects, Project.class));
+    }
+  }
+
+  /**
+   * Maps every row with one {@link RowMapper} obtained up front, as the batched loaders do.
+   */
+  @Benchmark
+  public void rowMapper(Blackhole blackhole) throws SQLException {
+    projects.beforeFirst();
+    RowMapper<Project> mapper = dao.rowMapper(projects, Project.class);
+
+    while (projects.next()) {
+      blackhole.consume(mapper.map(projects));
+    }
+  }
+
+  @Benchmark
+  public void camelCaseToSnakeCase(Blackhole blackhole) {
+    for (String fieldName : FIELD_NAMES) {
+      blackhole.consume(DaoBase.camelCaseToSnakeCase(fieldName));
+    }
+  }
+
+  /**
+   * Binds one value of each type the DAOs use, plus a null.
+   */
+  @Benchmark
+  public PreparedStatement setParameter() throws SQLException {
+    dao.setParameter(bind, 1, 42, Integer.class);
+    dao.setParameter(bind, 2, "Hang a door", String.class);
+    dao.setParameter(bind, 3, new BigDecimal("12.50"), BigDecimal.class);
+    dao.setParameter(bind, 4, null, Integer.class);
+    dao.setParameter(bind, 5, 2.5, Double.class);
+    return bind;
+  }
+}
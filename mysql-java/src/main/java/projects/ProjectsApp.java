@@ -1,12 +1,20 @@
 package projects;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Objects;
 import java.util.Scanner;
 
+import projects.dao.DbConnection;
+import projects.dao.ProjectPage;
 import projects.entity.Project;
+import projects.entity.ProjectRenderer;
 import projects.exception.DbException;
+import projects.exception.StaleProjectException;
+import projects.search.SearchResult;
 import projects.service.ProjectService;
 
 public class ProjectsApp {
@@ -18,7 +26,9 @@ public class ProjectsApp {
 			"2) List projects",
 			"3) Select available project",
 			"4) Update a Project",
-			"5) Delete a Project"
+			"5) Delete a Project",
+			"6) Browse projects page by page",
+			"7) Search projects"
 			);
 			// @formatter:on
 
@@ -30,14 +40,26 @@ public class ProjectsApp {
 	private ProjectService projectService = new ProjectService();
 	private Project curProject;
 	
+	// Buffered writer for listings and project details, so long outputs are written a buffer at a time instead of
+	// one console write per line. It is flushed after every listing, before the next prompt.
+	private PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16), false);
+	
+	// Number of projects shown per page when browsing
+	private static final int PAGE_SIZE = 10;
+	
 	
 	
 	
 	public static void main(String[] args) {
 	
+	// Warming up the connection pool so the first selection doesn't pay for the connection handshake
+		DbConnection.getPool();
+		
 	// Calling the processUserSelections Method to process the user selection.
 		new ProjectsApp().processUserSelections();
 		
+		DbConnection.shutdown();
+		
 
 	}
 
@@ -78,6 +100,14 @@ public class ProjectsApp {
 				deleteProject();
 				break;
 				
+			case 6:
+				browseProjects();
+				break;
+				
+			case 7:
+				searchProjects();
+				break;
+				
 				
 			default:
 				System.out.println("\n" + selection + " is not a valid selection.  Try again.");
@@ -117,16 +147,39 @@ public class ProjectsApp {
 		Integer difficulty = getIntInput("Enter the difficulty of this project (1-5) [" + curProject.getDifficulty() + "]");
 		String notes = getStringInput("Enter the notes for this project [" + curProject.getNotes() + "]");
 		
+		// Only the fields that were changed are set, so only their columns are written. The version makes the update
+		// fail instead of overwriting a change someone else saved since this project was selected.
 		Project project = new Project();
 		project.setProjectId(curProject.getProjectId());
-		project.setProjectName(Objects.isNull(projectName) ? curProject.getProjectName() : projectName);
-		project.setEstimatedHours(Objects.isNull(estimatedHours) ? curProject.getEstimatedHours() : estimatedHours);
-		project.setActualHours(Objects.isNull(actualHours) ? curProject.getActualHours() : actualHours);
-		project.setDifficulty(Objects.isNull(difficulty) ? curProject.getDifficulty() : difficulty);
-		project.setNotes(Objects.isNull(notes) ? curProject.getNotes() : notes);
+		project.setVersion(curProject.getVersion());
 		
+		if (Objects.nonNull(projectName) && !projectName.equals(curProject.getProjectName())) {
+			project.setProjectName(projectName);
+		}
+		if (Objects.nonNull(estimatedHours) && !estimatedHours.equals(curProject.getEstimatedHours())) {
+			project.setEstimatedHours(estimatedHours);
+		}
+		if (Objects.nonNull(actualHours) && !actualHours.equals(curProject.getActualHours())) {
+			project.setActualHours(actualHours);
+		}
+		if (Objects.nonNull(difficulty) && !difficulty.equals(curProject.getDifficulty())) {
+			project.setDifficulty(difficulty);
+		}
+		if (Objects.nonNull(notes) && !notes.equals(curProject.getNotes())) {
+			project.setNotes(notes);
+		}
+		
+		if (project.getChangedColumns().isEmpty()) {
+			System.out.println("\nNothing was changed.");
+			return;
+		}
+		
+		try {
+			projectService.modifyProjectDetails(project);
+		} catch (StaleProjectException e) {
+			System.out.println("\n" + e.getMessage() + ". The project has been reloaded; please make your changes again.");
+		}
 		
-		projectService.modifyProjectDetails(project);
 		curProject = projectService.fetchProjectById(curProject.getProjectId());
 			
 		
@@ -146,23 +199,78 @@ public class ProjectsApp {
 		if (Objects.isNull(curProject)) {
 			System.out.println("\nInvalid project ID!");
 		} else {
-			System.out.println("You are working with Project ID: " + curProject);
+			printProject("You are working with Project ID: ", curProject);
 		}
 	} // END of selectProject method
 
 	
+	// searchProjects Method to find projects by the words in their name, notes, steps and materials
+	private void searchProjects() {
+		String query = getStringInput("Enter the words to search for");
+		
+		if (Objects.isNull(query)) {
+			return;
+		}
+		
+		List<SearchResult> results = projectService.searchProjects(query, PAGE_SIZE);
+		
+		if (results.isEmpty()) {
+			System.out.println("\nNo projects match \"" + query + "\".");
+			return;
+		}
+		
+		out.print("\nBest matches: \n");
+		results.forEach(result -> ProjectRenderer.renderListItem(result.getProjectId(), result.getProjectName(), out));
+		out.flush();
+	} // END of searchProjects method
+
+	
 	// listProjects Method to list out all available projects
 	private void listProjects() {
-		List<Project> projects = projectService.fetchAllProjects();
-		
-		System.out.println("\nProjects: ");
+		out.print("\nProjects: \n");
 		
-		// Lambda expression to print out each project_id and project_name in the project table
-		projects.forEach(project -> System.out.println("   " + project.getProjectId() + ": " + project.getProjectName()));
+		// Lambda expression to print out each project_id and project_name in the project table as the rows arrive.
+		// The lines collect in the buffered writer and are written out a buffer at a time.
+		projectService.forEachProject(project -> ProjectRenderer.renderListItem(project, out));
+		out.flush();
 		
 	} // END of listProjects method
 
 	
+	// browseProjects method to show the projects one page at a time, fetching each following page only when asked for
+	private void browseProjects() {
+		String pageToken = null;
+		int pageNumber = 1;
+		
+		do {
+			ProjectPage page = projectService.fetchProjectPage(pageToken, PAGE_SIZE);
+			
+			out.print("\nProjects (page " + pageNumber++ + "): \n");
+			page.getProjects().forEach(project -> ProjectRenderer.renderListItem(project, out));
+			out.flush();
+			
+			if (!page.hasNextPage()) {
+				System.out.println("\nEnd of projects.");
+				break;
+			}
+			
+			pageToken = page.getNextPageToken();
+			
+		} while (Objects.isNull(getStringInput("Press enter for the next page or enter any text to stop")));
+		
+	} // END of browseProjects method
+
+	
+	// printProject method to write the project with all its details through the buffered writer, without building the
+	// whole text first
+	private void printProject(String heading, Project project) {
+		out.print(heading);
+		ProjectRenderer.renderDetails(project, out);
+		out.print('\n');
+		out.flush();
+	} // END of printProject
+
+	
 	// printOperations method to print out selection menu
 	private void printOperations() {
 		System.out.println("\nThere are the available selections.  (Press enter key to quit):");
@@ -251,7 +359,7 @@ public class ProjectsApp {
 		project.setNotes(notes);
 		
 		Project dbProject = projectService.addProject(project);
-		System.out.println("You have successfully created project: " + dbProject);
+		printProject("You have successfully created project: ", dbProject);
 		
 		
 		
@@ -0,0 +1,53 @@
+package projects.analytics;
+
+import java.math.BigDecimal;
+
+// Estimated against actual hours over the projects that have both recorded
+public class HoursRollup {
+	private final long projectCount;
+	private final long overrunCount;
+	private final BigDecimal estimatedHours;
+	private final BigDecimal actualHours;
+
+
+
+	HoursRollup(long projectCount, long overrunCount, BigDecimal estimatedHours, BigDecimal actualHours) {
+		this.projectCount = projectCount;
+		this.overrunCount = overrunCount;
+		this.estimatedHours = estimatedHours;
+		this.actualHours = actualHours;
+	}
+
+
+
+	// getProjectCount method to get the number of projects with both estimated and actual hours
+	public long getProjectCount() {
+		return projectCount;
+	}
+
+	// getOverrunCount method to get the number of those projects that took longer than estimated
+	public long getOverrunCount() {
+		return overrunCount;
+	}
+
+	public BigDecimal getEstimatedHours() {
+		return estimatedHours;
+	}
+
+	public BigDecimal getActualHours() {
+		return actualHours;
+	}
+
+	// getOverrunHours method to get actual minus estimated hours; negative when projects finished early overall
+	public BigDecimal getOverrunHours() {
+		return actualHours.subtract(estimatedHours);
+	}
+
+
+
+	@Override
+	public String toString() {
+		return projectCount + " projects: estimated " + estimatedHours + "h, actual " + actualHours + "h, overrun "
+				+ getOverrunHours() + "h (" + overrunCount + " over estimate)";
+	}
+}
@@ -0,0 +1,359 @@
+package projects.analytics;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+// Immutable, column-oriented copy of the numbers the reports need, held in primitive arrays: one array per column and
+// one index per row, so a report scans a few dense arrays instead of walking a million Material objects.
+//
+//   projects:   projectIds (sorted), projectNames, estimatedHours, actualHours (hundredths of an hour, NULL_VALUE if
+//               not set) and difficulty (0 if not set, OUT_OF_RANGE_DIFFICULTY if set outside 1 to MAX_DIFFICULTY)
+//   materials:  the project row each material belongs to and its line cost, cost * num_required in cents. A missing
+//               num_required counts as 1 and a missing cost as 0.
+//   categories: one (project row, category ID) pair per project_category link
+//
+// Reports split their rows into CHUNK_SIZE ranges that are aggregated in parallel on the common fork/join pool, each
+// into its own partial result, and then combined. The material cost per project is computed once and shared by the
+// reports that need it. Build one with a Builder; AnalyticsDao loads one from the database.
+public class ProjectAnalytics {
+	// Stored in the hours columns for a project whose hours are not set
+	public static final long NULL_VALUE = Long.MIN_VALUE;
+
+	public static final int MAX_DIFFICULTY = 5;
+
+	// Stored, and counted by difficultyDistribution, for a project whose difficulty is set but not 1 to MAX_DIFFICULTY
+	public static final int OUT_OF_RANGE_DIFFICULTY = MAX_DIFFICULTY + 1;
+
+	// Rows per parallel task
+	private static final int CHUNK_SIZE = 1 << 15;
+
+	private final int[] projectIds;
+	private final String[] projectNames;
+	private final long[] estimatedHours;
+	private final long[] actualHours;
+	private final byte[] difficulty;
+
+	private final int[] materialProjectRows;
+	private final long[] materialCosts;
+
+	private final int[] categoryProjectRows;
+	private final int[] categoryIds;
+
+	private volatile long[] materialCostByProjectRow;
+
+
+
+	private ProjectAnalytics(Builder builder) {
+		int projects = builder.projectCount;
+		int materials = builder.materialCount;
+		int links = builder.categoryCount;
+
+		projectIds = Arrays.copyOf(builder.projectIds, projects);
+		projectNames = Arrays.copyOf(builder.projectNames, projects);
+		estimatedHours = Arrays.copyOf(builder.estimatedHours, projects);
+		actualHours = Arrays.copyOf(builder.actualHours, projects);
+		difficulty = Arrays.copyOf(builder.difficulty, projects);
+
+		materialProjectRows = Arrays.copyOf(builder.materialProjectRows, materials);
+		materialCosts = Arrays.copyOf(builder.materialCosts, materials);
+
+		categoryProjectRows = Arrays.copyOf(builder.categoryProjectRows, links);
+		categoryIds = Arrays.copyOf(builder.categoryIds, links);
+	}
+
+
+
+	public int getProjectCount() {
+		return projectIds.length;
+	}
+
+	public int getMaterialCount() {
+		return materialCosts.length;
+	}
+
+
+
+	// totalMaterialCost method to add up cost * num_required over every material
+	public BigDecimal totalMaterialCost() {
+		long total = Arrays.stream(materialCostByProjectRow()).parallel().sum();
+		return BigDecimal.valueOf(total, 2);
+	}
+
+
+
+	// topProjectsByMaterialCost method to get the k projects whose materials cost the most, most expensive first
+	public List<ProjectTotal> topProjectsByMaterialCost(int k) {
+		long[] costs = materialCostByProjectRow();
+
+		TopK top = reduce(projectIds.length, () -> new TopK(k), (partial, from, to) -> {
+			for (int row = from; row < to; row++) {
+				partial.offer(row, costs[row]);
+			}
+		}, TopK::merge);
+
+		return projectTotals(top, costs);
+	}
+
+
+
+	// materialCostByCategory method to total the material cost of the projects in each category, keyed by category ID.
+	// A project in several categories counts toward each of them.
+	public Map<Integer, BigDecimal> materialCostByCategory() {
+		long[] costs = materialCostByProjectRow();
+
+		Map<Integer, Long> totals = reduce(categoryIds.length, TreeMap<Integer, Long>::new, (partial, from, to) -> {
+			for (int link = from; link < to; link++) {
+				partial.merge(categoryIds[link], costs[categoryProjectRows[link]], Long::sum);
+			}
+		}, (a, b) -> {
+			b.forEach((categoryId, cost) -> a.merge(categoryId, cost, Long::sum));
+			return a;
+		});
+
+		Map<Integer, BigDecimal> costByCategory = new TreeMap<>();
+		totals.forEach((categoryId, cost) -> costByCategory.put(categoryId, BigDecimal.valueOf(cost, 2)));
+		return costByCategory;
+	}
+
+
+
+	// hoursRollup method to compare estimated and actual hours over the projects that have both
+	public HoursRollup hoursRollup() {
+		long[] sums = reduce(projectIds.length, () -> new long[4], (partial, from, to) -> {
+			for (int row = from; row < to; row++) {
+				long estimated = estimatedHours[row];
+				long actual = actualHours[row];
+
+				if (estimated != NULL_VALUE && actual != NULL_VALUE) {
+					partial[0]++;
+					partial[1] += actual > estimated ? 1 : 0;
+					partial[2] += estimated;
+					partial[3] += actual;
+				}
+			}
+		}, ProjectAnalytics::addInto);
+
+		return new HoursRollup(sums[0], sums[1], BigDecimal.valueOf(sums[2], 2), BigDecimal.valueOf(sums[3], 2));
+	}
+
+
+
+	// topProjectsByHoursOverrun method to get the k projects that ran furthest over their estimate, worst first. Only
+	// projects with both estimated and actual hours take part.
+	public List<ProjectTotal> topProjectsByHoursOverrun(int k) {
+		TopK top = reduce(projectIds.length, () -> new TopK(k), (partial, from, to) -> {
+			for (int row = from; row < to; row++) {
+				if (estimatedHours[row] != NULL_VALUE && actualHours[row] != NULL_VALUE) {
+					partial.offer(row, actualHours[row] - estimatedHours[row]);
+				}
+			}
+		}, TopK::merge);
+
+		List<ProjectTotal> totals = new ArrayList<>();
+
+		for (int row : top.sortedRows()) {
+			totals.add(new ProjectTotal(projectIds[row], projectNames[row],
+					BigDecimal.valueOf(actualHours[row] - estimatedHours[row], 2)));
+		}
+
+		return totals;
+	}
+
+
+
+	// difficultyDistribution method to count the projects at each difficulty. Index 1 to MAX_DIFFICULTY holds the count
+	// for that difficulty; index 0 counts projects without one and index OUT_OF_RANGE_DIFFICULTY those with a value
+	// outside that range, so bad data shows up instead of passing for "no difficulty".
+	public long[] difficultyDistribution() {
+		return reduce(projectIds.length, () -> new long[OUT_OF_RANGE_DIFFICULTY + 1], (partial, from, to) -> {
+			for (int row = from; row < to; row++) {
+				partial[difficulty[row]]++;
+			}
+		}, ProjectAnalytics::addInto);
+	}
+
+
+
+	// materialCostByProjectRow method to total the material cost of every project, indexed by project row. Each chunk
+	// of materials sums into its own array; computed on first use and then kept.
+	private long[] materialCostByProjectRow() {
+		long[] costs = materialCostByProjectRow;
+
+		if (Objects.isNull(costs)) {
+			costs = reduce(materialCosts.length, () -> new long[projectIds.length], (partial, from, to) -> {
+				for (int material = from; material < to; material++) {
+					partial[materialProjectRows[material]] += materialCosts[material];
+				}
+			}, ProjectAnalytics::addInto);
+
+			materialCostByProjectRow = costs;
+		}
+
+		return costs;
+	}
+
+
+
+	private List<ProjectTotal> projectTotals(TopK top, long[] cents) {
+		List<ProjectTotal> totals = new ArrayList<>();
+
+		for (int row : top.sortedRows()) {
+			totals.add(new ProjectTotal(projectIds[row], projectNames[row], BigDecimal.valueOf(cents[row], 2)));
+		}
+
+		return totals;
+	}
+
+
+
+	// reduce method to aggregate rows [0, rowCount) in parallel chunks: each chunk accumulates into a fresh partial
+	// result and the partials are combined pairwise
+	private static <A> A reduce(int rowCount, Supplier<A> identity, RangeAccumulator<A> accumulator,
+			BinaryOperator<A> combiner) {
+		int chunks = (rowCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+		return IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+			A partial = identity.get();
+			accumulator.accumulate(partial, chunk * CHUNK_SIZE, Math.min(rowCount, (chunk + 1) * CHUNK_SIZE));
+			return partial;
+		}).reduce(combiner).orElseGet(identity);
+	}
+
+
+
+	private static long[] addInto(long[] target, long[] source) {
+		for (int i = 0; i < target.length; i++) {
+			target[i] += source[i];
+		}
+
+		return target;
+	}
+
+
+
+	@FunctionalInterface
+	private interface RangeAccumulator<A> {
+		void accumulate(A partial, int from, int to);
+	}
+
+
+
+	// Collects the columns row by row. Projects must be added in ascending project ID order, and before the materials
+	// and category links that refer to them; rows that refer to an unknown project are skipped.
+	public static class Builder {
+		private int[] projectIds = new int[1024];
+		private String[] projectNames = new String[1024];
+		private long[] estimatedHours = new long[1024];
+		private long[] actualHours = new long[1024];
+		private byte[] difficulty = new byte[1024];
+		private int projectCount;
+
+		private int[] materialProjectRows = new int[1024];
+		private long[] materialCosts = new long[1024];
+		private int materialCount;
+
+		private int[] categoryProjectRows = new int[1024];
+		private int[] categoryIds = new int[1024];
+		private int categoryCount;
+
+
+
+		// addProject method; hours are given in hundredths of an hour or NULL_VALUE, difficulty may be null
+		public Builder addProject(int projectId, String projectName, long estimatedHundredths, long actualHundredths,
+				Integer projectDifficulty) {
+			if (projectCount > 0 && projectId <= projectIds[projectCount - 1]) {
+				throw new IllegalArgumentException("Projects must be added in ascending ID order; got " + projectId
+						+ " after " + projectIds[projectCount - 1]);
+			}
+
+			if (projectCount == projectIds.length) {
+				int length = projectCount * 2;
+				projectIds = Arrays.copyOf(projectIds, length);
+				projectNames = Arrays.copyOf(projectNames, length);
+				estimatedHours = Arrays.copyOf(estimatedHours, length);
+				actualHours = Arrays.copyOf(actualHours, length);
+				difficulty = Arrays.copyOf(difficulty, length);
+			}
+
+			projectIds[projectCount] = projectId;
+			projectNames[projectCount] = projectName;
+			estimatedHours[projectCount] = estimatedHundredths;
+			actualHours[projectCount] = actualHundredths;
+			difficulty[projectCount] = difficultyCode(projectDifficulty);
+			projectCount++;
+			return this;
+		}
+
+
+
+		// difficultyCode method for the value stored in the difficulty column: 0 if not set, OUT_OF_RANGE_DIFFICULTY
+		// if outside 1 to MAX_DIFFICULTY
+		private static byte difficultyCode(Integer projectDifficulty) {
+			if (Objects.isNull(projectDifficulty)) {
+				return 0;
+			}
+
+			return (byte) (projectDifficulty >= 1 && projectDifficulty <= MAX_DIFFICULTY ? projectDifficulty
+					: OUT_OF_RANGE_DIFFICULTY);
+		}
+
+
+
+		// addMaterial method; the line cost is cost * num_required in cents
+		public Builder addMaterial(int projectId, long lineCostCents) {
+			int row = rowOf(projectId);
+
+			if (row >= 0) {
+				if (materialCount == materialCosts.length) {
+					materialProjectRows = Arrays.copyOf(materialProjectRows, materialCount * 2);
+					materialCosts = Arrays.copyOf(materialCosts, materialCount * 2);
+				}
+
+				materialProjectRows[materialCount] = row;
+				materialCosts[materialCount] = lineCostCents;
+				materialCount++;
+			}
+
+			return this;
+		}
+
+
+
+		public Builder addCategoryLink(int projectId, int categoryId) {
+			int row = rowOf(projectId);
+
+			if (row >= 0) {
+				if (categoryCount == categoryIds.length) {
+					categoryProjectRows = Arrays.copyOf(categoryProjectRows, categoryCount * 2);
+					categoryIds = Arrays.copyOf(categoryIds, categoryCount * 2);
+				}
+
+				categoryProjectRows[categoryCount] = row;
+				categoryIds[categoryCount] = categoryId;
+				categoryCount++;
+			}
+
+			return this;
+		}
+
+
+
+		public ProjectAnalytics build() {
+			return new ProjectAnalytics(this);
+		}
+
+
+
+		private int rowOf(int projectId) {
+			return Arrays.binarySearch(projectIds, 0, projectCount, projectId);
+		}
+	}
+}
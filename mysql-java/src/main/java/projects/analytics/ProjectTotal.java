@@ -0,0 +1,39 @@
+package projects.analytics;
+
+import java.math.BigDecimal;
+
+// One row of a per-project report: the project and the value it was ranked by
+public class ProjectTotal {
+	private final int projectId;
+	private final String projectName;
+	private final BigDecimal value;
+
+
+
+	ProjectTotal(int projectId, String projectName, BigDecimal value) {
+		this.projectId = projectId;
+		this.projectName = projectName;
+		this.value = value;
+	}
+
+
+
+	public int getProjectId() {
+		return projectId;
+	}
+
+	public String getProjectName() {
+		return projectName;
+	}
+
+	public BigDecimal getValue() {
+		return value;
+	}
+
+
+
+	@Override
+	public String toString() {
+		return projectId + ": " + projectName + " = " + value;
+	}
+}
@@ -0,0 +1,120 @@
+package projects.analytics;
+
+import java.util.Arrays;
+
+// The k rows with the largest values seen so far, kept as a min-heap over two primitive arrays so offering a row that
+// doesn't make the cut is one comparison. Ties go to the lower row. Each parallel chunk fills its own TopK and the
+// chunks are merged afterwards, so no instance is shared between threads.
+final class TopK {
+	private final int k;
+	private final int[] rows;
+	private final long[] values;
+	private int size;
+
+
+
+	TopK(int k) {
+		this.k = k;
+		this.rows = new int[k];
+		this.values = new long[k];
+	}
+
+
+
+	void offer(int row, long value) {
+		if (size < k) {
+			rows[size] = row;
+			values[size] = value;
+			siftUp(size++);
+		} else if (k > 0 && worse(rows[0], values[0], row, value)) {
+			rows[0] = row;
+			values[0] = value;
+			siftDown(0);
+		}
+	}
+
+
+
+	// merge method to offer every row of the other TopK to this one
+	TopK merge(TopK other) {
+		for (int i = 0; i < other.size; i++) {
+			offer(other.rows[i], other.values[i]);
+		}
+
+		return this;
+	}
+
+
+
+	// sortedRows method to get the rows best first
+	int[] sortedRows() {
+		Integer[] order = new Integer[size];
+
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+
+		Arrays.sort(order, (a, b) -> worse(rows[a], values[a], rows[b], values[b]) ? 1 : a.equals(b) ? 0 : -1);
+
+		int[] sorted = new int[size];
+
+		for (int i = 0; i < size; i++) {
+			sorted[i] = rows[order[i]];
+		}
+
+		return sorted;
+	}
+
+
+
+	// worse method: true if (rowA, valueA) ranks below (rowB, valueB)
+	private static boolean worse(int rowA, long valueA, int rowB, long valueB) {
+		return valueA < valueB || valueA == valueB && rowA > rowB;
+	}
+
+
+
+	private void siftUp(int index) {
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+
+			if (!worse(rows[index], values[index], rows[parent], values[parent])) {
+				return;
+			}
+
+			swap(index, parent);
+			index = parent;
+		}
+	}
+
+	private void siftDown(int index) {
+		while (true) {
+			int child = 2 * index + 1;
+
+			if (child >= size) {
+				return;
+			}
+
+			if (child + 1 < size && worse(rows[child + 1], values[child + 1], rows[child], values[child])) {
+				child++;
+			}
+
+			if (!worse(rows[child], values[child], rows[index], values[index])) {
+				return;
+			}
+
+			swap(index, child);
+			index = child;
+		}
+	}
+
+	private void swap(int a, int b) {
+		int row = rows[a];
+		rows[a] = rows[b];
+		rows[b] = row;
+
+		long value = values[a];
+		values[a] = values[b];
+		values[b] = value;
+	}
+}
@@ -0,0 +1,93 @@
+package projects.dao;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+
+import projects.analytics.ProjectAnalytics;
+import projects.exception.DbException;
+import projects.metrics.Metrics;
+import projects.metrics.OperationMetrics;
+import provided.util.DaoBase;
+
+// Loads the columns of a ProjectAnalytics snapshot. Only the columns the reports use are selected, each table is read
+// once through a forward-only cursor, and values go straight into the builder's primitive arrays without creating an
+// entity per row. The cursors share one read-only transaction, so the snapshot's projects, materials and category links
+// are consistent with each other.
+public class AnalyticsDao extends DaoBase {
+	// Number of rows each cursor pulls from the server per fetch (the same -Dprojects.db.fetchSize as ProjectDao)
+	private static final int FETCH_SIZE = Integer.getInteger("projects.db.fetchSize", 1000);
+
+	private static final OperationMetrics LOAD_ANALYTICS = Metrics.operation("AnalyticsDao.loadAnalytics");
+
+
+
+	// loadAnalytics method to read the project, material and project_category tables into a columnar snapshot
+	public ProjectAnalytics loadAnalytics() {
+		return LOAD_ANALYTICS.time(() -> {
+			try (Connection conn = DbConnection.getReadConnection()) {
+				startReadOnly(conn);
+				startTransaction(conn);
+
+				try {
+					ProjectAnalytics.Builder builder = new ProjectAnalytics.Builder();
+
+					try (PreparedStatement stmt = SqlStatement.PROJECT_SELECT_ANALYTICS.prepareCursor(conn, FETCH_SIZE);
+							ResultSet rs = stmt.executeQuery()) {
+						while (rs.next()) {
+							int difficulty = rs.getInt(5);
+							Integer projectDifficulty = rs.wasNull() ? null : difficulty;
+
+							builder.addProject(rs.getInt(1), rs.getString(2), hundredths(rs.getBigDecimal(3)),
+									hundredths(rs.getBigDecimal(4)), projectDifficulty);
+						}
+					}
+
+					try (PreparedStatement stmt = SqlStatement.MATERIAL_SELECT_ANALYTICS.prepareCursor(conn, FETCH_SIZE);
+							ResultSet rs = stmt.executeQuery()) {
+						while (rs.next()) {
+							int numRequired = rs.getInt(2);
+
+							if (rs.wasNull()) {
+								numRequired = 1;
+							}
+
+							BigDecimal cost = rs.getBigDecimal(3);
+							long costCents = Objects.isNull(cost) ? 0 : hundredths(cost);
+
+							builder.addMaterial(rs.getInt(1), costCents * numRequired);
+						}
+					}
+
+					try (PreparedStatement stmt = SqlStatement.PROJECT_CATEGORY_SELECT_ALL.prepareCursor(conn, FETCH_SIZE);
+							ResultSet rs = stmt.executeQuery()) {
+						while (rs.next()) {
+							builder.addCategoryLink(rs.getInt(1), rs.getInt(2));
+						}
+					}
+
+					ProjectAnalytics analytics = builder.build();
+					commitTransaction(conn);
+					return analytics;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw e instanceof RuntimeException ? (RuntimeException) e : new DbException(e);
+				}
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}, ProjectAnalytics::getMaterialCount);
+	} // END of loadAnalytics
+
+
+
+	// hundredths method to turn a DECIMAL(7, 2) value into a scaled long, or NULL_VALUE for SQL NULL
+	private static long hundredths(BigDecimal value) {
+		return Objects.isNull(value) ? ProjectAnalytics.NULL_VALUE : value.movePointRight(2).longValue();
+	}
+}
@@ -0,0 +1,261 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import projects.exception.DbException;
+import projects.metrics.Metrics;
+import projects.metrics.OperationMetrics;
+import provided.util.DaoBase;
+
+// Writes rows into the schema's tables in JDBC batches on one connection and transaction. Consecutive rows for the same
+// table and columns share one prepared INSERT and are sent batchSize at a time; with rewriteBatchedStatements on the
+// MySQL URL the driver turns each batch into multi-row INSERT statements, so a batch is one round trip. Rows are
+// written in the order they are added, which keeps parents ahead of the children that reference them.
+//
+// Nothing is visible to other connections until commit. Closing the loader rolls back whatever was not committed.
+// Table names must be tables of the schema and column names plain identifiers, since both are put into the SQL text.
+//
+// Rows keep the IDs they are given, or take AUTO_INCREMENT ones. When hi/lo IDs are on (IdAllocator), a row of a
+// sequenced table without an ID takes one from the allocator instead, and each commit moves the ID sequences of the
+// tables written since the last one past their highest ID and then makes this process's allocator drop the blocks it
+// holds, so no ID handed out afterwards collides with an imported one. Blocks already held by other processes can
+// still overlap explicit IDs in the data; load files that carry their own IDs while no other process is writing, or
+// restart the other processes afterwards.
+public class BulkLoader extends DaoBase implements AutoCloseable {
+	private static final Set<String> TABLES = Set.of("project", "material", "step", "category", "project_category");
+	private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+	private static final OperationMetrics EXECUTE_BATCH = Metrics.operation("BulkLoader.executeBatch");
+
+	private final Connection conn;
+	private final int batchSize;
+
+	private PreparedStatement stmt;
+	private String table;
+	private String[] columns;
+	private int valueCount;
+	private int batched;
+	private long rowsAdded;
+	private final Set<String> sequencedTables = new HashSet<>();
+
+	// The last column list that needed an ID column added, and the list with it
+	private String[] idlessColumns;
+	private String[] withIdColumns;
+
+
+
+	public BulkLoader(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1");
+		}
+
+		this.batchSize = batchSize;
+		this.conn = DbConnection.getConnection();
+
+		try {
+			startTransaction(conn);
+		} catch (SQLException e) {
+			closeQuietly();
+			throw new DbException(e);
+		}
+	}
+
+
+
+	// add method to queue one row. A null column list means the values are for every column of the table, in table order.
+	public void add(String rowTable, String[] rowColumns, Object[] values) {
+		IdAllocator allocator = IdAllocator.configured();
+
+		if (Objects.nonNull(allocator) && IdAllocator.isSequenced(rowTable)) {
+			String idColumn = rowTable + "_id";
+			int idIndex = Objects.isNull(rowColumns) ? 0 : Arrays.asList(rowColumns).indexOf(idColumn);
+
+			if (idIndex < 0) {
+				rowColumns = withIdColumn(rowColumns, idColumn);
+				Object[] withId = new Object[values.length + 1];
+				withId[0] = allocator.nextId(rowTable);
+				System.arraycopy(values, 0, withId, 1, values.length);
+				values = withId;
+
+			} else if (idIndex < values.length && Objects.isNull(values[idIndex])) {
+				values = values.clone();
+				values[idIndex] = allocator.nextId(rowTable);
+			}
+		}
+
+		try {
+			if (Objects.isNull(stmt) || !sameTarget(rowTable, rowColumns, values.length)) {
+				prepare(rowTable, rowColumns, values.length);
+			}
+
+			for (int i = 0; i < values.length; i++) {
+				stmt.setObject(i + 1, values[i]);
+			}
+
+			stmt.addBatch();
+			rowsAdded++;
+
+			if (++batched == batchSize) {
+				executeBatch();
+			}
+
+		} catch (SQLException e) {
+			throw new DbException("Loading a row into " + rowTable + " failed", e);
+		}
+	}
+
+
+
+	// commit method to send the queued rows and commit everything added so far
+	public void commit() {
+		try {
+			executeBatch();
+
+			if (Objects.nonNull(IdAllocator.configured())) {
+				for (String sequencedTable : sequencedTables) {
+					IdAllocator.advancePastExisting(conn, sequencedTable);
+				}
+			}
+
+			commitTransaction(conn);
+
+			if (Objects.nonNull(IdAllocator.configured()) && !sequencedTables.isEmpty()) {
+				IdAllocator.configured().discardBlocks();
+			}
+
+			sequencedTables.clear();
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+
+
+	public long getRowsAdded() {
+		return rowsAdded;
+	}
+
+
+
+	@Override
+	public void close() {
+		try {
+			if (Objects.nonNull(stmt)) {
+				stmt.close();
+			}
+
+			rollbackTransaction(conn);
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			closeQuietly();
+		}
+	}
+
+
+
+	// withIdColumn method to put the ID column in front of a column list that lacks it. The result is kept for the next
+	// row with the same list, so consecutive rows still share one statement.
+	private String[] withIdColumn(String[] rowColumns, String idColumn) {
+		if (rowColumns != idlessColumns) {
+			String[] columnsWithId = new String[rowColumns.length + 1];
+			columnsWithId[0] = idColumn;
+			System.arraycopy(rowColumns, 0, columnsWithId, 1, rowColumns.length);
+
+			idlessColumns = rowColumns;
+			withIdColumns = columnsWithId;
+		}
+
+		return withIdColumns;
+	}
+
+
+
+	private boolean sameTarget(String rowTable, String[] rowColumns, int rowValueCount) {
+		return (table == rowTable || table.equals(rowTable))
+				&& (columns == rowColumns || Arrays.equals(columns, rowColumns)) && valueCount == rowValueCount;
+	}
+
+
+
+	// prepare method to send the rows batched for the previous target and prepare the INSERT for the new one
+	private void prepare(String rowTable, String[] rowColumns, int rowValueCount) throws SQLException {
+		if (Objects.nonNull(stmt)) {
+			executeBatch();
+			stmt.close();
+			stmt = null;
+		}
+
+		if (!TABLES.contains(rowTable)) {
+			throw new DbException("Unknown table: " + rowTable);
+		}
+
+		StringBuilder sql = new StringBuilder("INSERT INTO ").append(rowTable);
+
+		if (Objects.nonNull(rowColumns)) {
+			if (rowColumns.length != rowValueCount) {
+				throw new DbException(rowColumns.length + " columns but " + rowValueCount + " values for " + rowTable);
+			}
+
+			for (String column : rowColumns) {
+				if (!IDENTIFIER.matcher(column).matches()) {
+					throw new DbException("Invalid column name: " + column);
+				}
+			}
+
+			sql.append(" (").append(String.join(", ", rowColumns)).append(')');
+		}
+
+		sql.append(" VALUES (");
+
+		for (int i = 0; i < rowValueCount; i++) {
+			sql.append(i == 0 ? "?" : ", ?");
+		}
+
+		stmt = conn.prepareStatement(sql.append(')').toString());
+		table = rowTable;
+
+		if (IdAllocator.isSequenced(rowTable)) {
+			sequencedTables.add(rowTable);
+		}
+
+		columns = rowColumns;
+		valueCount = rowValueCount;
+	}
+
+
+
+	private void executeBatch() throws SQLException {
+		if (batched == 0) {
+			return;
+		}
+
+		int rows = batched;
+		batched = 0;
+
+		EXECUTE_BATCH.time(() -> {
+			try {
+				return stmt.executeBatch().length;
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}, count -> rows);
+	}
+
+
+
+	private void closeQuietly() {
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			// Nothing more can be done with a connection that fails to close
+		}
+	}
+}
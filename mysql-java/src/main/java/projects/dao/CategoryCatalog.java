@@ -0,0 +1,290 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import projects.entity.Category;
+import projects.exception.DbException;
+import provided.util.DaoBase;
+import provided.util.RowMapper;
+
+// Near-cache of the category table. Categories are small, rarely changing reference data, so the whole table is held
+// in an immutable snapshot keyed by primitive int IDs (a sorted id array searched with a binary search, parallel to
+// the Category array). Project loads only read category_id from project_category and resolve the IDs here, which
+// avoids the join and shares one Category instance per category. Shared instances must be treated as read-only.
+//
+// The snapshot is replaced wholesale: on a schedule (-Dprojects.categories.refreshSeconds, default 300), after every
+// category write made through this class, and in the background when a project references a category ID the snapshot
+// doesn't know yet. Such an ID is read at once on the connection of the caller, which is holding one anyway, and added
+// to the snapshot, so a loaded project never misses a category. Lookups never borrow a pooled connection.
+public class CategoryCatalog extends DaoBase {
+	private static final Logger LOG = Logger.getLogger(CategoryCatalog.class.getName());
+
+	private static final long REFRESH_SECONDS = Long.getLong("projects.categories.refreshSeconds", 300);
+
+	// An unknown ID refreshes the snapshot at most this often (-Dprojects.categories.missRefreshMillis, default 1000), so
+	// an ID that stays unknown, like a dangling project_category row, doesn't reload the table on every lookup
+	private static final long MISS_REFRESH_NANOS = TimeUnit.MILLISECONDS
+			.toNanos(Long.getLong("projects.categories.missRefreshMillis", 1000));
+
+	private static final CategoryCatalog SHARED = new CategoryCatalog();
+
+	private volatile Snapshot snapshot;
+	private final Object loadLock = new Object();
+	private final AtomicLong lastMissRefreshNanos = new AtomicLong(System.nanoTime() - MISS_REFRESH_NANOS);
+
+	// Guarded by refresherLock rather than the catalog, whose lock refresh holds while it waits for a pooled connection
+	private final Object refresherLock = new Object();
+	private ScheduledExecutorService refresher;
+	private boolean scheduled;
+
+
+
+	// shared method to get the catalog used by the DAO layer
+	public static CategoryCatalog shared() {
+		return SHARED;
+	}
+
+
+
+	// get method to resolve a category ID read on conn. An ID the snapshot doesn't know belongs to a category added
+	// since the last refresh: it is read on conn, added to the snapshot, and a background refresh is started. Returns
+	// null only if the category no longer exists. Statements with an open cursor on conn are not disturbed.
+	public Category get(Connection conn, int categoryId) throws SQLException {
+		Category category = current().find(categoryId);
+
+		if (Objects.nonNull(category)) {
+			return category;
+		}
+
+		refreshAfterMiss();
+
+		try (PreparedStatement stmt = SqlStatement.CATEGORY_SELECT_BY_ID.prepare(conn)) {
+			setParameter(stmt, 1, categoryId, Integer.class);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (!rs.next()) {
+					return null;
+				}
+
+				category = extract(rs, Category.class);
+			}
+		}
+
+		synchronized (loadLock) {
+			Snapshot current = current();
+			Category known = current.find(categoryId);
+
+			if (Objects.nonNull(known)) {
+				return known;
+			}
+
+			snapshot = current.with(category);
+			return category;
+		}
+	} // END of get
+
+
+
+	// getAll method to list every category in ID order
+	public List<Category> getAll() {
+		return Collections.unmodifiableList(Arrays.asList(current().categories));
+	}
+
+
+
+	// insertCategory method to add a category and publish a fresh snapshot that includes it
+	public Category insertCategory(Category category) {
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
+
+			try (PreparedStatement stmt = SqlStatement.CATEGORY_INSERT.prepare(conn, Statement.RETURN_GENERATED_KEYS)) {
+				setParameter(stmt, 1, category.getCategoryName(), String.class);
+
+				stmt.executeUpdate();
+				Integer categoryId = getGeneratedIds(stmt, 1)[0];
+				commitTransaction(conn);
+
+				category.setCategoryId(categoryId);
+
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+
+		refresh();
+		return category;
+	} // END of insertCategory
+
+
+
+	// refresh method to reload the whole category table and swap in the new snapshot
+	public synchronized Snapshot refresh() {
+		try (Connection conn = DbConnection.getReadConnection()) {
+			startReadOnly(conn);
+
+			return publish(readAll(conn));
+
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	} // END of refresh
+
+
+
+	private Snapshot current() {
+		Snapshot current = snapshot;
+		return Objects.isNull(current) ? load() : current;
+	}
+
+
+
+	// load method to read the first snapshot. The caller may hold a pooled connection, so the table is read on a
+	// connection opened outside the pool; waiting for a second pooled one could wait forever once the pool is drained.
+	// Uses its own lock rather than the catalog's, for the same reason as refresherLock.
+	private Snapshot load() {
+		synchronized (loadLock) {
+			Snapshot current = snapshot;
+
+			if (Objects.nonNull(current)) {
+				return current;
+			}
+
+			try (Connection conn = DbConnection.openDedicatedConnection()) {
+				startReadOnly(conn);
+				return publish(readAll(conn));
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}
+	}
+
+
+
+	private Snapshot readAll(Connection conn) throws SQLException {
+		try (PreparedStatement stmt = SqlStatement.CATEGORY_SELECT_ALL.prepare(conn); ResultSet rs = stmt.executeQuery()) {
+			List<Category> categories = new ArrayList<>();
+			RowMapper<Category> mapper = rowMapper(rs, Category.class);
+
+			while (rs.next()) {
+				categories.add(mapper.map(rs));
+			}
+
+			return new Snapshot(categories);
+		}
+	}
+
+
+
+	private Snapshot publish(Snapshot loaded) {
+		snapshot = loaded;
+		startRefresher();
+		return loaded;
+	}
+
+
+
+	// refreshAfterMiss method to start a background refresh, unless one was started within MISS_REFRESH_NANOS
+	private void refreshAfterMiss() {
+		long last = lastMissRefreshNanos.get();
+		long now = System.nanoTime();
+
+		if (now - last >= MISS_REFRESH_NANOS && lastMissRefreshNanos.compareAndSet(last, now)) {
+			refresher().execute(this::refreshQuietly);
+		}
+	}
+
+
+
+	private void refreshQuietly() {
+		try {
+			refresh();
+		} catch (Exception e) {
+			LOG.log(Level.WARNING, "Category refresh failed; keeping the previous snapshot", e);
+		}
+	}
+
+
+
+	private void startRefresher() {
+		synchronized (refresherLock) {
+			if (REFRESH_SECONDS > 0 && !scheduled) {
+				refresher().scheduleWithFixedDelay(this::refreshQuietly, REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS);
+				scheduled = true;
+			}
+		}
+	}
+
+
+
+	// refresher method to get the thread that runs the scheduled and the miss refreshes, starting it on first use
+	private ScheduledExecutorService refresher() {
+		synchronized (refresherLock) {
+			if (Objects.isNull(refresher)) {
+				refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+					Thread thread = new Thread(runnable, "projects-category-refresher");
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+
+			return refresher;
+		}
+	}
+
+
+
+	// An immutable copy of the category table: ids[i] is the ID of categories[i], sorted ascending
+	public static final class Snapshot {
+		private final int[] ids;
+		private final Category[] categories;
+
+		private Snapshot(List<Category> sortedCategories) {
+			ids = new int[sortedCategories.size()];
+			categories = sortedCategories.toArray(new Category[0]);
+
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = categories[i].getCategoryId();
+			}
+		}
+
+		// with method to copy the snapshot with one more category
+		private Snapshot with(Category category) {
+			List<Category> sortedCategories = new ArrayList<>(categories.length + 1);
+			int index = -Arrays.binarySearch(ids, category.getCategoryId()) - 1;
+
+			sortedCategories.addAll(Arrays.asList(categories).subList(0, index));
+			sortedCategories.add(category);
+			sortedCategories.addAll(Arrays.asList(categories).subList(index, categories.length));
+			return new Snapshot(sortedCategories);
+		}
+
+		public Category find(int categoryId) {
+			int index = Arrays.binarySearch(ids, categoryId);
+			return index < 0 ? null : categories[index];
+		}
+
+		public int size() {
+			return ids.length;
+		}
+	}
+}
@@ -0,0 +1,425 @@
+package projects.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import projects.exception.DbException;
+
+// Bounded pool of physical JDBC connections. Callers borrow with getConnection() and give the connection
+// back by closing it, so the existing try-with-resources blocks in the DAO layer work unchanged.
+//
+// A Semaphore with maxSize permits bounds the number of borrowed connections. Idle connections sit in a
+// LIFO deque so the most recently used (and most likely still valid) connection is handed out first.
+// A daemon housekeeping thread evicts connections idle longer than idleTimeout, tops the pool back up
+// to minSize and reports connections held longer than the leak detection threshold.
+public class ConnectionPool implements AutoCloseable {
+	private static final Logger LOG = Logger.getLogger(ConnectionPool.class.getName());
+
+	private final ConnectionPoolConfig config;
+	private final Semaphore permits;
+	private final LinkedBlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+	private final Set<PooledEntry> borrowed = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService housekeeper;
+
+	private final AtomicInteger totalCount = new AtomicInteger();
+	private final LongAdder borrowCount = new LongAdder();
+	private final LongAdder totalWaitNanos = new LongAdder();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final LongAdder createdCount = new LongAdder();
+	private final LongAdder evictedCount = new LongAdder();
+	private final LongAdder validationFailureCount = new LongAdder();
+	private final LongAdder leakCount = new LongAdder();
+
+	private volatile boolean closed;
+
+
+
+	public ConnectionPool(ConnectionPoolConfig config) {
+		if (config.getMaxSize() < 1 || config.getMinSize() < 0 || config.getMinSize() > config.getMaxSize()) {
+			throw new IllegalArgumentException("Invalid pool size: " + config);
+		}
+
+		this.config = config;
+		this.permits = new Semaphore(config.getMaxSize(), true);
+
+		housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "projects-pool-housekeeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		long interval = config.getHousekeepingIntervalMillis();
+		housekeeper.scheduleWithFixedDelay(this::housekeep, interval, interval, TimeUnit.MILLISECONDS);
+
+		warmUp();
+	}
+
+
+
+	// warmUp method to open minSize connections up front so the first requests don't pay for the handshake
+	private void warmUp() {
+		try {
+			fillToMinimum();
+			LOG.fine(() -> "Connection pool started with " + totalCount.get() + " connections (" + config + ")");
+		} catch (SQLException e) {
+			// The database may simply not be up yet. Connections are created on demand when it is.
+			LOG.log(Level.WARNING, "Unable to warm up the connection pool", e);
+		}
+	} // END of warmUp
+
+
+
+	// getConnection method to borrow a connection. Blocks for up to connectionTimeoutMillis when every
+	// connection is in use.
+	public Connection getConnection() {
+		if (closed) {
+			throw new DbException("Connection pool has been closed");
+		}
+
+		long start = System.nanoTime();
+
+		try {
+			if (!permits.tryAcquire(config.getConnectionTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+				throw new DbException("Timed out after " + config.getConnectionTimeoutMillis()
+						+ "ms waiting for a connection (active=" + getActiveCount() + ", max=" + config.getMaxSize() + ")");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException("Interrupted while waiting for a connection", e);
+		}
+
+		recordWait(System.nanoTime() - start);
+
+		try {
+			PooledEntry entry = takeIdleOrCreate();
+
+			entry.borrowedAt = System.currentTimeMillis();
+			entry.borrowSite = config.getLeakDetectionThresholdMillis() > 0 ? new Throwable("Connection borrowed here") : null;
+			entry.leakReported = false;
+			borrowed.add(entry);
+			borrowCount.increment();
+
+			return entry.newHandle();
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e instanceof DbException ? (DbException) e : new DbException(e);
+		}
+	} // END of getConnection
+
+
+
+	// takeIdleOrCreate method to hand out the most recently returned connection that passes validation,
+	// or open a new one when none are idle
+	private PooledEntry takeIdleOrCreate() throws SQLException {
+		PooledEntry entry;
+
+		while ((entry = idle.pollFirst()) != null) {
+			if (isUsable(entry)) {
+				return entry;
+			}
+
+			validationFailureCount.increment();
+			discard(entry);
+		}
+
+		return createEntry();
+	}
+
+
+
+	private boolean isUsable(PooledEntry entry) {
+		if (!config.isValidateOnBorrow()
+				|| System.currentTimeMillis() - entry.lastReturnedAt < config.getValidationIntervalMillis()) {
+			return true;
+		}
+
+		try {
+			return entry.physical.isValid(config.getValidationTimeoutSeconds());
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+
+
+	private PooledEntry createEntry() throws SQLException {
+		Connection physical = DriverManager.getConnection(config.getUrl());
+
+		if (config.isReadOnly()) {
+			physical.setReadOnly(true);
+		}
+
+		totalCount.incrementAndGet();
+		createdCount.increment();
+
+		return new PooledEntry(physical);
+	}
+
+
+
+	// release method called when a handle is closed. Resets the session state that the DAO layer changes
+	// so the next borrower starts clean.
+	private void release(PooledEntry entry) {
+		borrowed.remove(entry);
+
+		try {
+			if (closed) {
+				discard(entry);
+				return;
+			}
+
+			Connection physical = entry.physical;
+
+			if (!physical.getAutoCommit()) {
+				physical.rollback();
+				physical.setAutoCommit(true);
+			}
+
+			if (physical.isReadOnly() != config.isReadOnly()) {
+				physical.setReadOnly(config.isReadOnly());
+			}
+
+			physical.clearWarnings();
+
+			entry.lastReturnedAt = System.currentTimeMillis();
+			idle.offerFirst(entry);
+		} catch (SQLException e) {
+			LOG.log(Level.FINE, "Discarding connection that could not be reset", e);
+			discard(entry);
+		} finally {
+			permits.release();
+		}
+	} // END of release
+
+
+
+	private void discard(PooledEntry entry) {
+		totalCount.decrementAndGet();
+
+		try {
+			entry.physical.close();
+		} catch (SQLException e) {
+			LOG.log(Level.FINE, "Error closing pooled connection", e);
+		}
+	}
+
+
+
+	private void fillToMinimum() throws SQLException {
+		while (!closed && totalCount.get() < config.getMinSize()) {
+			PooledEntry entry = createEntry();
+			entry.lastReturnedAt = System.currentTimeMillis();
+			idle.offerLast(entry);
+		}
+	}
+
+
+
+	// housekeep method run on the housekeeping thread: idle eviction, minimum top-up and leak detection
+	private void housekeep() {
+		try {
+			long now = System.currentTimeMillis();
+
+			Iterator<PooledEntry> it = idle.descendingIterator();
+
+			while (it.hasNext() && totalCount.get() > config.getMinSize()) {
+				PooledEntry entry = it.next();
+
+				if (now - entry.lastReturnedAt > config.getIdleTimeoutMillis() && idle.removeLastOccurrence(entry)) {
+					evictedCount.increment();
+					discard(entry);
+				}
+			}
+
+			fillToMinimum();
+
+			long leakThreshold = config.getLeakDetectionThresholdMillis();
+
+			if (leakThreshold > 0) {
+				for (PooledEntry entry : borrowed) {
+					if (!entry.leakReported && now - entry.borrowedAt > leakThreshold) {
+						entry.leakReported = true;
+						leakCount.increment();
+						LOG.log(Level.WARNING, "Possible connection leak: connection held for " + (now - entry.borrowedAt) + "ms",
+								entry.borrowSite);
+					}
+				}
+			}
+		} catch (Exception e) {
+			LOG.log(Level.WARNING, "Connection pool housekeeping failed", e);
+		}
+	} // END of housekeep
+
+
+
+	private void recordWait(long nanos) {
+		totalWaitNanos.add(nanos);
+		maxWaitNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+
+
+	@Override
+	public void close() {
+		closed = true;
+		housekeeper.shutdownNow();
+
+		PooledEntry entry;
+
+		while ((entry = idle.pollFirst()) != null) {
+			discard(entry);
+		}
+	}
+
+
+
+	public ConnectionPoolConfig getConfig() {
+		return config;
+	}
+
+	public int getActiveCount() {
+		return borrowed.size();
+	}
+
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	public int getTotalCount() {
+		return totalCount.get();
+	}
+
+	public int getPendingCount() {
+		return permits.getQueueLength();
+	}
+
+	public long getBorrowCount() {
+		return borrowCount.sum();
+	}
+
+	public long getCreatedCount() {
+		return createdCount.sum();
+	}
+
+	public long getEvictedCount() {
+		return evictedCount.sum();
+	}
+
+	public long getValidationFailureCount() {
+		return validationFailureCount.sum();
+	}
+
+	public long getLeakCount() {
+		return leakCount.sum();
+	}
+
+	public long getTotalWaitNanos() {
+		return totalWaitNanos.sum();
+	}
+
+	public double getAverageWaitMillis() {
+		long borrows = borrowCount.sum();
+		return borrows == 0 ? 0.0 : totalWaitNanos.sum() / (borrows * 1_000_000.0);
+	}
+
+	public double getMaxWaitMillis() {
+		return maxWaitNanos.get() / 1_000_000.0;
+	}
+
+	@Override
+	public String toString() {
+		return "active=" + getActiveCount() + ", idle=" + getIdleCount() + ", total=" + getTotalCount() + ", pending="
+				+ getPendingCount() + ", borrows=" + getBorrowCount() + ", avgWaitMillis="
+				+ String.format("%.3f", getAverageWaitMillis()) + ", maxWaitMillis=" + String.format("%.3f", getMaxWaitMillis())
+				+ ", created=" + getCreatedCount() + ", evicted=" + getEvictedCount() + ", leaks=" + getLeakCount();
+	}
+
+
+
+	// A physical connection plus the bookkeeping the pool needs about it
+	private final class PooledEntry {
+		private final Connection physical;
+		private volatile long lastReturnedAt;
+		private volatile long borrowedAt;
+		private volatile Throwable borrowSite;
+		private volatile boolean leakReported;
+
+		private PooledEntry(Connection physical) {
+			this.physical = physical;
+		}
+
+		private Connection newHandle() {
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+					new Handle(this));
+		}
+	}
+
+
+
+	// Handle given to callers. close() returns the physical connection to the pool instead of closing it,
+	// and the handle refuses further use once it has been closed.
+	private final class Handle implements InvocationHandler {
+		private final PooledEntry entry;
+		private boolean closed;
+
+		private Handle(PooledEntry entry) {
+			this.entry = entry;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				if (!closed) {
+					closed = true;
+					release(entry);
+				}
+				return null;
+
+			case "isClosed":
+				return closed || entry.physical.isClosed();
+
+			case "equals":
+				return proxy == args[0];
+
+			case "hashCode":
+				return System.identityHashCode(proxy);
+
+			case "toString":
+				return "Pooled[" + entry.physical + "]";
+
+			default:
+				break;
+			}
+
+			if (closed) {
+				throw new SQLException("Connection has been returned to the pool");
+			}
+
+			try {
+				return method.invoke(entry.physical, args);
+			} catch (InvocationTargetException e) {
+				throw Objects.requireNonNullElse(e.getCause(), e);
+			}
+		}
+	}
+}
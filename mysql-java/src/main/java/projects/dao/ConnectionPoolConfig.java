@@ -0,0 +1,137 @@
+package projects.dao;
+
+// Settings for the ConnectionPool. Every value can be overridden with a system property named
+// "projects.pool.<setting>", e.g. -Dprojects.pool.maxSize=20.
+public class ConnectionPoolConfig {
+	private static final String PROPERTY_PREFIX = "projects.pool.";
+
+	private String url;
+	private int minSize = 2;
+	private int maxSize = 10;
+	private long connectionTimeoutMillis = 30_000;
+	private boolean validateOnBorrow = true;
+	private long validationIntervalMillis = 500;
+	private int validationTimeoutSeconds = 2;
+	private long idleTimeoutMillis = 600_000;
+	private long leakDetectionThresholdMillis = 0;
+	private long housekeepingIntervalMillis = 30_000;
+	private boolean readOnly = false;
+
+
+
+	// fromSystemProperties method to build a config for the given url, applying any projects.pool.* overrides
+	public static ConnectionPoolConfig fromSystemProperties(String url) {
+		ConnectionPoolConfig config = new ConnectionPoolConfig();
+
+		config.setUrl(url);
+		config.setMinSize(Integer.getInteger(PROPERTY_PREFIX + "minSize", config.getMinSize()));
+		config.setMaxSize(Integer.getInteger(PROPERTY_PREFIX + "maxSize", config.getMaxSize()));
+		config.setConnectionTimeoutMillis(Long.getLong(PROPERTY_PREFIX + "connectionTimeoutMillis", config.getConnectionTimeoutMillis()));
+		config.setValidateOnBorrow(Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "validateOnBorrow", String.valueOf(config.isValidateOnBorrow()))));
+		config.setValidationIntervalMillis(Long.getLong(PROPERTY_PREFIX + "validationIntervalMillis", config.getValidationIntervalMillis()));
+		config.setValidationTimeoutSeconds(Integer.getInteger(PROPERTY_PREFIX + "validationTimeoutSeconds", config.getValidationTimeoutSeconds()));
+		config.setIdleTimeoutMillis(Long.getLong(PROPERTY_PREFIX + "idleTimeoutMillis", config.getIdleTimeoutMillis()));
+		config.setLeakDetectionThresholdMillis(Long.getLong(PROPERTY_PREFIX + "leakDetectionThresholdMillis", config.getLeakDetectionThresholdMillis()));
+		config.setHousekeepingIntervalMillis(Long.getLong(PROPERTY_PREFIX + "housekeepingIntervalMillis", config.getHousekeepingIntervalMillis()));
+
+		return config;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public void setUrl(String url) {
+		this.url = url;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public void setMinSize(int minSize) {
+		this.minSize = minSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public long getConnectionTimeoutMillis() {
+		return connectionTimeoutMillis;
+	}
+
+	public void setConnectionTimeoutMillis(long connectionTimeoutMillis) {
+		this.connectionTimeoutMillis = connectionTimeoutMillis;
+	}
+
+	public boolean isValidateOnBorrow() {
+		return validateOnBorrow;
+	}
+
+	public void setValidateOnBorrow(boolean validateOnBorrow) {
+		this.validateOnBorrow = validateOnBorrow;
+	}
+
+	// Connections that were returned more recently than this are handed out without a validation round trip
+	public long getValidationIntervalMillis() {
+		return validationIntervalMillis;
+	}
+
+	public void setValidationIntervalMillis(long validationIntervalMillis) {
+		this.validationIntervalMillis = validationIntervalMillis;
+	}
+
+	public int getValidationTimeoutSeconds() {
+		return validationTimeoutSeconds;
+	}
+
+	public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+		this.validationTimeoutSeconds = validationTimeoutSeconds;
+	}
+
+	public long getIdleTimeoutMillis() {
+		return idleTimeoutMillis;
+	}
+
+	public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+	// A value of zero turns leak detection off
+	public long getLeakDetectionThresholdMillis() {
+		return leakDetectionThresholdMillis;
+	}
+
+	public void setLeakDetectionThresholdMillis(long leakDetectionThresholdMillis) {
+		this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+	}
+
+	public long getHousekeepingIntervalMillis() {
+		return housekeepingIntervalMillis;
+	}
+
+	public void setHousekeepingIntervalMillis(long housekeepingIntervalMillis) {
+		this.housekeepingIntervalMillis = housekeepingIntervalMillis;
+	}
+
+	// A read-only pool keeps its connections in read-only mode, e.g. for a pool of replica connections
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	public void setReadOnly(boolean readOnly) {
+		this.readOnly = readOnly;
+	}
+
+	@Override
+	public String toString() {
+		return "minSize=" + minSize + ", maxSize=" + maxSize + ", connectionTimeoutMillis=" + connectionTimeoutMillis
+				+ ", validateOnBorrow=" + validateOnBorrow + ", idleTimeoutMillis=" + idleTimeoutMillis
+				+ ", leakDetectionThresholdMillis=" + leakDetectionThresholdMillis + ", readOnly=" + readOnly;
+	}
+}
@@ -3,8 +3,7 @@ package projects.dao;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-
-import projects.exception.DbException;
+import java.util.function.Supplier;
 
 public class DbConnection {
 	private static final String SCHEMA = "projects";
@@ -12,19 +11,179 @@ public class DbConnection {
 	private static final String PASSWORD = "projects";
 	private static final String HOST = "localhost";
 	private static final int PORT = 3306;
-	
-	
+
+	// Setting -Dprojects.db.url points the application at a different database, e.g. an embedded one for testing
+	private static final String URL_PROPERTY = "projects.db.url";
+
+	// Setting -Dprojects.db.multiQueries=true adds allowMultiQueries to the MySQL URL, so several statements can be
+	// sent in one request (see ProjectDao.fetchProjectById)
+	private static final boolean MULTI_QUERIES = Boolean.getBoolean("projects.db.multiQueries");
+
+	// Reads can be sent to a second database, e.g. a replica of the primary: either a full JDBC URL with
+	// -Dprojects.db.read.url, or the MySQL host and port of the replica with -Dprojects.db.read.host and
+	// -Dprojects.db.read.port (same schema, user and options as the primary). Without any of them, reads use the primary.
+	private static final String READ_URL_PROPERTY = "projects.db.read.url";
+	private static final String READ_HOST = System.getProperty("projects.db.read.host");
+	private static final Integer READ_PORT = Integer.getInteger("projects.db.read.port");
+
+	// For this long after a thread borrowed a write connection, that thread's reads go to the primary too, so a change is
+	// visible to the reads that follow it even if the replica hasn't applied it yet
+	// (-Dprojects.db.read.primaryAfterWriteMillis). Other threads keep reading from the replica.
+	private static final long PRIMARY_AFTER_WRITE_NANOS = Long.getLong("projects.db.read.primaryAfterWriteMillis", 1000)
+			* 1_000_000;
+
+	// Set on a thread while it runs readFromPrimary
+	private static final ThreadLocal<Boolean> PRIMARY_READS = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+	private static volatile ConnectionPool pool;
+	private static volatile ConnectionPool readPool;
+
+	// When the current thread last borrowed a write connection; null if it never has
+	private static final ThreadLocal<Long> LAST_WRITE_NANOS = new ThreadLocal<>();
+
+
+	// getConnection method to borrow a pooled connection to the primary database, for writes. Closing the connection
+	// returns it to the pool. With -Dprojects.trace.enabled=true the connection is wrapped by the StatementTracer.
 	public static Connection getConnection() {
-		String url = String.format("jdbc:mysql://%s:%d/%s?user=%s&password=%s&useSSL=false", HOST,  PORT, SCHEMA, USER, PASSWORD);
-		
-		System.out.println("Connecting with url: " + url);
-		
+		LAST_WRITE_NANOS.set(System.nanoTime());
+		return borrow(getPool());
+	}
+
+
+	// getReadConnection method to borrow a connection for reads. Goes to the read database when one is configured,
+	// unless the current thread borrowed a write connection within the last primaryAfterWriteMillis or is in
+	// readFromPrimary.
+	// Callers should put the connection in read-only mode (DaoBase.startReadOnly) and must not write through it.
+	public static Connection getReadConnection() {
+		if (!isReadDatabaseConfigured() || PRIMARY_READS.get() || wroteRecently()) {
+			return borrow(getPool());
+		}
+
+		return borrow(getReadPool());
+	}
+
+
+	// openDedicatedConnection method to open a connection to the primary that does not come from the pool, for work
+	// that must never wait for a pooled connection while its caller holds one (IdAllocator). The caller owns it and
+	// closes it.
+	static Connection openDedicatedConnection() throws SQLException {
+		return DriverManager.getConnection(buildUrl());
+	}
+
+
+	private static boolean wroteRecently() {
+		Long lastWrite = LAST_WRITE_NANOS.get();
+		return lastWrite != null && System.nanoTime() - lastWrite < PRIMARY_AFTER_WRITE_NANOS;
+	}
+
+
+	// readFromPrimary method to run reads that must see every committed write, like the snapshot catalog's
+	// reconciliation, with the read connections of the current thread taken from the primary
+	public static <T> T readFromPrimary(Supplier<T> reads) {
+		Boolean previous = PRIMARY_READS.get();
+		PRIMARY_READS.set(Boolean.TRUE);
+
 		try {
-			Connection conn = DriverManager.getConnection(url);
-			System.out.println("Successfully connected!");
-			return conn;
-		} catch (SQLException e) {
-			throw new DbException(e);
+			return reads.get();
+		} finally {
+			PRIMARY_READS.set(previous);
+		}
+	}
+
+
+	private static Connection borrow(ConnectionPool from) {
+		Connection conn = from.getConnection();
+		return StatementTracer.isEnabled() ? StatementTracer.shared().wrap(conn) : conn;
+	}
+
+
+	// getPool method to lazily create the shared pool. Calling it at startup warms the pool up.
+	public static ConnectionPool getPool() {
+		ConnectionPool current = pool;
+
+		if (current == null) {
+			synchronized (DbConnection.class) {
+				current = pool;
+
+				if (current == null) {
+					current = new ConnectionPool(ConnectionPoolConfig.fromSystemProperties(buildUrl()));
+					pool = current;
+				}
+			}
+		}
+
+		return current;
+	}
+
+
+	// getReadPool method to lazily create the pool of read-only connections to the read database. Uses the same
+	// projects.pool.* settings as the primary pool.
+	public static ConnectionPool getReadPool() {
+		ConnectionPool current = readPool;
+
+		if (current == null) {
+			synchronized (DbConnection.class) {
+				current = readPool;
+
+				if (current == null) {
+					ConnectionPoolConfig config = ConnectionPoolConfig.fromSystemProperties(buildReadUrl());
+					config.setReadOnly(true);
+
+					current = new ConnectionPool(config);
+					readPool = current;
+				}
+			}
+		}
+
+		return current;
+	}
+
+
+	public static boolean isReadDatabaseConfigured() {
+		return System.getProperty(READ_URL_PROPERTY) != null || READ_HOST != null || READ_PORT != null;
+	}
+
+
+	// shutdown method to close every pooled connection, e.g. when the application exits
+	public static synchronized void shutdown() {
+		if (pool != null) {
+			pool.close();
+			pool = null;
+		}
+
+		if (readPool != null) {
+			readPool.close();
+			readPool = null;
 		}
 	}
+
+
+	// isMultiQueriesEnabled method to tell the DAOs whether multi-statement requests may be tried
+	public static boolean isMultiQueriesEnabled() {
+		return MULTI_QUERIES;
+	}
+
+
+	private static String buildUrl() {
+		String url = System.getProperty(URL_PROPERTY);
+		return url != null ? url : buildMySqlUrl(HOST, PORT);
+	}
+
+
+	private static String buildReadUrl() {
+		String url = System.getProperty(READ_URL_PROPERTY);
+		return url != null ? url : buildMySqlUrl(READ_HOST != null ? READ_HOST : HOST, READ_PORT != null ? READ_PORT : PORT);
+	}
+
+
+	private static String buildMySqlUrl(String host, int port) {
+		// useCursorFetch lets statements with a fetch size read large results through a server-side cursor and
+		// rewriteBatchedStatements sends a JDBC batch of INSERTs as multi-row INSERT statements. useServerPrepStmts and
+		// cachePrepStmts keep each pooled connection's server-side prepared statements (the fixed texts in SqlStatement)
+		// open across calls, so a statement is parsed once per connection and then only executed. useLocalSessionState
+		// skips the round trip when autocommit or read-only mode is set to the value the session already has.
+		return String.format("jdbc:mysql://%s:%d/%s?user=%s&password=%s&useSSL=false&useCursorFetch=true&rewriteBatchedStatements=true"
+				+ "&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048&useLocalSessionState=true",
+				host, port, SCHEMA, USER, PASSWORD) + (MULTI_QUERIES ? "&allowMultiQueries=true" : "");
+	}
 }
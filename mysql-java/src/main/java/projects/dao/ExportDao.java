@@ -0,0 +1,104 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+
+import projects.entity.Category;
+import projects.exception.DbException;
+import projects.export.ProjectExportHandler;
+import projects.metrics.Metrics;
+import projects.metrics.OperationMetrics;
+import provided.util.DaoBase;
+
+// Reads the whole database for an export. The project, material, step and project_category tables are each read
+// through their own forward-only cursor, all sorted by project_id, and the child rows are joined to their project in
+// one merge pass: each child cursor is advanced while it is on the current project. Nothing but the current row of
+// each cursor is held in memory. The cursors share one read-only transaction, so the export is a consistent snapshot.
+public class ExportDao extends DaoBase {
+	// Number of rows each cursor pulls from the server per fetch (the same -Dprojects.db.fetchSize as ProjectDao)
+	private static final int FETCH_SIZE = Integer.getInteger("projects.db.fetchSize", 1000);
+
+	private static final OperationMetrics EXPORT_ALL = Metrics.operation("ExportDao.exportAll");
+
+	private final CategoryCatalog categoryCatalog = CategoryCatalog.shared();
+
+
+
+	// exportAll method to hand every project and its children to the handler in project ID order
+	public void exportAll(ProjectExportHandler handler) {
+		EXPORT_ALL.time(() -> {
+			try (Connection conn = DbConnection.getReadConnection()) {
+				startReadOnly(conn);
+				startTransaction(conn);
+
+				try (PreparedStatement projectStmt = SqlStatement.PROJECT_SELECT_EXPORT.prepareCursor(conn, FETCH_SIZE);
+						PreparedStatement materialStmt = SqlStatement.MATERIAL_SELECT_EXPORT.prepareCursor(conn, FETCH_SIZE);
+						PreparedStatement stepStmt = SqlStatement.STEP_SELECT_EXPORT.prepareCursor(conn, FETCH_SIZE);
+						PreparedStatement categoryStmt = SqlStatement.PROJECT_CATEGORY_SELECT_EXPORT.prepareCursor(conn, FETCH_SIZE);
+						ResultSet projects = projectStmt.executeQuery();
+						ResultSet materials = materialStmt.executeQuery();
+						ResultSet steps = stepStmt.executeQuery();
+						ResultSet categories = categoryStmt.executeQuery()) {
+					int count = 0;
+					boolean moreMaterials = materials.next();
+					boolean moreSteps = steps.next();
+					boolean moreCategories = categories.next();
+
+					while (projects.next()) {
+						int projectId = projects.getInt(1);
+
+						handler.startProject(projectId, projects.getString(2), projects.getBigDecimal(3),
+								projects.getBigDecimal(4), getNullableInt(projects, 5), projects.getString(6));
+
+						// Child rows before the current project belong to no exported project and are skipped
+						for (; moreMaterials && materials.getInt(1) <= projectId; moreMaterials = materials.next()) {
+							if (materials.getInt(1) == projectId) {
+								handler.material(materials.getInt(2), materials.getString(3), getNullableInt(materials, 4),
+										materials.getBigDecimal(5));
+							}
+						}
+
+						for (; moreSteps && steps.getInt(1) <= projectId; moreSteps = steps.next()) {
+							if (steps.getInt(1) == projectId) {
+								handler.step(steps.getInt(2), steps.getString(3), steps.getInt(4));
+							}
+						}
+
+						for (; moreCategories && categories.getInt(1) <= projectId; moreCategories = categories.next()) {
+							if (categories.getInt(1) == projectId) {
+								Category category = categoryCatalog.get(conn, categories.getInt(2));
+
+								if (Objects.nonNull(category)) {
+									handler.category(category.getCategoryId(), category.getCategoryName());
+								}
+							}
+						}
+
+						handler.endProject();
+						count++;
+					}
+
+					commitTransaction(conn);
+					return count;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw e instanceof RuntimeException ? (RuntimeException) e : new DbException(e);
+				}
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}, Integer::intValue);
+	} // END of exportAll
+
+
+
+	private static Integer getNullableInt(ResultSet rs, int column) throws SQLException {
+		int value = rs.getInt(column);
+		return rs.wasNull() ? null : value;
+	}
+}
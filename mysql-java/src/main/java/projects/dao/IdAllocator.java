@@ -0,0 +1,256 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import projects.exception.DbException;
+
+// Client-side hi/lo ID allocator. Blocks of IDs are reserved from the id_sequence table, one round trip per block,
+// and handed out from memory. Handing out an ID is a single compare-and-set on the current block, so threads never
+// block each other; only the thread that finds a block exhausted takes the per-sequence lock to reserve the next one.
+//
+// Because IDs are known before the rows are written, a parent and all of its children can go out in the same batched
+// pass. Every writer of a table must take its IDs from the allocator once it is in use: a plain AUTO_INCREMENT insert
+// could take an ID that sits in a block reserved by another process. The one exception is a bulk load of rows that
+// carry their own IDs (BulkLoader), which moves the sequences past them and calls discardBlocks afterwards.
+public class IdAllocator {
+	// Tables whose IDs can be allocated, mapped to the statement that seeds their sequence row
+	private static final Map<String, SqlStatement> SEED_STATEMENTS = Map.of("project",
+			SqlStatement.ID_SEQUENCE_SEED_PROJECT, "material", SqlStatement.ID_SEQUENCE_SEED_MATERIAL, "step",
+			SqlStatement.ID_SEQUENCE_SEED_STEP);
+
+	// Tables whose IDs can be allocated, mapped to the statement that moves their sequence past the existing rows
+	private static final Map<String, SqlStatement> ADVANCE_STATEMENTS = Map.of("project",
+			SqlStatement.ID_SEQUENCE_ADVANCE_PROJECT, "material", SqlStatement.ID_SEQUENCE_ADVANCE_MATERIAL, "step",
+			SqlStatement.ID_SEQUENCE_ADVANCE_STEP);
+
+	// -Dprojects.ids.hilo=true switches inserts from AUTO_INCREMENT keys to client-side hi/lo ID blocks
+	private static final IdAllocator CONFIGURED = Boolean.getBoolean("projects.ids.hilo")
+			? new IdAllocator(Integer.getInteger("projects.ids.blockSize", 1000))
+			: null;
+
+	private final int blockSize;
+	private final Map<String, Sequence> sequences = new ConcurrentHashMap<>();
+
+	// Reservations run on this connection, opened outside the pool, never on a pooled one: the callers already hold a
+	// pooled connection, so borrowing a second one could wait forever once every thread of a full pool does the same
+	private Connection reserveConnection;
+
+
+
+	public IdAllocator(int blockSize) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Block size must be at least 1");
+		}
+
+		this.blockSize = blockSize;
+	}
+
+
+
+	// configured method to get the allocator shared by the DAOs, or null when hi/lo IDs are not turned on
+	public static IdAllocator configured() {
+		return CONFIGURED;
+	}
+
+
+
+	// nextId method to hand out the next ID for the given table
+	public int nextId(String table) {
+		return sequenceFor(table).next();
+	}
+
+
+
+	// nextIds method to hand out count IDs for the given table. The IDs are unique but not necessarily consecutive.
+	public int[] nextIds(String table, int count) {
+		Sequence sequence = sequenceFor(table);
+		int[] ids = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			ids[i] = sequence.next();
+		}
+
+		return ids;
+	}
+
+
+
+	// isSequenced method to tell whether a table's IDs come from an ID sequence
+	public static boolean isSequenced(String table) {
+		return SEED_STATEMENTS.containsKey(table);
+	}
+
+
+
+	// advancePastExisting method for writers that insert rows without taking their IDs from the allocator (BulkLoader):
+	// moves the table's sequence past the highest ID in the table, as seen by the caller's transaction, so no block
+	// reserved afterwards overlaps the rows. Blocks reserved before it are not affected. A sequence that was never
+	// seeded needs nothing, since seeding starts past the existing rows.
+	static void advancePastExisting(Connection conn, String table) throws SQLException {
+		try (PreparedStatement stmt = ADVANCE_STATEMENTS.get(table).prepare(conn)) {
+			stmt.executeUpdate();
+		}
+	}
+
+
+
+	// discardBlocks method to drop the blocks held in memory, so the next ID of every table comes from a newly reserved
+	// block. Called after rows were written with IDs that did not come from this allocator and the sequences were moved
+	// past them; the rest of the dropped blocks is never used. Only affects this process.
+	public void discardBlocks() {
+		sequences.values().forEach(Sequence::discard);
+	}
+
+
+
+	private Sequence sequenceFor(String table) {
+		if (!isSequenced(table)) {
+			throw new DbException("No ID sequence for table " + table);
+		}
+
+		return sequences.computeIfAbsent(table, Sequence::new);
+	}
+
+
+
+	// reserveBlock method to move the sequence forward by blockSize in one statement. LAST_INSERT_ID(expr) makes the
+	// server return the new value in the OK packet, which the driver exposes as the generated key, so no follow-up
+	// SELECT is needed. The statement runs on the allocator's own auto-committed connection, so the row lock is
+	// released at once and the reservation survives a rollback of the caller's transaction. Reservations are rare (one
+	// per block), so one connection shared by all sequences is enough.
+	private synchronized Block reserveBlock(String table) {
+		try {
+			Connection conn = reserveConnection();
+
+			for (int attempt = 0; attempt < 2; attempt++) {
+				try (PreparedStatement stmt = SqlStatement.ID_SEQUENCE_RESERVE.prepare(conn, Statement.RETURN_GENERATED_KEYS)) {
+					stmt.setInt(1, blockSize);
+					stmt.setString(2, table);
+
+					if (stmt.executeUpdate() == 1) {
+						int end = readLastInsertId(conn, stmt);
+						return new Block(end - blockSize, end);
+					}
+				}
+
+				seedSequence(conn, table);
+			}
+
+			throw new DbException("Unable to reserve IDs for " + table);
+
+		} catch (SQLException e) {
+			closeReserveConnection();
+			throw new DbException(e);
+		}
+	} // END of reserveBlock
+
+
+
+	// reserveConnection method to open the reservation connection, or reopen it after a failure or a server timeout
+	private Connection reserveConnection() throws SQLException {
+		if (reserveConnection == null || !reserveConnection.isValid(5)) {
+			closeReserveConnection();
+			reserveConnection = DbConnection.openDedicatedConnection();
+			reserveConnection.setAutoCommit(true);
+		}
+
+		return reserveConnection;
+	}
+
+
+
+	private void closeReserveConnection() {
+		if (reserveConnection != null) {
+			try {
+				reserveConnection.close();
+			} catch (SQLException e) {
+				// The connection is dropped either way
+			}
+
+			reserveConnection = null;
+		}
+	}
+
+
+
+	private int readLastInsertId(Connection conn, Statement stmt) throws SQLException {
+		try (ResultSet rs = stmt.getGeneratedKeys()) {
+			if (rs.next()) {
+				return rs.getInt(1);
+			}
+		}
+
+		try (Statement select = conn.createStatement(); ResultSet rs = select.executeQuery("SELECT LAST_INSERT_ID()")) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+
+
+	// seedSequence method to create the sequence row the first time a table is used, starting past the existing rows
+	private void seedSequence(Connection conn, String table) throws SQLException {
+		try (PreparedStatement stmt = SEED_STATEMENTS.get(table).prepare(conn)) {
+			stmt.executeUpdate();
+		}
+	}
+
+
+
+	// The IDs of one table. The current block is replaced under the lock only when it runs out.
+	private final class Sequence {
+		private final String table;
+		private volatile Block current;
+
+		private Sequence(String table) {
+			this.table = table;
+		}
+
+		private int next() {
+			while (true) {
+				Block block = current;
+
+				if (block != null) {
+					int id = block.next.getAndIncrement();
+
+					if (id < block.end) {
+						return id;
+					}
+				}
+
+				refill(block);
+			}
+		}
+
+		private synchronized void discard() {
+			current = null;
+		}
+
+		private synchronized void refill(Block exhausted) {
+			// Another thread may have refilled while this one waited for the lock
+			if (current == exhausted) {
+				current = reserveBlock(table);
+			}
+		}
+	}
+
+
+
+	// A reserved range of IDs, [next, end)
+	private static final class Block {
+		private final AtomicInteger next;
+		private final int end;
+
+		private Block(int start, int end) {
+			this.next = new AtomicInteger(start);
+			this.end = end;
+		}
+	}
+}
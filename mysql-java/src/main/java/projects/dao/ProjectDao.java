@@ -5,29 +5,88 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import projects.entity.Category;
 import projects.entity.Material;
 import projects.entity.Project;
 import projects.entity.Step;
 import projects.exception.DbException;
+import projects.exception.StaleProjectException;
+import projects.metrics.Metrics;
+import projects.metrics.OperationMetrics;
 import provided.util.DaoBase;
+import provided.util.RowMapper;
 
 
 
 public class ProjectDao extends DaoBase {
+	private static final Logger LOG = Logger.getLogger(ProjectDao.class.getName());
 
-	private static final String CATEGORY_TABLE = "category";
 	private static final String MATERIAL_TABLE = "material";
 	private static final String STEP_TABLE = "step";
 	private static final String PROJECT_TABLE = "project";
 	private static final String PROJECT_CATEGORY_TABLE = "project_category";
 	
+	// Maximum number of IDs bound into a single IN (...) list by the batched loaders
+	private static final int IN_CHUNK_SIZE = SqlStatement.MAX_IN_LIST_SIZE;
+	
+	// Whether fetchProjectById sends its four SELECTs as one multi-statement request. Starts out as configured on
+	// DbConnection and is switched off the first time the server refuses such a request.
+	private static final AtomicBoolean MULTI_QUERY_LOAD = new AtomicBoolean(DbConnection.isMultiQueriesEnabled());
+	
+	// Number of rows the streaming cursor pulls from the server per fetch (override with -Dprojects.db.fetchSize)
+	private static final int STREAM_FETCH_SIZE = Integer.getInteger("projects.db.fetchSize", 1000);
+	
+	private static final OperationMetrics INSERT_PROJECT = Metrics.operation("ProjectDao.insertProject");
+	private static final OperationMetrics INSERT_PROJECTS = Metrics.operation("ProjectDao.insertProjects");
+	private static final OperationMetrics FETCH_ALL_PROJECTS = Metrics.operation("ProjectDao.fetchAllProjects");
+	private static final OperationMetrics FETCH_ALL_PROJECTS_WITH_CHILDREN = Metrics.operation("ProjectDao.fetchAllProjectsWithChildren");
+	private static final OperationMetrics FETCH_PROJECT_BY_ID = Metrics.operation("ProjectDao.fetchProjectById");
+	private static final OperationMetrics FETCH_PROJECTS_BY_IDS = Metrics.operation("ProjectDao.fetchProjectsByIds");
+	private static final OperationMetrics STREAM_ALL_PROJECTS = Metrics.operation("ProjectDao.streamAllProjects");
+	private static final OperationMetrics FOR_EACH_PROJECT = Metrics.operation("ProjectDao.forEachProject");
+	private static final OperationMetrics FOR_EACH_PROJECT_WITH_DETAILS = Metrics.operation("ProjectDao.forEachProjectWithDetails");
+	private static final OperationMetrics FETCH_PROJECT_PAGE = Metrics.operation("ProjectDao.fetchProjectPage");
+	private static final OperationMetrics MODIFY_PROJECT_DETAILS = Metrics.operation("ProjectDao.modifyProjectDetails");
+	private static final OperationMetrics DELETE_PROJECT = Metrics.operation("ProjectDao.deleteProject");
+	
+	private final IdAllocator idAllocator;
+	private final CategoryCatalog categoryCatalog = CategoryCatalog.shared();
+	
+	
+	
+	public ProjectDao() {
+		this(IdAllocator.configured());
+	}
+	
+	// Passing an IdAllocator makes every insert use IDs reserved from the id_sequence table instead of AUTO_INCREMENT
+	public ProjectDao(IdAllocator idAllocator) {
+		this.idAllocator = idAllocator;
+	}
+	
 	
 	
 	
@@ -35,144 +94,798 @@ public class ProjectDao extends DaoBase {
 	// insertProject method to create a new project in the project table, using user input for all
 	// columns in the project table.
 	public Project insertProject(Project project) {
-		// @formatter:off
-		String sql = ""
-				+ "INSERT INTO " + PROJECT_TABLE + " "
-				+ "(project_name, estimated_hours, actual_hours, difficulty, notes) "
-				+ "VALUES "
-				+ "(?, ?, ?, ?, ?)";
-		// @formatter:on
+		return INSERT_PROJECT.time(() -> {
+			boolean allocated = Objects.nonNull(idAllocator);
 		
-		// try-catch to initiate the connection
-		try (Connection conn = DbConnection.getConnection()) {
-			startTransaction(conn);
+			// try-catch to initiate the connection
+			try (Connection conn = DbConnection.getConnection()) {
+				startTransaction(conn);
 			
-			// try-catch block to add user input data to the prepared SQL statement VALUES
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				setParameter(stmt, 1, project.getProjectName(), String.class);
-				setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
-				setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
-				setParameter(stmt, 4, project.getDifficulty(), Integer.class);
-				setParameter(stmt, 5, project.getNotes(), String.class);
+				// try-catch block to add user input data to the prepared SQL statement VALUES
+				try (PreparedStatement stmt = allocated ? SqlStatement.PROJECT_INSERT_WITH_ID.prepare(conn)
+						: SqlStatement.PROJECT_INSERT.prepare(conn, Statement.RETURN_GENERATED_KEYS)) {
+					Integer projectId = allocated ? idAllocator.nextId(PROJECT_TABLE) : null;
+				
+					setProjectParameters(stmt, project);
 				
-				stmt.executeUpdate();
+					if (allocated) {
+						setParameter(stmt, 6, projectId, Integer.class);
+					}
+				
+					stmt.executeUpdate();
+				
+					if (!allocated) {
+						projectId = getGeneratedIds(stmt, 1)[0];
+					}
 				
-				Integer projectId = getLastInsertId(conn, PROJECT_TABLE);
-				commitTransaction(conn);
+					commitTransaction(conn);
 				
-				project.setProjectId(projectId);
-				return project;
+					project.setProjectId(projectId);
+					project.setVersion(0);
+					project.clearChangedColumns();
+					return project;
 				
+				}
+			
+				catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+			} catch (SQLException e) {
+				throw new DbException(e);
 			}
+		});
+	} // END of insertProject method
+
+
+
+
+	// insertProjects method to write many projects together with their materials, steps and category links in a single
+	// transaction. Each table is written with one JDBC batch (the connection URL enables rewriteBatchedStatements, which
+	// turns a batch into multi-row INSERTs), so the whole load takes a handful of round trips regardless of how many
+	// projects it contains. Without an IdAllocator the generated keys of each batch are copied back onto the entities
+	// before the next table is written; with one, every ID is assigned up front and the batches go out back to back.
+	// Categories are linked by their existing category ID. Steps without a step order are ranked in list order,
+	// StepDao.STEP_GAP apart, so they can be reordered later without renumbering.
+	public List<Project> insertProjects(Collection<Project> projects) {
+		return INSERT_PROJECTS.time(() -> {
+			List<Project> toInsert = new ArrayList<>(projects);
+		
+			if (toInsert.isEmpty()) {
+				return toInsert;
+			}
+		
+			boolean allocated = Objects.nonNull(idAllocator);
+		
+			try (Connection conn = DbConnection.getConnection()) {
+				startTransaction(conn);
 			
-			catch (Exception e) {
-				rollbackTransaction(conn);
+				try {
+					if (allocated) {
+						int[] ids = idAllocator.nextIds(PROJECT_TABLE, toInsert.size());
+					
+						for (int i = 0; i < ids.length; i++) {
+							toInsert.get(i).setProjectId(ids[i]);
+						}
+					}
+				
+					insertBatch(conn, allocated ? SqlStatement.PROJECT_INSERT_WITH_ID : SqlStatement.PROJECT_INSERT, toInsert, allocated, (stmt, project) -> {
+						setProjectParameters(stmt, project);
+					
+						if (allocated) {
+							setParameter(stmt, 6, project.getProjectId(), Integer.class);
+						}
+					}, Project::setProjectId);
+				
+					List<Material> materials = new ArrayList<>();
+					List<Step> steps = new ArrayList<>();
+				
+					for (Project project : toInsert) {
+						for (Material material : project.getMaterials()) {
+							material.setProjectId(project.getProjectId());
+							materials.add(material);
+						}
+					
+						int position = 1;
+					
+						for (Step step : project.getSteps()) {
+							step.setProjectId(project.getProjectId());
+						
+							if (Objects.isNull(step.getStepOrder())) {
+								step.setStepOrder(position * StepDao.STEP_GAP);
+							}
+						
+							position++;
+							steps.add(step);
+						}
+					}
+				
+					if (allocated) {
+						int[] materialIds = idAllocator.nextIds(MATERIAL_TABLE, materials.size());
+						int[] stepIds = idAllocator.nextIds(STEP_TABLE, steps.size());
+					
+						for (int i = 0; i < materialIds.length; i++) {
+							materials.get(i).setMaterialId(materialIds[i]);
+						}
+					
+						for (int i = 0; i < stepIds.length; i++) {
+							steps.get(i).setStepId(stepIds[i]);
+						}
+					}
+				
+					insertBatch(conn, allocated ? SqlStatement.MATERIAL_INSERT_WITH_ID : SqlStatement.MATERIAL_INSERT, materials, allocated, (stmt, material) -> {
+						setParameter(stmt, 1, material.getProjectId(), Integer.class);
+						setParameter(stmt, 2, material.getMaterialName(), String.class);
+						setParameter(stmt, 3, material.getNumRequired(), Integer.class);
+						setParameter(stmt, 4, material.getCost(), BigDecimal.class);
+					
+						if (allocated) {
+							setParameter(stmt, 5, material.getMaterialId(), Integer.class);
+						}
+					}, Material::setMaterialId);
+				
+					insertBatch(conn, allocated ? SqlStatement.STEP_INSERT_WITH_ID : SqlStatement.STEP_INSERT, steps, allocated, (stmt, step) -> {
+						setParameter(stmt, 1, step.getProjectId(), Integer.class);
+						setParameter(stmt, 2, step.getStepText(), String.class);
+						setParameter(stmt, 3, step.getStepOrder(), Integer.class);
+					
+						if (allocated) {
+							setParameter(stmt, 4, step.getStepId(), Integer.class);
+						}
+					}, Step::setStepId);
+				
+					try (PreparedStatement stmt = SqlStatement.PROJECT_CATEGORY_INSERT.prepare(conn)) {
+						boolean linked = false;
+					
+						for (Project project : toInsert) {
+							for (Category category : project.getCategories()) {
+								setParameter(stmt, 1, project.getProjectId(), Integer.class);
+								setParameter(stmt, 2, category.getCategoryId(), Integer.class);
+								stmt.addBatch();
+								linked = true;
+							}
+						}
+					
+						if (linked) {
+							stmt.executeBatch();
+						}
+					}
+				
+					commitTransaction(conn);
+					
+					for (Project project : toInsert) {
+						project.setVersion(0);
+						project.clearChangedColumns();
+					}
+					
+					return toInsert;
+				
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+			
+			} catch (SQLException e) {
 				throw new DbException(e);
 			}
-		} catch (SQLException e) {
-			throw new DbException(e);
+		}, List::size);
+	} // END of insertProjects
+
+
+
+	// insertBatch method to write the rows as one JDBC batch. When the IDs were not allocated up front, the generated
+	// keys are read back and handed to idSetter in batch order.
+	private <T> void insertBatch(Connection conn, SqlStatement sql, List<T> rows, boolean allocated, BatchBinder<T> binder,
+			BiConsumer<T, Integer> idSetter) throws SQLException {
+		if (rows.isEmpty()) {
+			return;
 		}
-	} // END of insertProject method
+		
+		try (PreparedStatement stmt = allocated ? sql.prepare(conn) : sql.prepare(conn, Statement.RETURN_GENERATED_KEYS)) {
+			for (T row : rows) {
+				binder.bind(stmt, row);
+				stmt.addBatch();
+			}
+			
+			stmt.executeBatch();
+			
+			if (!allocated) {
+				int[] ids = getGeneratedIds(stmt, rows.size());
+				
+				for (int i = 0; i < ids.length; i++) {
+					idSetter.accept(rows.get(i), ids[i]);
+				}
+			}
+		}
+	}
+
+
+
+	private void setProjectParameters(PreparedStatement stmt, Project project) throws SQLException {
+		setParameter(stmt, 1, project.getProjectName(), String.class);
+		setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
+		setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
+		setParameter(stmt, 4, project.getDifficulty(), Integer.class);
+		setParameter(stmt, 5, project.getNotes(), String.class);
+	}
+
+
+
+	@FunctionalInterface
+	private interface BatchBinder<T> {
+		void bind(PreparedStatement stmt, T row) throws SQLException;
+	}
 
 
 
 
 	// fetchAllProjects DAO layer method, called on by ProjectService.java to provide a list of all available projects
 	public List<Project> fetchAllProjects() {
-		String sql = "SELECT * FROM " + PROJECT_TABLE + " ORDER BY project_name";
-		
-		try (Connection conn = DbConnection.getConnection()) {
-			startTransaction(conn);
+		return FETCH_ALL_PROJECTS.time(() -> {
+			try (Connection conn = DbConnection.getReadConnection()) {
+				startReadOnly(conn);
 			
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				try(ResultSet rs = stmt.executeQuery()) {
-					List<Project> projects = new LinkedList<>();
+				try (PreparedStatement stmt = SqlStatement.PROJECT_SELECT_ALL.prepare(conn)) {
+					try(ResultSet rs = stmt.executeQuery()) {
+						List<Project> projects = new LinkedList<>();
+						RowMapper<Project> mapper = rowMapper(rs, Project.class);
 					
-					while (rs.next()) {
-						 projects.add(extract(rs, Project.class));
+						while (rs.next()) {
+							 projects.add(mapper.map(rs));
+						}
+					
+						return projects;
+				
 					}
+				
+				
+				} catch (Exception e) {
+					throw new DbException(e);
+				}
+			
+			} catch (SQLException e) {
+				throw new DbException(e);
+			
+			}
+		}, List::size);
+	}
+
+
+
+
+	// fetchProjectById method called by the service layer for selection 3, to provide details on the selected project.
+	// With -Dprojects.db.multiQueries=true the project and its children are loaded in one round trip; if the server
+	// refuses the multi-statement request itself (a syntax error or an unsupported feature), the one-trip load is
+	// switched off for good and the four statements are sent one by one. Any other failure is passed on as usual.
+	public Optional<Project> fetchProjectById(Integer projectId) {
+		return FETCH_PROJECT_BY_ID.time(() -> {
+			try (Connection conn = DbConnection.getReadConnection()) {
+				startReadOnly(conn);
+			
+				if (MULTI_QUERY_LOAD.get()) {
+					try {
+						Optional<Project> project = fetchProjectByIdInOneTrip(conn, projectId);
+						return project;
 					
-					return projects;
+					} catch (SQLException e) {
+						if (!isMultiQueryRefused(e)) {
+							throw new DbException(e);
+						}
+
+						MULTI_QUERY_LOAD.set(false);
+						LOG.log(Level.WARNING, "Multi-statement project load refused; falling back to one statement per table", e);
+					}
+				}
+			
+				try {
+					Project project = null;
 				
+				try (PreparedStatement stmt = SqlStatement.PROJECT_SELECT_BY_ID.prepare(conn)) {
+					setParameter(stmt, 1, projectId, Integer.class);
+						
+							try (ResultSet rs = stmt.executeQuery()) {
+								if (rs.next()) {
+									project = extract(rs, Project.class);
+								}
+							}
+					
+						// If statement to gather materials, steps, and categories associated with the selected project ID
+						if (Objects.nonNull(project)) {
+							project.getMaterials().addAll(fetchProjectMaterials(conn, projectId));
+							project.getSteps().addAll(fetchProjectSteps(conn, projectId));
+							project.getCategories().addAll(fetchProjectCategories(conn, projectId));
+						}
+					
+						return Optional.ofNullable(project);
+					}
+
+				} catch (Exception e) {
+					throw new DbException(e);
+				}
+			
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		
+		}, ProjectDao::countRows);
+	}  // END of fetchProjectById
+
+
+
+	// isMultiQueryRefused method to tell a server or driver that won't run a multi-statement request (SQLState 42000,
+	// which MySQL reports for the second statement when allowMultiQueries is off, or an unsupported feature) from a
+	// failure of the load itself, like a lost connection or a timeout
+	private static boolean isMultiQueryRefused(SQLException e) {
+		return e instanceof SQLSyntaxErrorException || e instanceof SQLFeatureNotSupportedException
+				|| "42000".equals(e.getSQLState());
+	}
+
+
+
+	// fetchProjectByIdInOneTrip method to send the four SELECTs of PROJECT_SELECT_AGGREGATE as one request and read
+	// their result sets in order: project, materials, steps, categories. Throws SQLException if the server rejects
+	// the request, and SQLFeatureNotSupportedException if it doesn't answer with all four result sets.
+	private Optional<Project> fetchProjectByIdInOneTrip(Connection conn, Integer projectId) throws SQLException {
+		try (PreparedStatement stmt = SqlStatement.PROJECT_SELECT_AGGREGATE.prepare(conn)) {
+			for (int index = 1; index <= 4; index++) {
+				setParameter(stmt, index, projectId, Integer.class);
+			}
+			
+			if (!stmt.execute()) {
+				throw new SQLException("Multi-statement project load returned no result set");
+			}
+			
+			Project project = null;
+			
+			try (ResultSet rs = stmt.getResultSet()) {
+				if (rs.next()) {
+					project = extract(rs, Project.class);
 				}
+			}
+			
+			List<Material> materials = new LinkedList<>();
+			
+			try (ResultSet rs = nextResultSet(stmt)) {
+				RowMapper<Material> mapper = rowMapper(rs, Material.class);
 				
+				while (rs.next()) {
+					materials.add(mapper.map(rs));
+				}
+			}
+			
+			List<Step> steps = new LinkedList<>();
+			
+			try (ResultSet rs = nextResultSet(stmt)) {
+				RowMapper<Step> mapper = rowMapper(rs, Step.class);
 				
-			} catch (Exception e) {
-				rollbackTransaction(conn);
-				throw new DbException(e);
+				while (rs.next()) {
+					steps.add(mapper.map(rs));
+				}
 			}
 			
-		} catch (SQLException e) {
-			throw new DbException(e);
+			List<Category> categories = new LinkedList<>();
 			
+			try (ResultSet rs = nextResultSet(stmt)) {
+				while (rs.next()) {
+					addCategory(conn, categories, rs.getInt(1));
+				}
+			}
+			
+			if (Objects.nonNull(project)) {
+				project.getMaterials().addAll(materials);
+				project.getSteps().addAll(steps);
+				project.getCategories().addAll(categories);
+			}
+			
+			return Optional.ofNullable(project);
+		}
+	} // END of fetchProjectByIdInOneTrip
+
+
+
+	private ResultSet nextResultSet(Statement stmt) throws SQLException {
+		if (!stmt.getMoreResults()) {
+			throw new SQLFeatureNotSupportedException("Multi-statement project load returned fewer result sets than statements");
 		}
+		
+		return stmt.getResultSet();
 	}
 
 
 
 
-	// fetchProjectById method called by the service layer for selection 3, to provide details on the selected project
-	public Optional<Project> fetchProjectById(Integer projectId) {
-		String sql = "Select * FROM " + PROJECT_TABLE + " WHERE project_id = ?";
+	// fetchProjectsByIds method to load full project aggregates (materials, steps and categories) for many projects at once.
+	// Each table is read with chunked IN (...) queries and the child rows are stitched onto their projects by project_id,
+	// so the number of round trips depends on the number of chunks and not on the number of projects. Projects are
+	// returned in the order of the given IDs; IDs that don't exist are skipped.
+	public List<Project> fetchProjectsByIds(Collection<Integer> projectIds) {
+		return FETCH_PROJECTS_BY_IDS.time(() -> {
+			List<Integer> ids = projectIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+		
+			if (ids.isEmpty()) {
+				return new LinkedList<>();
+			}
 		
-		try (Connection conn = DbConnection.getConnection()) {
-			startTransaction(conn);
+			try (Connection conn = DbConnection.getReadConnection()) {
+				startReadOnly(conn);
 			
+				try {
+					Map<Integer, Project> projectsById = new HashMap<>();
+				
+					for (List<Integer> chunk : chunk(ids)) {
+						try (PreparedStatement stmt = SqlStatement.PROJECT_SELECT_BY_IDS.prepareIn(conn, chunk.size())) {
+							setIdParameters(stmt, chunk);
+						
+							try (ResultSet rs = stmt.executeQuery()) {
+								RowMapper<Project> mapper = rowMapper(rs, Project.class);
+							
+								while (rs.next()) {
+									Project project = mapper.map(rs);
+									projectsById.put(project.getProjectId(), project);
+								}
+							}
+						}
+					}
+				
+					fetchChildren(conn, projectsById);
+				
+					List<Project> projects = new LinkedList<>();
+				
+					for (Integer projectId : ids) {
+						Project project = projectsById.get(projectId);
+					
+						if (Objects.nonNull(project)) {
+							projects.add(project);
+						}
+					}
+				
+					return projects;
+				
+				} catch (Exception e) {
+					throw new DbException(e);
+				}
+			
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}, ProjectDao::countRows);
+	} // END of fetchProjectsByIds
+
+
+
+
+	// fetchAllProjects variant that can also load the materials, steps and categories of every project in constant round trips
+	public List<Project> fetchAllProjects(boolean includeChildren) {
+		return FETCH_ALL_PROJECTS_WITH_CHILDREN.time(() -> {
+			List<Project> projects = fetchAllProjects();
+		
+			if (!includeChildren || projects.isEmpty()) {
+				return projects;
+			}
+		
+			try (Connection conn = DbConnection.getReadConnection()) {
+				startReadOnly(conn);
+			
+				try {
+					Map<Integer, Project> projectsById = new HashMap<>();
+					projects.forEach(project -> projectsById.put(project.getProjectId(), project));
+				
+					fetchChildren(conn, projectsById);
+					return projects;
+				
+				} catch (Exception e) {
+					throw new DbException(e);
+				}
+			
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}, ProjectDao::countRows);
+	} // END of fetchAllProjects(boolean)
+
+
+
+
+	// streamAllProjects method to read the project table through a forward-only cursor instead of materializing it.
+	// Rows are fetched from the server STREAM_FETCH_SIZE at a time (the connection URL enables useCursorFetch) and mapped
+	// as the stream is consumed. The caller must close the stream, which closes the result set and returns the connection.
+	public Stream<Project> streamAllProjects() {
+		return STREAM_ALL_PROJECTS.time(() -> {
+			Connection conn = DbConnection.getReadConnection();
+			PreparedStatement stmt = null;
+			ResultSet rs = null;
+		
 			try {
-				Project project = null;
+				startReadOnly(conn);
+				stmt = SqlStatement.PROJECT_SELECT_ALL.prepareCursor(conn, STREAM_FETCH_SIZE);
+				rs = stmt.executeQuery();
+			
+				ResultSet cursor = rs;
+				RowMapper<Project> mapper = rowMapper(cursor, Project.class);
+				AutoCloseable[] resources = { cursor, stmt, conn };
+			
+				Spliterator<Project> spliterator = new Spliterators.AbstractSpliterator<Project>(Long.MAX_VALUE,
+						Spliterator.ORDERED | Spliterator.NONNULL) {
+					@Override
+					public boolean tryAdvance(Consumer<? super Project> action) {
+						try {
+							if (!cursor.next()) {
+								return false;
+							}
+						
+							action.accept(mapper.map(cursor));
+							return true;
+						
+						} catch (SQLException e) {
+							throw new DbException(e);
+						}
+					}
+				};
+			
+				return StreamSupport.stream(spliterator, false).onClose(() -> closeAll(resources));
+			
+			} catch (Exception e) {
+				closeAll(new AutoCloseable[] { rs, stmt, conn });
+				throw new DbException(e);
+			}
+		});
+	} // END of streamAllProjects
+
+
+
+
+
+	// fetchProjectPage method to read one page of projects ordered by (project_name, project_id) using keyset pagination.
+	// Instead of an OFFSET, the page token carries the key of the last row already shown and the query seeks past it,
+	// so every page costs an index range scan of pageSize rows no matter how deep the user has paged.
+	// Pass a null token for the first page.
+	public ProjectPage fetchProjectPage(String pageToken, int pageSize) {
+		return FETCH_PROJECT_PAGE.time(() -> {
+			if (pageSize < 1) {
+				throw new DbException("Page size must be at least 1");
+			}
+		
+			Project after = Objects.isNull(pageToken) ? null : ProjectPage.decodeToken(pageToken);
+			SqlStatement sql = Objects.isNull(after) ? SqlStatement.PROJECT_SELECT_FIRST_PAGE : SqlStatement.PROJECT_SELECT_NEXT_PAGE;
+		
+			try (Connection conn = DbConnection.getReadConnection()) {
+				startReadOnly(conn);
+				
+				try (PreparedStatement stmt = sql.prepare(conn)) {
+					int index = 1;
+				
+					if (Objects.nonNull(after)) {
+						setParameter(stmt, index++, after.getProjectName(), String.class);
+						setParameter(stmt, index++, after.getProjectName(), String.class);
+						setParameter(stmt, index++, after.getProjectId(), Integer.class);
+					}
 				
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				setParameter(stmt, 1, projectId, Integer.class);
+					// One extra row tells us whether another page exists without a COUNT(*)
+					setParameter(stmt, index, pageSize + 1, Integer.class);
+				
+					try (ResultSet rs = stmt.executeQuery()) {
+						List<Project> projects = new ArrayList<>(pageSize);
+						RowMapper<Project> mapper = rowMapper(rs, Project.class);
+						boolean more = false;
+					
+						while (rs.next()) {
+							if (projects.size() == pageSize) {
+								more = true;
+								break;
+							}
+						
+							projects.add(mapper.map(rs));
+						}
+					
+						String nextPageToken = more ? ProjectPage.encodeToken(projects.get(projects.size() - 1)) : null;
+						return new ProjectPage(projects, nextPageToken);
+					}
+				}
+			
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}, page -> page.getProjects().size());
+	} // END of fetchProjectPage
+
+
+
+
+	// forEachProject method to hand every project to the consumer as it arrives from the cursor, in project name order
+	public void forEachProject(Consumer<Project> consumer) {
+		FOR_EACH_PROJECT.time(() -> {
+			try (Stream<Project> projects = streamAllProjects()) {
+				return projects.peek(consumer).count();
+			}
+		}, Long::intValue);
+	}
+
+
+
+	// forEachProjectWithDetails method to hand every project, with its materials, steps and categories, to the consumer in
+	// project ID order. Projects are read IN_CHUNK_SIZE at a time by keyset (project_id > the last one handed out) and
+	// their children loaded for the whole chunk on the same connection, which is returned to the pool before the chunk
+	// goes to the consumer. So a call holds one connection at a time and none while the consumer runs, memory stays
+	// bounded by one chunk, and round trips by the number of chunks. Each chunk is its own read: a project written
+	// during the pass is seen as of its chunk, which callers like the search index cover by queueing writes.
+	public void forEachProjectWithDetails(Consumer<Project> consumer) {
+		FOR_EACH_PROJECT_WITH_DETAILS.time(() -> {
+			int count = 0;
+			int lastProjectId = 0;
+			Map<Integer, Project> chunk = new LinkedHashMap<>();
+			
+			do {
+				chunk.clear();
+				
+				try (Connection conn = DbConnection.getReadConnection()) {
+					startReadOnly(conn);
+					
+					try (PreparedStatement stmt = SqlStatement.PROJECT_SELECT_ID_RANGE.prepare(conn)) {
+						setParameter(stmt, 1, lastProjectId, Integer.class);
+						setParameter(stmt, 2, IN_CHUNK_SIZE, Integer.class);
 						
 						try (ResultSet rs = stmt.executeQuery()) {
-							if (rs.next()) {
-								project = extract(rs, Project.class);
+							RowMapper<Project> mapper = rowMapper(rs, Project.class);
+							
+							while (rs.next()) {
+								Project project = mapper.map(rs);
+								chunk.put(project.getProjectId(), project);
+								lastProjectId = project.getProjectId();
 							}
 						}
+					}
 					
-					// If statement to gather materials, steps, and categories associated with the selected project ID
-					if (Objects.nonNull(project)) {
-						project.getMaterials().addAll(fetchProjectMaterials(conn, projectId));
-						project.getSteps().addAll(fetchProjectSteps(conn, projectId));
-						project.getCategories().addAll(fetchProjectCategories(conn, projectId));
+					if (!chunk.isEmpty()) {
+						fetchChildren(conn, chunk);
 					}
 					
-					return Optional.ofNullable(project);
+				} catch (SQLException e) {
+					throw new DbException(e);
 				}
+				
+				chunk.values().forEach(consumer);
+				count += chunk.size();
+				
+			} while (chunk.size() == IN_CHUNK_SIZE);
+			
+			return count;
+		}, Integer::intValue);
+	} // END of forEachProjectWithDetails
+
+
 
+	// countRows methods to count the rows a loaded aggregate was mapped from, for the rows-per-call metric
+	private static int countRows(Optional<Project> project) {
+		return project.map(ProjectDao::countRows).orElse(0);
+	}
+
+	private static int countRows(List<Project> projects) {
+		int rows = 0;
+		
+		for (Project project : projects) {
+			rows += countRows(project);
+		}
+		
+		return rows;
+	}
+
+	private static int countRows(Project project) {
+		return 1 + project.getMaterials().size() + project.getSteps().size() + project.getCategories().size();
+	}
+
+
+
+	private static void closeAll(AutoCloseable[] resources) {
+		DbException failure = null;
+		
+		for (AutoCloseable resource : resources) {
+			if (Objects.isNull(resource)) {
+				continue;
+			}
+			
+			try {
+				resource.close();
 			} catch (Exception e) {
-				rollbackTransaction(conn);
-				throw new DbException(e);
+				if (Objects.isNull(failure)) {
+					failure = new DbException(e);
+				}
+			}
+		}
+		
+		if (Objects.nonNull(failure)) {
+			throw failure;
+		}
+	}
+
+
+
+
+	// fetchChildren method to load the materials, steps and categories for every project in the map using one chunked
+	// IN (...) query per child table and add them to their projects.
+	private void fetchChildren(Connection conn, Map<Integer, Project> projectsById) throws SQLException {
+		List<Integer> ids = new ArrayList<>(projectsById.keySet());
+		
+		for (List<Integer> chunk : chunk(ids)) {
+			try (PreparedStatement stmt = SqlStatement.MATERIAL_SELECT_BY_PROJECTS.prepareIn(conn, chunk.size())) {
+				setIdParameters(stmt, chunk);
+				
+				try (ResultSet rs = stmt.executeQuery()) {
+					RowMapper<Material> mapper = rowMapper(rs, Material.class);
+					
+					while (rs.next()) {
+						Material material = mapper.map(rs);
+						projectsById.get(material.getProjectId()).getMaterials().add(material);
+					}
+				}
 			}
 			
-		} catch (SQLException e) {
-			throw new DbException(e);
+			try (PreparedStatement stmt = SqlStatement.STEP_SELECT_BY_PROJECTS.prepareIn(conn, chunk.size())) {
+				setIdParameters(stmt, chunk);
+				
+				try (ResultSet rs = stmt.executeQuery()) {
+					RowMapper<Step> mapper = rowMapper(rs, Step.class);
+					
+					while (rs.next()) {
+						Step step = mapper.map(rs);
+						projectsById.get(step.getProjectId()).getSteps().add(step);
+					}
+				}
+			}
+			
+			try (PreparedStatement stmt = SqlStatement.PROJECT_CATEGORY_SELECT_BY_PROJECTS.prepareIn(conn, chunk.size())) {
+				setIdParameters(stmt, chunk);
+				
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						addCategory(conn, projectsById.get(rs.getInt(1)).getCategories(), rs.getInt(2));
+					}
+				}
+			}
+		}
+	} // END of fetchChildren
+
+
+
+
+	// chunk method to split a list of IDs into pieces of at most IN_CHUNK_SIZE so IN lists stay a reasonable size
+	private static List<List<Integer>> chunk(List<Integer> ids) {
+		List<List<Integer>> chunks = new ArrayList<>();
+		
+		for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+			chunks.add(ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size())));
 		}
 		
-	}  // END of fetchProjectById
+		return chunks;
+	}
+
+
+
+	// setIdParameters method to bind the IDs into an IN (...) statement from SqlStatement, padding the list up to its
+	// precomputed size with the last ID
+	private void setIdParameters(PreparedStatement stmt, List<Integer> ids) throws SQLException {
+		int size = SqlStatement.inListSize(ids.size());
+		Integer last = ids.get(ids.size() - 1);
+		
+		for (int index = 0; index < size; index++) {
+			setParameter(stmt, index + 1, index < ids.size() ? ids.get(index) : last, Integer.class);
+		}
+	}
 
 
 
 
 	// fetchProjectCategories method, called by the fetchProjectById method to provide all related categories from the category table, associated with the selected project id.
+	// Only the category IDs are read from project_category; the categories themselves come from the in-memory CategoryCatalog.
 	
 	private List<Category> fetchProjectCategories(Connection conn, Integer projectId) throws SQLException {
-		// @formatter:off
-		String sql = ""
-			+ "SELECT c.* "
-			+ "FROM " + CATEGORY_TABLE + " c "
-			+ "JOIN " + PROJECT_CATEGORY_TABLE + " pc USING (category_id) " 
-			+ "WHERE project_id = ? ";
-		// @formatter:on
-
-		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+		try (PreparedStatement stmt = SqlStatement.PROJECT_CATEGORY_SELECT_BY_PROJECT.prepare(conn)) {
 			setParameter(stmt, 1, projectId, Integer.class);
 			
 			try(ResultSet rs = stmt.executeQuery()) {
 				List<Category> categories = new LinkedList<Category>();
 				
 				while (rs.next()) {
-					categories.add(extract(rs, Category.class));
+					addCategory(conn, categories, rs.getInt(1));
 					
 				}
 				
@@ -183,22 +896,29 @@ public class ProjectDao extends DaoBase {
 
 
 
+	private void addCategory(Connection conn, List<Category> categories, int categoryId) throws SQLException {
+		Category category = categoryCatalog.get(conn, categoryId);
+		
+		if (Objects.nonNull(category)) {
+			categories.add(category);
+		}
+	}
+
+
+
 	// fetchProjectSteps method, called by the fetchProjectById method to provide all related steps from the step table, associated with the selected project id.
 	
 
 	private List<Step> fetchProjectSteps(Connection conn, Integer projectId) throws SQLException {
-		// @formatter:off
-		String sql = "SELECT * FROM " + STEP_TABLE + " WHERE project_id = ?";
-		// @formatter:on
-
-		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+		try (PreparedStatement stmt = SqlStatement.STEP_SELECT_BY_PROJECT.prepare(conn)) {
 			setParameter(stmt, 1, projectId, Integer.class);
 			
 			try(ResultSet rs = stmt.executeQuery()) {
 				List<Step> steps = new LinkedList<Step>();
+				RowMapper<Step> mapper = rowMapper(rs, Step.class);
 				
 				while (rs.next()) {
-					steps.add(extract(rs, Step.class));
+					steps.add(mapper.map(rs));
 					
 				}
 				
@@ -211,19 +931,15 @@ public class ProjectDao extends DaoBase {
 	// fetchProjectMaterials method, called by the fetchProjectById method to provide all related materials from the material table, associated with the selected project id.
 	
 	private List<Material> fetchProjectMaterials(Connection conn, Integer projectId) throws SQLException {
-		// @formatter:off
-		String sql = "SELECT * FROM " + MATERIAL_TABLE + " WHERE project_id = ?";
-
-		// @formatter:on
-		
-		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+		try (PreparedStatement stmt = SqlStatement.MATERIAL_SELECT_BY_PROJECT.prepare(conn)) {
 			setParameter(stmt, 1, projectId, Integer.class);
 			
 			try(ResultSet rs = stmt.executeQuery()) {
 				List<Material> materials = new LinkedList<Material>();
+				RowMapper<Material> mapper = rowMapper(rs, Material.class);
 				
 				while (rs.next()) {
-					materials.add(extract(rs, Material.class));
+					materials.add(mapper.map(rs));
 					
 				}
 				
@@ -236,77 +952,119 @@ public class ProjectDao extends DaoBase {
 
 
 	
+	// modifyProjectDetails method to write only the columns changed on the project since it was loaded, or all five for
+	// a project built with the setters. Every update moves the version on by one. If the project carries the version it
+	// was read at, the update only succeeds while the row is still at that version and throws StaleProjectException
+	// otherwise, without holding any lock between the read and the write. Returns false if the project doesn't exist.
 	public boolean modifyProjectDetails(Project project) {
-		// @ formatter.off
-		String sql =""
-				+ "UPDATE " + PROJECT_TABLE + " SET " 
-				+ "project_name = ?, "
-				+ "estimated_hours = ?, "
-				+ "actual_hours = ?, "
-				+ "difficulty = ?, "
-				+ "notes = ? "
-				+ "WHERE project_id = ?";
-		// @ formatter.on
-
-		try (Connection conn = DbConnection.getConnection()) {
-			startTransaction(conn);
-			
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				setParameter(stmt, 1, project.getProjectName(), String.class);
-				setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
-				setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
-				setParameter(stmt, 4, project.getDifficulty(), Integer.class);
-				setParameter(stmt, 5, project.getNotes(), String.class);
-				setParameter(stmt, 6, project.getProjectId(), Integer.class);
-				
-				boolean updated = stmt.executeUpdate() == 1;
-				commitTransaction(conn);
-				
-				return updated;
-				
-			} catch (Exception e) {
-				rollbackTransaction(conn);
-				throw new DbException(e);
-				
-			}
+		return MODIFY_PROJECT_DETAILS.time(() -> {
+			Set<Project.Column> columns = project.getChangedColumns();
+			Integer version = project.getVersion();
+			boolean versioned = Objects.nonNull(version);
 			
+			try (Connection conn = DbConnection.getConnection()) {
+				startTransaction(conn);
 			
+				try {
+					int updated = 0;
+					
+					if (!columns.isEmpty()) {
+						try (PreparedStatement stmt = SqlStatement.prepareProjectUpdate(conn, columns, versioned)) {
+							int index = 1;
+							
+							for (Project.Column column : columns) {
+								setParameter(stmt, index++, column.getValue(project), column.getType());
+							}
+							
+							setParameter(stmt, index++, project.getProjectId(), Integer.class);
+							
+							if (versioned) {
+								setParameter(stmt, index, version, Integer.class);
+							}
+							
+							updated = stmt.executeUpdate();
+						}
+					}
+					
+					if (updated == 0) {
+						// Nothing was written: find out whether the project is missing or was changed by someone else
+						Integer currentVersion = fetchVersion(conn, project.getProjectId());
+						commitTransaction(conn);
+						
+						if (Objects.isNull(currentVersion)) {
+							return false;
+						}
+						
+						if (versioned && !version.equals(currentVersion)) {
+							throw new StaleProjectException(project.getProjectId(), version, currentVersion);
+						}
+						
+						return true;
+					}
+					
+					commitTransaction(conn);
+					
+					project.setVersion(versioned ? version + 1 : null);
+					project.clearChangedColumns();
+					return true;
+				
+				} catch (StaleProjectException e) {
+					throw e;
+				
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				
+				}
 			
-		} catch (SQLException e) {
-			throw new DbException(e);
-		}
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
 		
+		});
 	} // END of modifyProjectDetails
 
 
 
+	private Integer fetchVersion(Connection conn, Integer projectId) throws SQLException {
+		try (PreparedStatement stmt = SqlStatement.PROJECT_SELECT_VERSION.prepare(conn)) {
+			setParameter(stmt, 1, projectId, Integer.class);
+			
+			try (ResultSet rs = stmt.executeQuery()) {
+				return rs.next() ? rs.getInt(1) : null;
+			}
+		}
+	}
+
+
+
 
 	public boolean deleteProject(Integer projectId) {
-		String sql = "DELETE FROM " + PROJECT_TABLE + " WHERE project_id = ?";
-		
-		try (Connection conn = DbConnection.getConnection()) {
-			startTransaction(conn);
+		return DELETE_PROJECT.time(() -> {
+			try (Connection conn = DbConnection.getConnection()) {
+				startTransaction(conn);
 			
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				setParameter(stmt, 1, projectId, Integer.class);
+				try (PreparedStatement stmt = SqlStatement.PROJECT_DELETE.prepare(conn)) {
+					setParameter(stmt, 1, projectId, Integer.class);
 				
-				boolean deleted = stmt.executeUpdate() == 1;
+					boolean deleted = stmt.executeUpdate() == 1;
 				
-				commitTransaction(conn);
-				return deleted;
+					commitTransaction(conn);
+					return deleted;
 				
 				
 				
 				
-			} catch (Exception e) {
-				rollbackTransaction(conn);
-				throw new DbException(e);
-			}
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
 			
 			
-		} catch (SQLException e) {
-			throw new DbException(e);
-		}
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		});
 	}
 
 } // END of Class
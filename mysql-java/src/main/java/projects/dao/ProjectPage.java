@@ -0,0 +1,61 @@
+package projects.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+
+import projects.entity.Project;
+import projects.exception.DbException;
+
+// One page of a keyset-paginated project listing. The next page token is an opaque string that encodes the
+// (project_name, project_id) of the last project on this page; it is null when there are no more pages.
+public class ProjectPage {
+	private final List<Project> projects;
+	private final String nextPageToken;
+
+
+
+	ProjectPage(List<Project> projects, String nextPageToken) {
+		this.projects = projects;
+		this.nextPageToken = nextPageToken;
+	}
+
+	public List<Project> getProjects() {
+		return projects;
+	}
+
+	public String getNextPageToken() {
+		return nextPageToken;
+	}
+
+	public boolean hasNextPage() {
+		return Objects.nonNull(nextPageToken);
+	}
+
+
+
+	// encodeToken method to build the opaque cursor for the page that follows the given project
+	static String encodeToken(Project last) {
+		String key = last.getProjectId() + ":" + last.getProjectName();
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+	}
+
+
+
+	// decodeToken method to turn a cursor back into the project that the next page starts after
+	static Project decodeToken(String token) {
+		try {
+			String key = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			int separator = key.indexOf(':');
+
+			Project last = new Project();
+			last.setProjectId(Integer.valueOf(key.substring(0, separator)));
+			last.setProjectName(key.substring(separator + 1));
+			return last;
+
+		} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new DbException("Invalid page token: " + token, e);
+		}
+	}
+}
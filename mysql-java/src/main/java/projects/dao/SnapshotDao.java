@@ -0,0 +1,91 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+// The queries the snapshot catalog reconciles a snapshot file with: the database clock, every project ID and the IDs
+// of the projects whose updated_at moved since a point in time. Step writes touch their project's updated_at (see
+// StepDao), so a project's children changing counts as the project changing. IDs are read through forward-only cursors
+// into int arrays.
+public class SnapshotDao extends DaoBase {
+	// Number of rows each cursor pulls from the server per fetch (the same -Dprojects.db.fetchSize as ProjectDao)
+	private static final int FETCH_SIZE = Integer.getInteger("projects.db.fetchSize", 1000);
+
+
+
+	// fetchDatabaseTime method to read the database clock, in the same terms as the updated_at column
+	public long fetchDatabaseTime() {
+		try (Connection conn = DbConnection.getReadConnection()) {
+			startReadOnly(conn);
+
+			try (PreparedStatement stmt = SqlStatement.SELECT_CURRENT_TIMESTAMP.prepare(conn);
+					ResultSet rs = stmt.executeQuery()) {
+				rs.next();
+				return rs.getTimestamp(1).getTime();
+			}
+
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+
+
+	// fetchProjectIds method to list every project ID in ascending order
+	public int[] fetchProjectIds() {
+		try (Connection conn = DbConnection.getReadConnection()) {
+			startReadOnly(conn);
+
+			try (PreparedStatement stmt = SqlStatement.PROJECT_SELECT_IDS.prepareCursor(conn, FETCH_SIZE)) {
+				return readIds(stmt);
+			}
+
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+
+
+	// fetchProjectIdsChangedSince method to list, in ascending order, the IDs of the projects inserted or changed at or
+	// after the given database time
+	public int[] fetchProjectIdsChangedSince(long databaseTime) {
+		try (Connection conn = DbConnection.getReadConnection()) {
+			startReadOnly(conn);
+
+			try (PreparedStatement stmt = SqlStatement.PROJECT_SELECT_IDS_CHANGED_SINCE.prepareCursor(conn, FETCH_SIZE)) {
+				stmt.setTimestamp(1, new Timestamp(databaseTime));
+				return readIds(stmt);
+			}
+
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+
+
+	private static int[] readIds(PreparedStatement stmt) throws SQLException {
+		int[] ids = new int[1024];
+		int count = 0;
+
+		try (ResultSet rs = stmt.executeQuery()) {
+			while (rs.next()) {
+				if (count == ids.length) {
+					ids = Arrays.copyOf(ids, count * 2);
+				}
+
+				ids[count++] = rs.getInt(1);
+			}
+		}
+
+		return Arrays.copyOf(ids, count);
+	}
+}
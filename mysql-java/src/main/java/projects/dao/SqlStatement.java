@@ -0,0 +1,272 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import projects.entity.Project;
+
+// Registry of every SQL statement the DAO layer issues. Each statement is built once, when this class loads, instead
+// of being concatenated on every call, and always has the same text. Together with the server-side prepared statement
+// cache enabled on the connection URL (useServerPrepStmts/cachePrepStmts) that means a hot statement is parsed by the
+// server once per pooled connection and then only executed.
+//
+// Statements with an IN (...) list are precomputed for a small set of list sizes (InList.SIZES). A list is padded up to
+// the next size by repeating its last value, which doesn't change the result but keeps the number of distinct statement
+// texts, and so the number of server-side prepares, small.
+//
+// Each statement counts how often it is prepared. Every preparation in the DAO layer is followed by exactly one
+// execute or executeBatch, so the count is the statement's execution count.
+public enum SqlStatement {
+	// @formatter:off
+	PROJECT_INSERT("INSERT INTO project (project_name, estimated_hours, actual_hours, difficulty, notes) VALUES (?, ?, ?, ?, ?)"),
+	PROJECT_INSERT_WITH_ID("INSERT INTO project (project_name, estimated_hours, actual_hours, difficulty, notes, project_id) VALUES (?, ?, ?, ?, ?, ?)"),
+	PROJECT_SELECT_ALL("SELECT * FROM project ORDER BY project_name"),
+	PROJECT_SELECT_BY_ID("SELECT * FROM project WHERE project_id = ?"),
+	PROJECT_SELECT_BY_IDS("SELECT * FROM project WHERE project_id IN (%s)"),
+	PROJECT_SELECT_ID_RANGE("SELECT * FROM project WHERE project_id > ? ORDER BY project_id LIMIT ?"),
+	PROJECT_SELECT_FIRST_PAGE("SELECT * FROM project ORDER BY project_name, project_id LIMIT ?"),
+	PROJECT_SELECT_NEXT_PAGE("SELECT * FROM project WHERE project_name > ? OR (project_name = ? AND project_id > ?) ORDER BY project_name, project_id LIMIT ?"),
+	PROJECT_SELECT_AGGREGATE("SELECT * FROM project WHERE project_id = ?; SELECT * FROM material WHERE project_id = ?; SELECT * FROM step WHERE project_id = ? ORDER BY step_order, step_id; SELECT category_id FROM project_category WHERE project_id = ?"),
+	PROJECT_UPDATE("UPDATE project SET %s, version = version + 1 WHERE project_id = ?"),
+	PROJECT_SELECT_VERSION("SELECT version FROM project WHERE project_id = ?"),
+	PROJECT_DELETE("DELETE FROM project WHERE project_id = ?"),
+	PROJECT_SELECT_EXPORT("SELECT project_id, project_name, estimated_hours, actual_hours, difficulty, notes FROM project ORDER BY project_id"),
+	PROJECT_TOUCH("UPDATE project SET updated_at = CURRENT_TIMESTAMP(3) WHERE project_id = ?"),
+	PROJECT_TOUCH_BY_STEP("UPDATE project SET updated_at = CURRENT_TIMESTAMP(3) WHERE project_id = (SELECT project_id FROM step WHERE step_id = ?)"),
+	PROJECT_SELECT_IDS("SELECT project_id FROM project ORDER BY project_id"),
+	PROJECT_SELECT_IDS_CHANGED_SINCE("SELECT project_id FROM project WHERE updated_at >= ? ORDER BY project_id"),
+	PROJECT_SELECT_ANALYTICS("SELECT project_id, project_name, estimated_hours, actual_hours, difficulty FROM project ORDER BY project_id"),
+
+	MATERIAL_INSERT("INSERT INTO material (project_id, material_name, num_required, cost) VALUES (?, ?, ?, ?)"),
+	MATERIAL_INSERT_WITH_ID("INSERT INTO material (project_id, material_name, num_required, cost, material_id) VALUES (?, ?, ?, ?, ?)"),
+	MATERIAL_SELECT_BY_PROJECT("SELECT * FROM material WHERE project_id = ?"),
+	MATERIAL_SELECT_BY_PROJECTS("SELECT * FROM material WHERE project_id IN (%s) ORDER BY project_id, material_id"),
+	MATERIAL_SELECT_EXPORT("SELECT project_id, material_id, material_name, num_required, cost FROM material ORDER BY project_id, material_id"),
+	MATERIAL_SELECT_ANALYTICS("SELECT project_id, num_required, cost FROM material"),
+
+	STEP_INSERT("INSERT INTO step (project_id, step_text, step_order) VALUES (?, ?, ?)"),
+	STEP_INSERT_WITH_ID("INSERT INTO step (project_id, step_text, step_order, step_id) VALUES (?, ?, ?, ?)"),
+	STEP_SELECT_BY_PROJECT("SELECT * FROM step WHERE project_id = ? ORDER BY step_order, step_id"),
+	STEP_SELECT_BY_PROJECTS("SELECT * FROM step WHERE project_id IN (%s) ORDER BY project_id, step_order, step_id"),
+	STEP_SELECT_EXPORT("SELECT project_id, step_id, step_text, step_order FROM step ORDER BY project_id, step_order, step_id"),
+	STEP_SELECT_IDS_IN_ORDER("SELECT step_id FROM step WHERE project_id = ? ORDER BY step_order, step_id"),
+	STEP_SELECT_PROJECT("SELECT project_id FROM step WHERE step_id = ?"),
+	STEP_SELECT_ORDER("SELECT step_order FROM step WHERE step_id = ? AND project_id = ?"),
+	STEP_SELECT_MAX_ORDER("SELECT MAX(step_order) FROM step WHERE project_id = ?"),
+	STEP_SELECT_NEXT_ORDER("SELECT MIN(step_order) FROM step WHERE project_id = ? AND (step_order > ? OR step_order = ? AND step_id > ?)"),
+	STEP_SELECT_NEXT_ORDER_EXCLUDING("SELECT MIN(step_order) FROM step WHERE project_id = ? AND (step_order > ? OR step_order = ? AND step_id > ?) AND step_id <> ?"),
+	STEP_UPDATE_ORDER("UPDATE step SET step_order = ? WHERE step_id = ?"),
+	STEP_DELETE("DELETE FROM step WHERE step_id = ?"),
+
+	CATEGORY_INSERT("INSERT INTO category (category_name) VALUES (?)"),
+	CATEGORY_SELECT_ALL("SELECT * FROM category ORDER BY category_id"),
+	CATEGORY_SELECT_BY_ID("SELECT * FROM category WHERE category_id = ?"),
+
+	PROJECT_CATEGORY_INSERT("INSERT INTO project_category (project_id, category_id) VALUES (?, ?)"),
+	PROJECT_CATEGORY_SELECT_BY_PROJECT("SELECT category_id FROM project_category WHERE project_id = ?"),
+	PROJECT_CATEGORY_SELECT_EXPORT("SELECT project_id, category_id FROM project_category ORDER BY project_id, category_id"),
+	PROJECT_CATEGORY_SELECT_ALL("SELECT project_id, category_id FROM project_category"),
+	PROJECT_CATEGORY_SELECT_BY_PROJECTS("SELECT project_id, category_id FROM project_category WHERE project_id IN (%s) ORDER BY project_id, category_id"),
+
+	SELECT_CURRENT_TIMESTAMP("SELECT CURRENT_TIMESTAMP(3)"),
+
+	ID_SEQUENCE_RESERVE("UPDATE id_sequence SET next_id = LAST_INSERT_ID(next_id + ?) WHERE sequence_name = ?"),
+	ID_SEQUENCE_SEED_PROJECT("INSERT IGNORE INTO id_sequence (sequence_name, next_id) SELECT 'project', COALESCE(MAX(project_id), 0) + 1 FROM project"),
+	ID_SEQUENCE_SEED_MATERIAL("INSERT IGNORE INTO id_sequence (sequence_name, next_id) SELECT 'material', COALESCE(MAX(material_id), 0) + 1 FROM material"),
+	ID_SEQUENCE_SEED_STEP("INSERT IGNORE INTO id_sequence (sequence_name, next_id) SELECT 'step', COALESCE(MAX(step_id), 0) + 1 FROM step"),
+	ID_SEQUENCE_ADVANCE_PROJECT("UPDATE id_sequence SET next_id = GREATEST(next_id, (SELECT COALESCE(MAX(project_id), 0) + 1 FROM project)) WHERE sequence_name = 'project'"),
+	ID_SEQUENCE_ADVANCE_MATERIAL("UPDATE id_sequence SET next_id = GREATEST(next_id, (SELECT COALESCE(MAX(material_id), 0) + 1 FROM material)) WHERE sequence_name = 'material'"),
+	ID_SEQUENCE_ADVANCE_STEP("UPDATE id_sequence SET next_id = GREATEST(next_id, (SELECT COALESCE(MAX(step_id), 0) + 1 FROM step)) WHERE sequence_name = 'step'");
+	// @formatter:on
+
+	// The largest IN (...) list that can be bound into one statement
+	public static final int MAX_IN_LIST_SIZE = 500;
+
+	private final String template;
+	private final String sql;
+	private final String[] inListSql;
+	private final LongAdder executions = new LongAdder();
+
+
+
+	SqlStatement(String sql) {
+		this.template = sql;
+
+		if (sql.contains("IN (%s)")) {
+			this.sql = null;
+			this.inListSql = new String[InList.SIZES.length];
+
+			for (int i = 0; i < InList.SIZES.length; i++) {
+				inListSql[i] = String.format(sql, String.join(", ", Collections.nCopies(InList.SIZES[i], "?")));
+			}
+		} else {
+			// Other templates, like PROJECT_UPDATE, are completed by their own prepare method
+			this.sql = sql.contains("%s") ? null : sql;
+			this.inListSql = null;
+		}
+	}
+
+
+
+	public String getSql() {
+		if (inListSql != null) {
+			throw new IllegalStateException(name() + " needs an IN list size");
+		}
+
+		if (sql == null) {
+			throw new IllegalStateException(name() + " is a template: " + template);
+		}
+
+		return sql;
+	}
+
+
+
+	// getSql method for IN (...) statements: the text for the smallest precomputed list that holds valueCount values
+	public String getSql(int valueCount) {
+		if (inListSql == null) {
+			throw new IllegalStateException(name() + " has no IN list");
+		}
+
+		return inListSql[sizeIndex(valueCount)];
+	}
+
+
+
+	// prepare method to prepare the statement on the connection and count the execution that follows
+	public PreparedStatement prepare(Connection conn) throws SQLException {
+		executions.increment();
+		return conn.prepareStatement(getSql());
+	}
+
+
+
+	// prepare method for inserts whose generated keys are read back (pass Statement.RETURN_GENERATED_KEYS)
+	public PreparedStatement prepare(Connection conn, int autoGeneratedKeys) throws SQLException {
+		executions.increment();
+		return conn.prepareStatement(getSql(), autoGeneratedKeys);
+	}
+
+
+
+	// prepareIn method to prepare an IN (...) statement sized for valueCount values. The caller binds
+	// inListSize(valueCount) values, padding the list with its last value.
+	public PreparedStatement prepareIn(Connection conn, int valueCount) throws SQLException {
+		executions.increment();
+		return conn.prepareStatement(getSql(valueCount));
+	}
+
+
+
+	// prepareCursor method to prepare a forward-only, read-only statement for streaming through a cursor
+	public PreparedStatement prepareCursor(Connection conn, int fetchSize) throws SQLException {
+		executions.increment();
+
+		PreparedStatement stmt = conn.prepareStatement(getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		stmt.setFetchSize(fetchSize);
+		return stmt;
+	}
+
+
+
+	// prepareProjectUpdate method to prepare an UPDATE of only the given project columns. It always bumps the version;
+	// with versioned set it also only matches the row at the version bound last. Bind the column values in
+	// Project.Column order, then the project ID, then the expected version.
+	public static PreparedStatement prepareProjectUpdate(Connection conn, Set<Project.Column> columns, boolean versioned)
+			throws SQLException {
+		if (columns.isEmpty()) {
+			throw new IllegalArgumentException("No project columns to update");
+		}
+
+		PROJECT_UPDATE.executions.increment();
+		return conn.prepareStatement(ProjectUpdates.getSql(columns, versioned));
+	}
+
+
+
+	// inListSize method to get the padded size of the IN list that valueCount values are bound into
+	public static int inListSize(int valueCount) {
+		return InList.SIZES[sizeIndex(valueCount)];
+	}
+
+
+
+	private static int sizeIndex(int valueCount) {
+		for (int i = 0; i < InList.SIZES.length; i++) {
+			if (valueCount <= InList.SIZES[i]) {
+				return i;
+			}
+		}
+
+		throw new IllegalArgumentException(valueCount + " values exceed the largest IN list of " + MAX_IN_LIST_SIZE);
+	}
+
+
+
+	public long getExecutionCount() {
+		return executions.sum();
+	}
+
+
+
+	// executionCounts method to snapshot the execution count of every statement, in declaration order
+	public static Map<String, Long> executionCounts() {
+		Map<String, Long> counts = new LinkedHashMap<>();
+
+		for (SqlStatement statement : values()) {
+			counts.put(statement.name(), statement.getExecutionCount());
+		}
+
+		return counts;
+	}
+
+
+
+	// The texts of the partial project updates, one per combination of changed columns and version check. Each is built
+	// the first time it is needed and then reused, so a combination always sends the same statement text.
+	private static final class ProjectUpdates {
+		private static final Project.Column[] COLUMNS = Project.Column.values();
+		private static final AtomicReferenceArray<String> SQL = new AtomicReferenceArray<>(2 << COLUMNS.length);
+
+		private static String getSql(Set<Project.Column> columns, boolean versioned) {
+			int mask = 0;
+
+			for (Project.Column column : columns) {
+				mask |= 1 << column.ordinal();
+			}
+
+			int index = mask << 1 | (versioned ? 1 : 0);
+			String sql = SQL.get(index);
+
+			if (sql == null) {
+				StringBuilder assignments = new StringBuilder();
+
+				for (Project.Column column : COLUMNS) {
+					if (columns.contains(column)) {
+						assignments.append(assignments.length() == 0 ? "" : ", ").append(column.getColumnName()).append(" = ?");
+					}
+				}
+
+				sql = String.format(PROJECT_UPDATE.template, assignments) + (versioned ? " AND version = ?" : "");
+				SQL.set(index, sql);
+			}
+
+			return sql;
+		}
+	}
+
+
+
+	// Holds the IN (...) list sizes that are precomputed; enum constructors can't read the enum's own static fields
+	private static final class InList {
+		private static final int[] SIZES = { 1, 8, 32, 128, MAX_IN_LIST_SIZE };
+	}
+}
@@ -0,0 +1,490 @@
+package projects.dao;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import projects.metrics.LatencyHistogram;
+
+// JDBC tracing layer. When -Dprojects.trace.enabled=true, DbConnection wraps every connection it hands out so that the
+// statements prepared or created on it are timed. For each execution it records:
+//   - the execute phase: the execute/executeQuery/executeUpdate/executeBatch call
+//   - the fetch phase: the time spent in ResultSet.next() on the result sets of that execution, and the row count
+//   - the SQL text and the bind values, redacted according to -Dprojects.trace.bindValues:
+//     redacted (default) shows numbers and masks strings and other values, full shows everything, none shows nothing
+//
+// An execution is complete when its statement is closed or executed again. Executions that took at least
+// -Dprojects.trace.slowMillis (default 100) are logged at WARNING and kept in a ring buffer of the last
+// -Dprojects.trace.bufferSize (default 100) slow queries. Every execution also feeds a latency histogram per SQL text.
+// Both can be read at runtime through getSlowQueries() and getStatementReport(), or over JMX as
+// projects:type=StatementTracer.
+//
+// When tracing is disabled, DbConnection returns the pooled connection unwrapped, so the only cost is one check of a
+// static final flag per borrowed connection.
+public class StatementTracer implements StatementTracerMBean {
+	private static final Logger LOG = Logger.getLogger(StatementTracer.class.getName());
+
+	private static final boolean ENABLED = Boolean.getBoolean("projects.trace.enabled");
+	private static final StatementTracer SHARED = ENABLED ? createShared() : null;
+
+	private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+	public enum BindValues {
+		NONE, REDACTED, FULL
+	}
+
+	private volatile long slowThresholdNanos;
+	private final BindValues bindValues;
+
+	private final AtomicReferenceArray<SlowQuery> slowQueries;
+	private final AtomicLong slowQuerySequence = new AtomicLong();
+
+	private final Map<String, StatementStats> statementStats = new ConcurrentHashMap<>();
+	private final LongAdder tracedCount = new LongAdder();
+	private final LongAdder slowCount = new LongAdder();
+
+
+
+	public StatementTracer(long slowThresholdMillis, int bufferSize, BindValues bindValues) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Slow query buffer size must be at least 1");
+		}
+
+		this.slowThresholdNanos = slowThresholdMillis * 1_000_000;
+		this.slowQueries = new AtomicReferenceArray<>(bufferSize);
+		this.bindValues = bindValues;
+	}
+
+
+
+	// isEnabled method to tell whether -Dprojects.trace.enabled turned tracing on for DbConnection
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+
+
+
+	// shared method to get the tracer DbConnection uses, or null when tracing is disabled
+	public static StatementTracer shared() {
+		return SHARED;
+	}
+
+
+
+	private static StatementTracer createShared() {
+		StatementTracer tracer = new StatementTracer(Long.getLong("projects.trace.slowMillis", 100),
+				Integer.getInteger("projects.trace.bufferSize", 100),
+				BindValues.valueOf(System.getProperty("projects.trace.bindValues", "redacted").toUpperCase()));
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(tracer, new ObjectName("projects:type=StatementTracer"));
+		} catch (JMException e) {
+			LOG.log(Level.WARNING, "Unable to register the statement tracer MBean", e);
+		}
+
+		return tracer;
+	}
+
+
+
+	// wrap method to return a connection whose statements are traced. Closing it closes the given connection.
+	public Connection wrap(Connection conn) {
+		return proxy(Connection.class, new ConnectionHandler(conn));
+	}
+
+
+
+	// getSlowQueryList method to list the slow queries still in the ring buffer, most recent first
+	public List<SlowQuery> getSlowQueryList() {
+		List<SlowQuery> queries = new ArrayList<>();
+		long newest = slowQuerySequence.get();
+		int size = slowQueries.length();
+
+		for (long sequence = newest - 1; sequence >= 0 && sequence >= newest - size; sequence--) {
+			SlowQuery query = slowQueries.get((int) (sequence % size));
+
+			if (Objects.nonNull(query)) {
+				queries.add(query);
+			}
+		}
+
+		return queries;
+	}
+
+	@Override
+	public String[] getSlowQueries() {
+		return getSlowQueryList().stream().map(SlowQuery::toString).toArray(String[]::new);
+	}
+
+
+
+	// getStatementReport method to describe the latency of every traced SQL text, one per line
+	@Override
+	public String getStatementReport() {
+		StringBuilder report = new StringBuilder();
+
+		new TreeMap<>(statementStats).forEach((sql, stats) -> report.append(stats.describe(sql)).append('\n'));
+		return report.toString();
+	}
+
+
+
+	@Override
+	public long getSlowThresholdMillis() {
+		return slowThresholdNanos / 1_000_000;
+	}
+
+	@Override
+	public void setSlowThresholdMillis(long slowThresholdMillis) {
+		this.slowThresholdNanos = slowThresholdMillis * 1_000_000;
+	}
+
+	@Override
+	public long getTracedCount() {
+		return tracedCount.sum();
+	}
+
+	@Override
+	public long getSlowCount() {
+		return slowCount.sum();
+	}
+
+	@Override
+	public void reset() {
+		for (int index = 0; index < slowQueries.length(); index++) {
+			slowQueries.set(index, null);
+		}
+
+		statementStats.clear();
+		tracedCount.reset();
+		slowCount.reset();
+	}
+
+
+
+	// complete method to account for a finished execution and keep it if it was slow
+	private void complete(Execution execution) {
+		long totalNanos = execution.executeNanos + execution.fetchNanos;
+
+		tracedCount.increment();
+		statementStats.computeIfAbsent(execution.sql, sql -> new StatementStats()).record(totalNanos, execution.rows);
+
+		if (totalNanos < slowThresholdNanos) {
+			return;
+		}
+
+		SlowQuery query = new SlowQuery(execution);
+
+		slowCount.increment();
+		slowQueries.set((int) (slowQuerySequence.getAndIncrement() % slowQueries.length()), query);
+		LOG.warning(() -> "Slow query: " + query);
+	}
+
+
+
+	private String describe(Object value) {
+		if (Objects.isNull(value)) {
+			return "NULL";
+		}
+
+		if (bindValues == BindValues.FULL) {
+			return value instanceof String ? "'" + value + "'" : String.valueOf(value);
+		}
+
+		if (value instanceof Number) {
+			return value.toString();
+		}
+
+		if (value instanceof String) {
+			return "<string(" + ((String) value).length() + ")>";
+		}
+
+		return "<" + value.getClass().getSimpleName() + ">";
+	}
+
+
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw Objects.requireNonNullElse(e.getCause(), e);
+		}
+	}
+
+
+
+	// Traced connection: statements it creates are wrapped, everything else goes straight to the connection
+	private final class ConnectionHandler implements InvocationHandler {
+		private final Connection conn;
+
+		private ConnectionHandler(Connection conn) {
+			this.conn = conn;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Object result = StatementTracer.invoke(conn, method, args);
+
+			switch (method.getName()) {
+			case "prepareStatement":
+				return proxy(PreparedStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+
+			case "createStatement":
+				return proxy(Statement.class, new StatementHandler((Statement) result, null));
+
+			default:
+				return result;
+			}
+		}
+	}
+
+
+
+	// Traced statement. Remembers the bind values of the next execution and times every execute call; the result
+	// sets it returns time their own next() calls into the same execution.
+	private final class StatementHandler implements InvocationHandler {
+		private final Statement stmt;
+		private final String sql;
+		private final Map<Integer, Object> binds = new TreeMap<>();
+		private int batchSize;
+		private Execution current;
+
+		private StatementHandler(Statement stmt, String sql) {
+			this.stmt = stmt;
+			this.sql = sql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+
+			if (name.startsWith("execute")) {
+				return execute(method, args);
+			}
+
+			Object result = StatementTracer.invoke(stmt, method, args);
+
+			if (name.startsWith("set") && Objects.nonNull(args) && args.length >= 2 && args[0] instanceof Integer) {
+				binds.put((Integer) args[0], "setNull".equals(name) ? null : args[1]);
+
+			} else if ("clearParameters".equals(name)) {
+				binds.clear();
+
+			} else if ("addBatch".equals(name)) {
+				batchSize++;
+
+			} else if ("close".equals(name)) {
+				finish();
+
+			} else if (result instanceof ResultSet && Objects.nonNull(current)) {
+				return proxy(ResultSet.class, new ResultSetHandler((ResultSet) result, current));
+			}
+
+			return result;
+		}
+
+		private Object execute(Method method, Object[] args) throws Throwable {
+			finish();
+
+			String text = Objects.nonNull(args) && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+			Execution execution = new Execution(text, describeBinds(), batchSize);
+			long start = System.nanoTime();
+
+			try {
+				Object result = StatementTracer.invoke(stmt, method, args);
+				return result instanceof ResultSet ? proxy(ResultSet.class, new ResultSetHandler((ResultSet) result, execution))
+						: result;
+
+			} finally {
+				execution.executeNanos = System.nanoTime() - start;
+				current = execution;
+				batchSize = 0;
+			}
+		}
+
+		private String describeBinds() {
+			if (bindValues == BindValues.NONE || binds.isEmpty()) {
+				return "";
+			}
+
+			StringBuilder described = new StringBuilder();
+
+			binds.forEach((index, value) -> described.append(described.length() == 0 ? "" : ", ").append(describe(value)));
+			return described.toString();
+		}
+
+		private void finish() {
+			if (Objects.nonNull(current)) {
+				complete(current);
+				current = null;
+			}
+		}
+	}
+
+
+
+	// Traced result set: adds the time spent in next() and the number of rows to its execution
+	private static final class ResultSetHandler implements InvocationHandler {
+		private final ResultSet rs;
+		private final Execution execution;
+
+		private ResultSetHandler(ResultSet rs, Execution execution) {
+			this.rs = rs;
+			this.execution = execution;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (!"next".equals(method.getName())) {
+				return StatementTracer.invoke(rs, method, args);
+			}
+
+			long start = System.nanoTime();
+
+			try {
+				Object hasRow = StatementTracer.invoke(rs, method, args);
+
+				if (Boolean.TRUE.equals(hasRow)) {
+					execution.rows++;
+				}
+
+				return hasRow;
+
+			} finally {
+				execution.fetchNanos += System.nanoTime() - start;
+			}
+		}
+	}
+
+
+
+	// One execution of a statement. Only touched by the thread using the statement.
+	private static final class Execution {
+		private final String sql;
+		private final String binds;
+		private final int batchSize;
+		private final Instant startedAt = Instant.now();
+		private final String threadName = Thread.currentThread().getName();
+		private long executeNanos;
+		private long fetchNanos;
+		private long rows;
+
+		private Execution(String sql, String binds, int batchSize) {
+			this.sql = Objects.requireNonNullElse(sql, "<unknown>");
+			this.binds = binds;
+			this.batchSize = batchSize;
+		}
+	}
+
+
+
+	// A slow execution kept in the ring buffer
+	public static final class SlowQuery {
+		private final Instant startedAt;
+		private final String threadName;
+		private final String sql;
+		private final String binds;
+		private final int batchSize;
+		private final double executeMillis;
+		private final double fetchMillis;
+		private final long rows;
+
+		private SlowQuery(Execution execution) {
+			this.startedAt = execution.startedAt;
+			this.threadName = execution.threadName;
+			this.sql = execution.sql;
+			this.binds = execution.binds;
+			this.batchSize = execution.batchSize;
+			this.executeMillis = execution.executeNanos / NANOS_PER_MILLI;
+			this.fetchMillis = execution.fetchNanos / NANOS_PER_MILLI;
+			this.rows = execution.rows;
+		}
+
+		public Instant getStartedAt() {
+			return startedAt;
+		}
+
+		public String getThreadName() {
+			return threadName;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		public String getBinds() {
+			return binds;
+		}
+
+		public int getBatchSize() {
+			return batchSize;
+		}
+
+		public double getExecuteMillis() {
+			return executeMillis;
+		}
+
+		public double getFetchMillis() {
+			return fetchMillis;
+		}
+
+		public long getRows() {
+			return rows;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s [%s] execute=%.3fms, fetch=%.3fms, rows=%d%s: %s%s", startedAt, threadName,
+					executeMillis, fetchMillis, rows, batchSize > 0 ? ", batch=" + batchSize : "", sql,
+					binds.isEmpty() ? "" : " [" + binds + "]");
+		}
+	}
+
+
+
+	// Latency and row count of all executions of one SQL text
+	private static final class StatementStats {
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final LongAdder rows = new LongAdder();
+
+		private void record(long nanos, long rowCount) {
+			latency.record(nanos);
+			rows.add(rowCount);
+		}
+
+		private String describe(String sql) {
+			return String.format("calls=%d, rows=%d, mean=%.3fms, p50=%.3fms, p99=%.3fms, max=%.3fms: %s", latency.getCount(),
+					rows.sum(), latency.getMeanNanos() / NANOS_PER_MILLI, latency.percentileNanos(0.50) / NANOS_PER_MILLI,
+					latency.percentileNanos(0.99) / NANOS_PER_MILLI, latency.getMaxNanos() / NANOS_PER_MILLI, sql);
+		}
+	}
+}
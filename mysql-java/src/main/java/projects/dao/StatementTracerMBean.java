@@ -0,0 +1,18 @@
+package projects.dao;
+
+// JMX view of the StatementTracer, registered as projects:type=StatementTracer
+public interface StatementTracerMBean {
+	String[] getSlowQueries();
+
+	String getStatementReport();
+
+	long getSlowThresholdMillis();
+
+	void setSlowThresholdMillis(long slowThresholdMillis);
+
+	long getTracedCount();
+
+	long getSlowCount();
+
+	void reset();
+}
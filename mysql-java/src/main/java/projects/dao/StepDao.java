@@ -0,0 +1,456 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import projects.entity.Step;
+import projects.exception.DbException;
+import projects.metrics.Metrics;
+import projects.metrics.OperationMetrics;
+import provided.util.DaoBase;
+
+// StepDao keeps the steps of a project in order using gapped ranks. Step orders are spaced STEP_GAP apart, so a step
+// can be appended, inserted between two others or moved by writing only its own row with a rank in the gap between
+// its new neighbours. Deleting a step simply leaves a wider gap.
+//
+// Only when two neighbours end up with no room between them are the project's steps renumbered. That happens inline
+// if an insert or move finds no gap at all, and in the background as soon as a gap drops below MIN_GAP, so it is
+// rare and usually off the caller's path. A background rebalance commits after the call that scheduled it returned,
+// so it reports the project to the rebalance listener for caches of its steps to drop.
+//
+// Steps written by the old COUNT(*) numbering may share a step_order. Steps are read in (step_order, step_id) order,
+// and a step sharing its predecessor's rank counts as leaving no gap, so inserting or moving next to one renumbers the
+// project first.
+//
+// Every operation locks the parent project row first, which serializes concurrent reorderings of the same project
+// without the COUNT(*) race of DaoBase.getNextSequenceNumber. The lock is an update of the project's updated_at, so
+// step changes show up as project changes to the snapshot catalog.
+public class StepDao extends DaoBase {
+	private static final Logger LOG = Logger.getLogger(StepDao.class.getName());
+
+	// Distance between the ranks of adjacent steps after an append or a rebalance
+	public static final int STEP_GAP = 1024;
+
+	// A gap narrower than this schedules a background rebalance of the project
+	private static final int MIN_GAP = 8;
+
+	private static final String STEP_TABLE = "step";
+
+	private static final ExecutorService REBALANCER = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "projects-step-rebalancer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private static final Set<Integer> PENDING_REBALANCES = ConcurrentHashMap.newKeySet();
+
+	private static final OperationMetrics APPEND_STEP = Metrics.operation("StepDao.appendStep");
+	private static final OperationMetrics INSERT_STEP_AFTER = Metrics.operation("StepDao.insertStepAfter");
+	private static final OperationMetrics MOVE_STEP = Metrics.operation("StepDao.moveStep");
+	private static final OperationMetrics DELETE_STEP = Metrics.operation("StepDao.deleteStep");
+
+	private final IdAllocator idAllocator;
+
+	private volatile Consumer<Integer> rebalanceListener = projectId -> { };
+
+
+
+	public StepDao() {
+		this(IdAllocator.configured());
+	}
+
+	// Passing an IdAllocator makes new steps use IDs reserved from the id_sequence table instead of AUTO_INCREMENT
+	public StepDao(IdAllocator idAllocator) {
+		this.idAllocator = idAllocator;
+	}
+
+
+
+	// setRebalanceListener method to be told the project ID after each background rebalance commits
+	public void setRebalanceListener(Consumer<Integer> rebalanceListener) {
+		this.rebalanceListener = rebalanceListener;
+	}
+
+
+
+
+	// appendStep method to add a step after the last step of the project
+	public Step appendStep(Integer projectId, String stepText) {
+		return APPEND_STEP.time(() -> {
+			try (Connection conn = DbConnection.getConnection()) {
+				startTransaction(conn);
+
+				try {
+					lockProject(conn, projectId);
+
+					long last = maxOrder(conn, projectId);
+					long rank = last + STEP_GAP;
+
+					if (rank > Integer.MAX_VALUE) {
+						rebalance(conn, projectId);
+						rank = maxOrder(conn, projectId) + STEP_GAP;
+					}
+
+					Step step = insertStep(conn, projectId, stepText, (int) rank);
+					commitTransaction(conn);
+					return step;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		});
+	} // END of appendStep
+
+
+
+
+	// insertStepAfter method to insert a step directly after previousStepId, or at the start when previousStepId is null.
+	// Inserting between two steps is inserting after the first of them.
+	public Step insertStepAfter(Integer projectId, Integer previousStepId, String stepText) {
+		return INSERT_STEP_AFTER.time(() -> {
+			try (Connection conn = DbConnection.getConnection()) {
+				startTransaction(conn);
+
+				try {
+					lockProject(conn, projectId);
+
+					int rank = rankAfter(conn, projectId, previousStepId, null);
+					Step step = insertStep(conn, projectId, stepText, rank);
+
+					commitTransaction(conn);
+					return step;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		});
+	} // END of insertStepAfter
+
+
+
+
+	// moveStep method to move a step directly after previousStepId, or to the start when previousStepId is null.
+	// Only the moved step's row is updated.
+	public boolean moveStep(Integer stepId, Integer previousStepId) {
+		return MOVE_STEP.time(() -> {
+			if (Objects.equals(stepId, previousStepId)) {
+				return true;
+			}
+
+			try (Connection conn = DbConnection.getConnection()) {
+				startTransaction(conn);
+
+				try {
+					Integer projectId = projectOf(conn, stepId);
+
+					if (Objects.isNull(projectId)) {
+						commitTransaction(conn);
+						return false;
+					}
+
+					lockProject(conn, projectId);
+
+					int rank = rankAfter(conn, projectId, previousStepId, stepId);
+					boolean moved = updateOrder(conn, stepId, rank) == 1;
+
+					commitTransaction(conn);
+					return moved;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		});
+	} // END of moveStep
+
+
+
+
+	// deleteStep method to remove a step. The steps around it keep their ranks.
+	public boolean deleteStep(Integer stepId) {
+		return DELETE_STEP.time(() -> {
+			try (Connection conn = DbConnection.getConnection()) {
+				startTransaction(conn);
+
+				try (PreparedStatement touchStmt = SqlStatement.PROJECT_TOUCH_BY_STEP.prepare(conn);
+						PreparedStatement stmt = SqlStatement.STEP_DELETE.prepare(conn)) {
+					setParameter(touchStmt, 1, stepId, Integer.class);
+					touchStmt.executeUpdate();
+
+					setParameter(stmt, 1, stepId, Integer.class);
+
+					boolean deleted = stmt.executeUpdate() == 1;
+					commitTransaction(conn);
+					return deleted;
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw new DbException(e);
+				}
+
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		});
+	} // END of deleteStep
+
+
+
+
+	// fetchStepProjectId method to find the project a step belongs to; returns null if the step does not exist
+	public Integer fetchStepProjectId(Integer stepId) {
+		try (Connection conn = DbConnection.getReadConnection()) {
+			startReadOnly(conn);
+			return projectOf(conn, stepId);
+
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+
+
+
+	// rankAfter method to find a free rank between previousStepId and the step that follows it, ignoring the step being
+	// moved. Renumbers the project inline if there is no room, and schedules a background rebalance if the room left
+	// is getting small.
+	private int rankAfter(Connection conn, Integer projectId, Integer previousStepId, Integer movingStepId)
+			throws SQLException {
+		for (int attempt = 0; attempt < 2; attempt++) {
+			long previous = Objects.isNull(previousStepId) ? 0 : orderOf(conn, projectId, previousStepId);
+			Long next = nextOrder(conn, projectId, previous, previousStepId, movingStepId);
+
+			long rank = Objects.isNull(next) ? previous + STEP_GAP : previous + (next - previous) / 2;
+
+			if (rank > previous && (Objects.isNull(next) || rank < next) && rank <= Integer.MAX_VALUE) {
+				// A gap that is running out is renumbered in the background; one with no room left is renumbered below
+				if (Objects.nonNull(next) && (next - rank < MIN_GAP || rank - previous < MIN_GAP)) {
+					scheduleRebalance(projectId);
+				}
+
+				return (int) rank;
+			}
+
+			rebalance(conn, projectId);
+		}
+
+		throw new DbException("Unable to find a free step order in project " + projectId);
+	} // END of rankAfter
+
+
+
+
+	// rebalance method to renumber every step of the project STEP_GAP apart, keeping the current order
+	private void rebalance(Connection conn, Integer projectId) throws SQLException {
+		List<Integer> stepIds = new ArrayList<>();
+
+		try (PreparedStatement stmt = SqlStatement.STEP_SELECT_IDS_IN_ORDER.prepare(conn)) {
+			setParameter(stmt, 1, projectId, Integer.class);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					stepIds.add(rs.getInt(1));
+				}
+			}
+		}
+
+		try (PreparedStatement stmt = SqlStatement.STEP_UPDATE_ORDER.prepare(conn)) {
+			int rank = 0;
+
+			for (Integer stepId : stepIds) {
+				rank += STEP_GAP;
+				setParameter(stmt, 1, rank, Integer.class);
+				setParameter(stmt, 2, stepId, Integer.class);
+				stmt.addBatch();
+			}
+
+			stmt.executeBatch();
+		}
+	} // END of rebalance
+
+
+
+
+	// scheduleRebalance method to renumber a project's steps on the background thread, at most once at a time per
+	// project, and tell the rebalance listener once it is committed
+	private void scheduleRebalance(Integer projectId) {
+		if (!PENDING_REBALANCES.add(projectId)) {
+			return;
+		}
+
+		REBALANCER.execute(() -> {
+			PENDING_REBALANCES.remove(projectId);
+
+			try (Connection conn = DbConnection.getConnection()) {
+				startTransaction(conn);
+
+				try {
+					lockProject(conn, projectId);
+					rebalance(conn, projectId);
+					commitTransaction(conn);
+
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw e;
+				}
+
+			} catch (Exception e) {
+				LOG.log(Level.WARNING, "Background step rebalance of project " + projectId + " failed", e);
+				return;
+			}
+
+			rebalanceListener.accept(projectId);
+		});
+	}
+
+
+
+
+	// lockProject method to lock the parent project row. The lock is taken by touching the row's updated_at, which also
+	// marks the project as changed for the snapshot catalog's reconciliation.
+	private void lockProject(Connection conn, Integer projectId) throws SQLException {
+		try (PreparedStatement stmt = SqlStatement.PROJECT_TOUCH.prepare(conn)) {
+			setParameter(stmt, 1, projectId, Integer.class);
+
+			if (stmt.executeUpdate() == 0) {
+				throw new DbException("Project with ID=" + projectId + " does not exist!");
+			}
+		}
+	}
+
+
+
+	private Integer projectOf(Connection conn, Integer stepId) throws SQLException {
+		try (PreparedStatement stmt = SqlStatement.STEP_SELECT_PROJECT.prepare(conn)) {
+			setParameter(stmt, 1, stepId, Integer.class);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				return rs.next() ? rs.getInt(1) : null;
+			}
+		}
+	}
+
+
+
+	private long orderOf(Connection conn, Integer projectId, Integer stepId) throws SQLException {
+		try (PreparedStatement stmt = SqlStatement.STEP_SELECT_ORDER.prepare(conn)) {
+			setParameter(stmt, 1, stepId, Integer.class);
+			setParameter(stmt, 2, projectId, Integer.class);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (!rs.next()) {
+					throw new DbException("Step with ID=" + stepId + " does not exist in project " + projectId);
+				}
+
+				return rs.getInt(1);
+			}
+		}
+	}
+
+
+
+	private long maxOrder(Connection conn, Integer projectId) throws SQLException {
+		try (PreparedStatement stmt = SqlStatement.STEP_SELECT_MAX_ORDER.prepare(conn)) {
+			setParameter(stmt, 1, projectId, Integer.class);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				return rs.next() ? rs.getLong(1) : 0;
+			}
+		}
+	}
+
+
+
+	// nextOrder method to find the rank of the step after previousStepId, which has rank previous. A later step with the
+	// same rank comes next, so a duplicate rank yields previous itself and no gap.
+	private Long nextOrder(Connection conn, Integer projectId, long previous, Integer previousStepId,
+			Integer excludedStepId) throws SQLException {
+		SqlStatement statement = Objects.isNull(excludedStepId) ? SqlStatement.STEP_SELECT_NEXT_ORDER
+				: SqlStatement.STEP_SELECT_NEXT_ORDER_EXCLUDING;
+
+		try (PreparedStatement stmt = statement.prepare(conn)) {
+			setParameter(stmt, 1, projectId, Integer.class);
+			setParameter(stmt, 2, (int) previous, Integer.class);
+			setParameter(stmt, 3, (int) previous, Integer.class);
+			setParameter(stmt, 4, previousStepId, Integer.class);
+
+			if (Objects.nonNull(excludedStepId)) {
+				setParameter(stmt, 5, excludedStepId, Integer.class);
+			}
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					long next = rs.getLong(1);
+					return rs.wasNull() ? null : next;
+				}
+
+				return null;
+			}
+		}
+	}
+
+
+
+	private Step insertStep(Connection conn, Integer projectId, String stepText, int rank) throws SQLException {
+		boolean allocated = Objects.nonNull(idAllocator);
+
+		try (PreparedStatement stmt = allocated ? SqlStatement.STEP_INSERT_WITH_ID.prepare(conn)
+				: SqlStatement.STEP_INSERT.prepare(conn, Statement.RETURN_GENERATED_KEYS)) {
+			Integer stepId = allocated ? idAllocator.nextId(STEP_TABLE) : null;
+
+			setParameter(stmt, 1, projectId, Integer.class);
+			setParameter(stmt, 2, stepText, String.class);
+			setParameter(stmt, 3, rank, Integer.class);
+
+			if (allocated) {
+				setParameter(stmt, 4, stepId, Integer.class);
+			}
+
+			stmt.executeUpdate();
+
+			Step step = new Step();
+			step.setStepId(allocated ? stepId : getGeneratedIds(stmt, 1)[0]);
+			step.setProjectId(projectId);
+			step.setStepText(stepText);
+			step.setStepOrder(rank);
+			return step;
+		}
+	}
+
+
+
+	private int updateOrder(Connection conn, Integer stepId, int rank) throws SQLException {
+		try (PreparedStatement stmt = SqlStatement.STEP_UPDATE_ORDER.prepare(conn)) {
+			setParameter(stmt, 1, rank, Integer.class);
+			setParameter(stmt, 2, stepId, Integer.class);
+			return stmt.executeUpdate();
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package projects.entity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Read-only, compact copy of a loaded {@link Project} aggregate, for keeping many projects in memory
+ * at once (the project cache, analytics working sets).
+ *
+ * Instead of a list of objects per child table, each child table is held as a few presized
+ * primitive arrays with one element per row. The decimal(7,2) columns (hours and material cost) are
+ * held as longs in hundredths, and material and category names as codes in a shared
+ * {@link NameDictionary}. Null values are held as {@link #NULL_VALUE} in the long columns,
+ * {@link #NULL_INT} in the int columns (difficulty included) and {@link NameDictionary#NULL_CODE}
+ * for names. Step texts and notes are free text and are kept as strings.
+ *
+ * Decimals with more than two places are rounded half up to two, as the database does when it
+ * stores them, so a project loaded from the database comes back from {@link #toProject()}
+ * unchanged.
+ *
+ * @author Promineo
+ *
+ */
+public final class CompactProject {
+  /**
+   * Stored in the hours and cost columns for a null value.
+   */
+  public static final long NULL_VALUE = Long.MIN_VALUE;
+
+  /**
+   * Stored in the ID, quantity and order columns for a null value.
+   */
+  public static final int NULL_INT = Integer.MIN_VALUE;
+
+  private final NameDictionary dictionary;
+
+  private final int projectId;
+  private final String projectName;
+  private final long estimatedHours;
+  private final long actualHours;
+  private final int difficulty;
+  private final String notes;
+  private final int version;
+
+  private final int[] materialIds;
+  private final int[] materialNames;
+  private final int[] numRequired;
+  private final long[] materialCosts;
+
+  private final int[] stepIds;
+  private final int[] stepOrders;
+  private final String[] stepTexts;
+
+  private final int[] categoryIds;
+  private final int[] categoryNames;
+
+  private CompactProject(Project project, NameDictionary dictionary) {
+    this.dictionary = dictionary;
+
+    projectId = toInt(project.getProjectId());
+    projectName = project.getProjectName();
+    estimatedHours = toHundredths(project.getEstimatedHours());
+    actualHours = toHundredths(project.getActualHours());
+    difficulty = toInt(project.getDifficulty());
+    notes = project.getNotes();
+    version = toInt(project.getVersion());
+
+    List<Material> materials = project.getMaterials();
+    materialIds = new int[materials.size()];
+    materialNames = new int[materials.size()];
+    numRequired = new int[materials.size()];
+    materialCosts = new long[materials.size()];
+
+    int row = 0;
+
+    for (Material material : materials) {
+      materialIds[row] = toInt(material.getMaterialId());
+      materialNames[row] = dictionary.encode(material.getMaterialName());
+      numRequired[row] = toInt(material.getNumRequired());
+      materialCosts[row] = toHundredths(material.getCost());
+      row++;
+    }
+
+    List<Step> steps = project.getSteps();
+    stepIds = new int[steps.size()];
+    stepOrders = new int[steps.size()];
+    stepTexts = new String[steps.size()];
+
+    row = 0;
+
+    for (Step step : steps) {
+      stepIds[row] = toInt(step.getStepId());
+      stepOrders[row] = toInt(step.getStepOrder());
+      stepTexts[row] = step.getStepText();
+      row++;
+    }
+
+    List<Category> categories = project.getCategories();
+    categoryIds = new int[categories.size()];
+    categoryNames = new int[categories.size()];
+
+    row = 0;
+
+    for (Category category : categories) {
+      categoryIds[row] = toInt(category.getCategoryId());
+      categoryNames[row] = dictionary.encode(category.getCategoryName());
+      row++;
+    }
+  }
+
+  /**
+   * Make a compact copy of a project and its materials, steps and categories.
+   *
+   * @param project The project to copy. It is not changed or kept.
+   * @param dictionary The dictionary to encode the material and category names in.
+   * @return The compact copy.
+   */
+  public static CompactProject of(Project project, NameDictionary dictionary) {
+    return new CompactProject(project, dictionary);
+  }
+
+  /**
+   * Build a new, independent {@link Project} from the compact copy. The project has no changed
+   * columns, like one just loaded from the database.
+   *
+   * @return The project with its materials, steps and categories.
+   */
+  public Project toProject() {
+    Project project = new Project();
+
+    project.setProjectId(toInteger(projectId));
+    project.setProjectName(projectName);
+    project.setEstimatedHours(toDecimal(estimatedHours));
+    project.setActualHours(toDecimal(actualHours));
+    project.setDifficulty(toInteger(difficulty));
+    project.setNotes(notes);
+    project.setVersion(toInteger(version));
+    project.clearChangedColumns();
+
+    List<Material> materials = new ArrayList<>(materialIds.length);
+
+    for (int row = 0; row < materialIds.length; row++) {
+      Material material = new Material();
+      material.setMaterialId(toInteger(materialIds[row]));
+      material.setProjectId(project.getProjectId());
+      material.setMaterialName(dictionary.decode(materialNames[row]));
+      material.setNumRequired(toInteger(numRequired[row]));
+      material.setCost(toDecimal(materialCosts[row]));
+      materials.add(material);
+    }
+
+    List<Step> steps = new ArrayList<>(stepIds.length);
+
+    for (int row = 0; row < stepIds.length; row++) {
+      Step step = new Step();
+      step.setStepId(toInteger(stepIds[row]));
+      step.setProjectId(project.getProjectId());
+      step.setStepText(stepTexts[row]);
+      step.setStepOrder(toInteger(stepOrders[row]));
+      steps.add(step);
+    }
+
+    List<Category> categories = new ArrayList<>(categoryIds.length);
+
+    for (int row = 0; row < categoryIds.length; row++) {
+      Category category = new Category();
+      category.setCategoryId(toInteger(categoryIds[row]));
+      category.setCategoryName(dictionary.decode(categoryNames[row]));
+      categories.add(category);
+    }
+
+    project.getMaterials().addAll(materials);
+    project.getSteps().addAll(steps);
+    project.getCategories().addAll(categories);
+
+    return project;
+  }
+
+  public int getProjectId() {
+    return projectId;
+  }
+
+  public String getProjectName() {
+    return projectName;
+  }
+
+  /**
+   * @return The estimated hours in hundredths of an hour, or {@link #NULL_VALUE}.
+   */
+  public long getEstimatedHours() {
+    return estimatedHours;
+  }
+
+  /**
+   * @return The actual hours in hundredths of an hour, or {@link #NULL_VALUE}.
+   */
+  public long getActualHours() {
+    return actualHours;
+  }
+
+  /**
+   * @return The difficulty, or {@link #NULL_INT} if it is not set.
+   */
+  public int getDifficulty() {
+    return difficulty;
+  }
+
+  public int getMaterialCount() {
+    return materialIds.length;
+  }
+
+  public int getStepCount() {
+    return stepIds.length;
+  }
+
+  public int getCategoryCount() {
+    return categoryIds.length;
+  }
+
+  /**
+   * @return The sum of cost * num_required over the materials in cents. A missing num_required
+   *         counts as 1 and a missing cost as 0.
+   */
+  public long getMaterialCost() {
+    long total = 0;
+
+    for (int row = 0; row < materialCosts.length; row++) {
+      long cost = materialCosts[row];
+
+      if (cost != NULL_VALUE) {
+        total += cost * (numRequired[row] == NULL_INT ? 1 : numRequired[row]);
+      }
+    }
+
+    return total;
+  }
+
+  /**
+   * Convert a decimal(7,2) value to hundredths.
+   *
+   * @param value The value. May be null.
+   * @return The value in hundredths, rounded half up, or {@link #NULL_VALUE} if it is null.
+   */
+  public static long toHundredths(BigDecimal value) {
+    return Objects.isNull(value) ? NULL_VALUE
+        : value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+  }
+
+  /**
+   * Convert hundredths back to a decimal with two places.
+   *
+   * @param hundredths The value in hundredths, or {@link #NULL_VALUE}.
+   * @return The decimal, or null for {@link #NULL_VALUE}.
+   */
+  public static BigDecimal toDecimal(long hundredths) {
+    return hundredths == NULL_VALUE ? null : BigDecimal.valueOf(hundredths, 2);
+  }
+
+  private static int toInt(Integer value) {
+    return Objects.isNull(value) ? NULL_INT : value;
+  }
+
+  private static Integer toInteger(int value) {
+    return value == NULL_INT ? null : Integer.valueOf(value);
+  }
+
+  @Override
+  public String toString() {
+    return toProject().toString();
+  }
+}
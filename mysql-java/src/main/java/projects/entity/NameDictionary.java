@@ -0,0 +1,81 @@
+package projects.entity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Dictionary encoding for names that repeat across projects, such as material names like "Spark
+ * Plugs" or category names. Each distinct name is stored once and is referred to by an int code, so
+ * a {@link CompactProject} holds four bytes per name instead of its own copy of the string.
+ *
+ * Codes are handed out in order from 0 and are never reused; {@link #NULL_CODE} stands for a null
+ * name. The dictionary only grows, so it should be shared by all the aggregates of one working set
+ * and dropped together with them. It is safe to use from several threads.
+ *
+ * @author Promineo
+ *
+ */
+public final class NameDictionary {
+  /**
+   * The code of a null name.
+   */
+  public static final int NULL_CODE = -1;
+
+  private final Map<String, Integer> codes = new HashMap<>();
+  private String[] names = new String[64];
+  private int size;
+
+  /**
+   * Get the code of a name, adding the name to the dictionary if it is new.
+   *
+   * @param name The name to encode. May be null.
+   * @return The code of the name, or {@link #NULL_CODE} if the name is null.
+   */
+  public synchronized int encode(String name) {
+    if (Objects.isNull(name)) {
+      return NULL_CODE;
+    }
+
+    Integer code = codes.get(name);
+
+    if (Objects.nonNull(code)) {
+      return code;
+    }
+
+    if (size == names.length) {
+      names = Arrays.copyOf(names, size * 2);
+    }
+
+    names[size] = name;
+    codes.put(name, size);
+    return size++;
+  }
+
+  /**
+   * Get the name with a code.
+   *
+   * @param code A code returned by {@link #encode(String)}, or {@link #NULL_CODE}.
+   * @return The name, or null for {@link #NULL_CODE}.
+   * @throws IllegalArgumentException if the code was not handed out by this dictionary.
+   */
+  public synchronized String decode(int code) {
+    if (code == NULL_CODE) {
+      return null;
+    }
+
+    if (code < 0 || code >= size) {
+      throw new IllegalArgumentException("Unknown name code " + code);
+    }
+
+    return names[code];
+  }
+
+  /**
+   * @return The number of distinct names in the dictionary.
+   */
+  public synchronized int size() {
+    return size;
+  }
+}
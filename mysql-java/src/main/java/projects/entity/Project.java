@@ -4,14 +4,52 @@
 package projects.entity;
 
 import java.math.BigDecimal;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
  * @author Promineo
  *
  */
 public class Project {
+  /**
+   * The columns of the project table that can be changed with an update, in the order they are
+   * written in the UPDATE statement.
+   */
+  public enum Column {
+    PROJECT_NAME("project_name", String.class, Project::getProjectName),
+    ESTIMATED_HOURS("estimated_hours", BigDecimal.class, Project::getEstimatedHours),
+    ACTUAL_HOURS("actual_hours", BigDecimal.class, Project::getActualHours),
+    DIFFICULTY("difficulty", Integer.class, Project::getDifficulty),
+    NOTES("notes", String.class, Project::getNotes);
+
+    private final String columnName;
+    private final Class<?> type;
+    private final Function<Project, Object> getter;
+
+    Column(String columnName, Class<?> type, Function<Project, Object> getter) {
+      this.columnName = columnName;
+      this.type = type;
+      this.getter = getter;
+    }
+
+    public String getColumnName() {
+      return columnName;
+    }
+
+    public Class<?> getType() {
+      return type;
+    }
+
+    public Object getValue(Project project) {
+      return getter.apply(project);
+    }
+  }
+
   private Integer projectId;
   private String projectName;
   private BigDecimal estimatedHours;
@@ -19,9 +57,21 @@ public class Project {
   private Integer difficulty;
   private String notes;
 
-  private List<Material> materials = new LinkedList<>();
-  private List<Step> steps = new LinkedList<>();
-  private List<Category> categories = new LinkedList<>();
+  /*
+   * Row version for optimistic locking. Null means the version is unknown, and an update then
+   * overwrites the row without checking it.
+   */
+  private Integer version;
+
+  /*
+   * Columns changed through the setters since the project was loaded or last saved. Rows mapped
+   * from the database set the fields directly, so a loaded project starts with no changes.
+   */
+  private final Set<Column> changedColumns = EnumSet.noneOf(Column.class);
+
+  private List<Material> materials = new ArrayList<>();
+  private List<Step> steps = new ArrayList<>();
+  private List<Category> categories = new ArrayList<>();
 
   public Integer getProjectId() {
     return projectId;
@@ -37,6 +87,7 @@ public class Project {
 
   public void setProjectName(String projectName) {
     this.projectName = projectName;
+    changedColumns.add(Column.PROJECT_NAME);
   }
 
   public BigDecimal getEstimatedHours() {
@@ -45,6 +96,7 @@ public class Project {
 
   public void setEstimatedHours(BigDecimal estimatedHours) {
     this.estimatedHours = estimatedHours;
+    changedColumns.add(Column.ESTIMATED_HOURS);
   }
 
   public BigDecimal getActualHours() {
@@ -53,6 +105,7 @@ public class Project {
 
   public void setActualHours(BigDecimal actualHours) {
     this.actualHours = actualHours;
+    changedColumns.add(Column.ACTUAL_HOURS);
   }
 
   public Integer getDifficulty() {
@@ -61,6 +114,7 @@ public class Project {
 
   public void setDifficulty(Integer difficulty) {
     this.difficulty = difficulty;
+    changedColumns.add(Column.DIFFICULTY);
   }
 
   public String getNotes() {
@@ -69,6 +123,29 @@ public class Project {
 
   public void setNotes(String notes) {
     this.notes = notes;
+    changedColumns.add(Column.NOTES);
+  }
+
+  public Integer getVersion() {
+    return version;
+  }
+
+  public void setVersion(Integer version) {
+    this.version = version;
+  }
+
+  /**
+   * @return The columns changed through the setters since the project was loaded or last saved.
+   */
+  public Set<Column> getChangedColumns() {
+    return Collections.unmodifiableSet(changedColumns);
+  }
+
+  /**
+   * Forgets the changed columns, e.g. after the project has been saved.
+   */
+  public void clearChangedColumns() {
+    changedColumns.clear();
   }
 
   public List<Material> getMaterials() {
@@ -83,35 +160,59 @@ public class Project {
     return categories;
   }
 
-  @Override
-  public String toString() {
-    String result = "";
-    
-    result += "\n   ID=" + projectId;
-    result += "\n   name=" + projectName;
-    result += "\n   estimatedHours=" + estimatedHours;
-    result += "\n   actualHours=" + actualHours;
-    result += "\n   difficulty=" + difficulty;
-    result += "\n   notes=" + notes;
-    
-    result += "\n   Materials:";
-    
-    for(Material material : materials) {
-      result += "\n      " + material;
+  /**
+   * Copies the project with its materials, steps and categories, down to new child objects, so the
+   * copy can be changed without affecting the original. The copy has the same changed columns.
+   *
+   * @return The independent copy.
+   */
+  public Project copy() {
+    Project copy = new Project();
+
+    copy.projectId = projectId;
+    copy.projectName = projectName;
+    copy.estimatedHours = estimatedHours;
+    copy.actualHours = actualHours;
+    copy.difficulty = difficulty;
+    copy.notes = notes;
+    copy.version = version;
+    copy.changedColumns.addAll(changedColumns);
+
+    copy.materials = new ArrayList<>(materials.size());
+    copy.steps = new ArrayList<>(steps.size());
+    copy.categories = new ArrayList<>(categories.size());
+
+    for (Material material : materials) {
+      Material materialCopy = new Material();
+      materialCopy.setMaterialId(material.getMaterialId());
+      materialCopy.setProjectId(material.getProjectId());
+      materialCopy.setMaterialName(material.getMaterialName());
+      materialCopy.setNumRequired(material.getNumRequired());
+      materialCopy.setCost(material.getCost());
+      copy.materials.add(materialCopy);
     }
-    
-    result += "\n   Steps:";
-    
-    for(Step step : steps) {
-      result += "\n      " + step;
+
+    for (Step step : steps) {
+      Step stepCopy = new Step();
+      stepCopy.setStepId(step.getStepId());
+      stepCopy.setProjectId(step.getProjectId());
+      stepCopy.setStepText(step.getStepText());
+      stepCopy.setStepOrder(step.getStepOrder());
+      copy.steps.add(stepCopy);
     }
-    
-    result += "\n   Categories:";
-    
-    for(Category category : categories) {
-      result += "\n      " + category;
+
+    for (Category category : categories) {
+      Category categoryCopy = new Category();
+      categoryCopy.setCategoryId(category.getCategoryId());
+      categoryCopy.setCategoryName(category.getCategoryName());
+      copy.categories.add(categoryCopy);
     }
-    
-    return result;
+
+    return copy;
+  }
+
+  @Override
+  public String toString() {
+    return ProjectRenderer.toString(this);
   }
 }
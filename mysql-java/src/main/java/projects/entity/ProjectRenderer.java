@@ -0,0 +1,109 @@
+package projects.entity;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes projects as text in a single pass over the aggregate, straight into any {@link Appendable}
+ * (a {@link StringBuilder}, a buffered {@link java.io.Writer}, ...). Each piece of the output is
+ * appended once, so rendering takes time proportional to the size of the output, and nothing is
+ * built up in memory when the target is a stream.
+ *
+ * Errors of the target are rethrown as {@link UncheckedIOException}, so the methods can be used
+ * from lambdas.
+ *
+ * @author Promineo
+ *
+ */
+public final class ProjectRenderer {
+  private static final String FIELD_INDENT = "\n   ";
+  private static final String CHILD_INDENT = "\n      ";
+
+  private ProjectRenderer() {
+  }
+
+  /**
+   * Render a project with all of its details, in the format of {@link Project#toString()}.
+   *
+   * @param project The project to render.
+   * @param out Where to write the text.
+   */
+  public static void renderDetails(Project project, Appendable out) {
+    try {
+      out.append(FIELD_INDENT).append("ID=").append(String.valueOf(project.getProjectId()));
+      out.append(FIELD_INDENT).append("name=").append(String.valueOf(project.getProjectName()));
+      out.append(FIELD_INDENT).append("estimatedHours=").append(String.valueOf(project.getEstimatedHours()));
+      out.append(FIELD_INDENT).append("actualHours=").append(String.valueOf(project.getActualHours()));
+      out.append(FIELD_INDENT).append("difficulty=").append(String.valueOf(project.getDifficulty()));
+      out.append(FIELD_INDENT).append("notes=").append(String.valueOf(project.getNotes()));
+
+      out.append(FIELD_INDENT).append("Materials:");
+
+      for (Material material : project.getMaterials()) {
+        out.append(CHILD_INDENT).append("ID=").append(String.valueOf(material.getMaterialId()));
+        out.append(", materialName=").append(String.valueOf(material.getMaterialName()));
+        out.append(", numRequired=").append(String.valueOf(material.getNumRequired()));
+        out.append(", cost=").append(String.valueOf(material.getCost()));
+      }
+
+      out.append(FIELD_INDENT).append("Steps:");
+
+      for (Step step : project.getSteps()) {
+        out.append(CHILD_INDENT).append("ID=").append(String.valueOf(step.getStepId()));
+        out.append(", stepText=").append(String.valueOf(step.getStepText()));
+      }
+
+      out.append(FIELD_INDENT).append("Categories:");
+
+      for (Category category : project.getCategories()) {
+        out.append(CHILD_INDENT).append("ID=").append(String.valueOf(category.getCategoryId()));
+        out.append(", categoryName=").append(String.valueOf(category.getCategoryName()));
+      }
+
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Render a project as one line of a listing: its ID and name, indented, followed by a line break.
+   *
+   * @param project The project to render.
+   * @param out Where to write the line.
+   */
+  public static void renderListItem(Project project, Appendable out) {
+    renderListItem(project.getProjectId(), project.getProjectName(), out);
+  }
+
+  /**
+   * Render one line of a project listing from the project's ID and name.
+   *
+   * @param projectId The ID of the project.
+   * @param projectName The name of the project.
+   * @param out Where to write the line.
+   */
+  public static void renderListItem(Integer projectId, String projectName, Appendable out) {
+    try {
+      out.append("   ").append(String.valueOf(projectId)).append(": ")
+          .append(String.valueOf(projectName)).append('\n');
+
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Render a project with all of its details into a string.
+   *
+   * @param project The project to render.
+   * @return The rendered project.
+   */
+  public static String toString(Project project) {
+    int children = project.getMaterials().size() + project.getSteps().size()
+        + project.getCategories().size();
+    StringBuilder builder = new StringBuilder(256 + 64 * children);
+
+    renderDetails(project, builder);
+    return builder.toString();
+  }
+}
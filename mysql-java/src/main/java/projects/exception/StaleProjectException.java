@@ -0,0 +1,30 @@
+package projects.exception;
+
+// Thrown when a project is updated with the version it was read at, but someone else has changed it since
+@SuppressWarnings("serial")
+public class StaleProjectException extends DbException {
+	private final Integer projectId;
+	private final Integer expectedVersion;
+	private final Integer actualVersion;
+
+	public StaleProjectException(Integer projectId, Integer expectedVersion, Integer actualVersion) {
+		super("Project with ID=" + projectId + " was changed by someone else (expected version " + expectedVersion
+				+ ", found " + actualVersion + ")");
+		this.projectId = projectId;
+		this.expectedVersion = expectedVersion;
+		this.actualVersion = actualVersion;
+	}
+
+	public Integer getProjectId() {
+		return projectId;
+	}
+
+	public Integer getExpectedVersion() {
+		return expectedVersion;
+	}
+
+	public Integer getActualVersion() {
+		return actualVersion;
+	}
+
+}
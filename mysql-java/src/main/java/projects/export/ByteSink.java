@@ -0,0 +1,168 @@
+package projects.export;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// Encodes text straight into one reusable ByteBuffer and writes the buffer to a channel whenever it fills up. Strings
+// are encoded to UTF-8 character by character and numbers digit by digit, so writing a row allocates nothing. With a
+// direct buffer and a FileChannel the bytes go from the buffer to the file without another copy on the Java heap.
+//
+// Write errors are rethrown as UncheckedIOException so the sink can be used from the export callbacks.
+final class ByteSink implements AutoCloseable {
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer;
+	private final byte[] digits = new byte[20];
+	private long bytesWritten;
+
+
+
+	ByteSink(WritableByteChannel channel, int bufferSize, boolean direct) {
+		this.channel = channel;
+		this.buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+	}
+
+
+
+	void writeByte(int b) {
+		if (!buffer.hasRemaining()) {
+			drain();
+		}
+
+		buffer.put((byte) b);
+	}
+
+
+
+	// writeAscii method for text known to be plain ASCII, like field names and separators
+	void writeAscii(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			writeByte(text.charAt(i));
+		}
+	}
+
+
+
+	// writeCodePoint method to encode one character as UTF-8
+	void writeCodePoint(int codePoint) {
+		if (codePoint < 0x80) {
+			writeByte(codePoint);
+		} else if (codePoint < 0x800) {
+			writeByte(0xC0 | codePoint >> 6);
+			writeByte(0x80 | codePoint & 0x3F);
+		} else if (codePoint < 0x10000) {
+			writeByte(0xE0 | codePoint >> 12);
+			writeByte(0x80 | codePoint >> 6 & 0x3F);
+			writeByte(0x80 | codePoint & 0x3F);
+		} else {
+			writeByte(0xF0 | codePoint >> 18);
+			writeByte(0x80 | codePoint >> 12 & 0x3F);
+			writeByte(0x80 | codePoint >> 6 & 0x3F);
+			writeByte(0x80 | codePoint & 0x3F);
+		}
+	}
+
+
+
+	void writeLong(long value) {
+		if (value == Long.MIN_VALUE) {
+			writeAscii(Long.toString(value));
+			return;
+		}
+
+		if (value < 0) {
+			writeByte('-');
+			value = -value;
+		}
+
+		int count = 0;
+
+		do {
+			digits[count++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+
+		while (count > 0) {
+			writeByte(digits[--count]);
+		}
+	}
+
+
+
+	// writeDecimal method to write a decimal in plain notation. Values that fit a long unscaled are written digit by
+	// digit, like the DECIMAL(7, 2) columns of the schema.
+	void writeDecimal(BigDecimal value) {
+		int scale = value.scale();
+
+		if (scale < 0 || scale > 18 || value.precision() > 18) {
+			writeAscii(value.toPlainString());
+			return;
+		}
+
+		long unscaled = value.unscaledValue().longValue();
+
+		if (unscaled < 0) {
+			writeByte('-');
+			unscaled = -unscaled;
+		}
+
+		long factor = 1;
+
+		for (int i = 0; i < scale; i++) {
+			factor *= 10;
+		}
+
+		writeLong(unscaled / factor);
+
+		if (scale > 0) {
+			writeByte('.');
+			long fraction = unscaled % factor;
+
+			for (long place = factor / 10; place > 0; place /= 10) {
+				writeByte((int) ('0' + fraction / place % 10));
+			}
+		}
+	}
+
+
+
+	long getBytesWritten() {
+		return bytesWritten + buffer.position();
+	}
+
+
+
+	// flush method to write whatever is buffered to the channel
+	void flush() {
+		drain();
+	}
+
+
+
+	@Override
+	public void close() throws IOException {
+		try {
+			drain();
+		} finally {
+			channel.close();
+		}
+	}
+
+
+
+	private void drain() {
+		buffer.flip();
+
+		try {
+			while (buffer.hasRemaining()) {
+				bytesWritten += channel.write(buffer);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			buffer.clear();
+		}
+	}
+}
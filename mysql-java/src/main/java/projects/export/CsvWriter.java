@@ -0,0 +1,110 @@
+package projects.export;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+// CSV (RFC 4180): a header line, then one line per project. The materials, steps and categories each go into one
+// quoted cell with their items separated by " | ": materials as "<num required> x <name> @ <cost>", steps as their
+// text in step order and categories as their names. Empty cells stand for NULL.
+final class CsvWriter extends RecordWriter {
+	private static final String HEADER =
+			"project_id,project_name,estimated_hours,actual_hours,difficulty,notes,materials,steps,categories\r\n";
+	private static final String ITEM_SEPARATOR = " | ";
+
+
+
+	CsvWriter(ByteSink sink) {
+		super(sink);
+	}
+
+
+
+	@Override
+	void writeHeader() {
+		sink.writeAscii(HEADER);
+	}
+
+	@Override
+	void writeProject(int projectId, String projectName, BigDecimal estimatedHours, BigDecimal actualHours,
+			Integer difficulty, String notes) {
+		sink.writeLong(projectId);
+		sink.writeByte(',');
+		writeQuoted(projectName);
+		sink.writeByte(',');
+		writeNullable(estimatedHours, "");
+		sink.writeByte(',');
+		writeNullable(actualHours, "");
+		sink.writeByte(',');
+		writeNullable(difficulty, "");
+		sink.writeByte(',');
+		writeQuoted(notes);
+	}
+
+	@Override
+	void openList(int list) {
+		sink.writeAscii(",\"");
+	}
+
+	@Override
+	void closeList(int list) {
+		sink.writeByte('"');
+	}
+
+	@Override
+	void writeItemSeparator(int list) {
+		sink.writeAscii(ITEM_SEPARATOR);
+	}
+
+	@Override
+	void writeMaterial(int materialId, String materialName, Integer numRequired, BigDecimal cost) {
+		writeNullable(numRequired, "?");
+		sink.writeAscii(" x ");
+		writeText(materialName);
+		sink.writeAscii(" @ ");
+		writeNullable(cost, "?");
+	}
+
+	@Override
+	void writeStep(int stepId, String stepText, int stepOrder) {
+		writeText(stepText);
+	}
+
+	@Override
+	void writeCategory(int categoryId, String categoryName) {
+		writeText(categoryName);
+	}
+
+	@Override
+	void writeRecordEnd() {
+		sink.writeAscii("\r\n");
+	}
+
+
+
+	// writeQuoted method to write a text cell, or an empty cell for null
+	private void writeQuoted(String text) {
+		if (Objects.nonNull(text)) {
+			sink.writeByte('"');
+			writeText(text);
+			sink.writeByte('"');
+		}
+	}
+
+	// writeText method to write text inside a quoted cell, doubling its quotes
+	private void writeText(String text) {
+		if (Objects.isNull(text)) {
+			return;
+		}
+
+		for (int i = 0; i < text.length();) {
+			int c = text.codePointAt(i);
+			i += Character.charCount(c);
+
+			if (c == '"') {
+				sink.writeByte('"');
+			}
+
+			sink.writeCodePoint(c);
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package projects.export;
+
+// The file formats ProjectExporter can write
+public enum ExportFormat {
+	JSONL {
+		@Override
+		RecordWriter newWriter(ByteSink sink) {
+			return new JsonLinesWriter(sink);
+		}
+	},
+
+	CSV {
+		@Override
+		RecordWriter newWriter(ByteSink sink) {
+			return new CsvWriter(sink);
+		}
+	};
+
+
+
+	abstract RecordWriter newWriter(ByteSink sink);
+
+
+
+	// forFileName method to pick the format from a file name: .csv or .csv.gz is CSV, anything else JSON Lines
+	public static ExportFormat forFileName(String fileName) {
+		String name = fileName.toLowerCase();
+		return name.endsWith(".csv") || name.endsWith(".csv.gz") ? CSV : JSONL;
+	}
+}
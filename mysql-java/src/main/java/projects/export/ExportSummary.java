@@ -0,0 +1,70 @@
+package projects.export;
+
+import java.nio.file.Path;
+
+// What an export wrote and how long it took
+public class ExportSummary {
+	private final Path file;
+	private final long projectCount;
+	private final long materialCount;
+	private final long stepCount;
+	private final long encodedBytes;
+	private final long fileBytes;
+	private final long elapsedMillis;
+
+
+
+	ExportSummary(Path file, long projectCount, long materialCount, long stepCount, long encodedBytes, long fileBytes,
+			long elapsedMillis) {
+		this.file = file;
+		this.projectCount = projectCount;
+		this.materialCount = materialCount;
+		this.stepCount = stepCount;
+		this.encodedBytes = encodedBytes;
+		this.fileBytes = fileBytes;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+
+
+	public Path getFile() {
+		return file;
+	}
+
+	public long getProjectCount() {
+		return projectCount;
+	}
+
+	public long getMaterialCount() {
+		return materialCount;
+	}
+
+	public long getStepCount() {
+		return stepCount;
+	}
+
+	// getEncodedBytes method to get the size of the export before compression
+	public long getEncodedBytes() {
+		return encodedBytes;
+	}
+
+	// getFileBytes method to get the size of the file written; smaller than the encoded bytes when gzipped
+	public long getFileBytes() {
+		return fileBytes;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+
+
+	@Override
+	public String toString() {
+		double seconds = Math.max(elapsedMillis, 1) / 1000.0;
+
+		return String.format("%s: %d projects, %d materials, %d steps, %d bytes (%d on disk) in %d ms, %.1f MB/s", file,
+				projectCount, materialCount, stepCount, encodedBytes, fileBytes, elapsedMillis,
+				encodedBytes / seconds / (1024 * 1024));
+	}
+}
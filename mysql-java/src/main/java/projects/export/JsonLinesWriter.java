@@ -0,0 +1,127 @@
+package projects.export;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+// JSON Lines: one JSON object per project and line, with the materials, steps and categories as nested arrays, e.g.
+// {"projectId":1,"projectName":"Deck","estimatedHours":12.00,"actualHours":null,"difficulty":3,"notes":"...",
+//  "materials":[{"materialId":4,"materialName":"Boards","numRequired":10,"cost":8.50}],
+//  "steps":[{"stepId":7,"stepText":"Measure","stepOrder":1024}],"categories":[{"categoryId":2,"categoryName":"Outdoor"}]}
+final class JsonLinesWriter extends RecordWriter {
+	private static final String[] LIST_NAMES = { ",\"materials\":[", ",\"steps\":[", ",\"categories\":[" };
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+
+
+	JsonLinesWriter(ByteSink sink) {
+		super(sink);
+	}
+
+
+
+	@Override
+	void writeProject(int projectId, String projectName, BigDecimal estimatedHours, BigDecimal actualHours,
+			Integer difficulty, String notes) {
+		sink.writeAscii("{\"projectId\":");
+		sink.writeLong(projectId);
+		sink.writeAscii(",\"projectName\":");
+		writeString(projectName);
+		sink.writeAscii(",\"estimatedHours\":");
+		writeNullable(estimatedHours, "null");
+		sink.writeAscii(",\"actualHours\":");
+		writeNullable(actualHours, "null");
+		sink.writeAscii(",\"difficulty\":");
+		writeNullable(difficulty, "null");
+		sink.writeAscii(",\"notes\":");
+		writeString(notes);
+	}
+
+	@Override
+	void openList(int list) {
+		sink.writeAscii(LIST_NAMES[list]);
+	}
+
+	@Override
+	void closeList(int list) {
+		sink.writeByte(']');
+	}
+
+	@Override
+	void writeItemSeparator(int list) {
+		sink.writeByte(',');
+	}
+
+	@Override
+	void writeMaterial(int materialId, String materialName, Integer numRequired, BigDecimal cost) {
+		sink.writeAscii("{\"materialId\":");
+		sink.writeLong(materialId);
+		sink.writeAscii(",\"materialName\":");
+		writeString(materialName);
+		sink.writeAscii(",\"numRequired\":");
+		writeNullable(numRequired, "null");
+		sink.writeAscii(",\"cost\":");
+		writeNullable(cost, "null");
+		sink.writeByte('}');
+	}
+
+	@Override
+	void writeStep(int stepId, String stepText, int stepOrder) {
+		sink.writeAscii("{\"stepId\":");
+		sink.writeLong(stepId);
+		sink.writeAscii(",\"stepText\":");
+		writeString(stepText);
+		sink.writeAscii(",\"stepOrder\":");
+		sink.writeLong(stepOrder);
+		sink.writeByte('}');
+	}
+
+	@Override
+	void writeCategory(int categoryId, String categoryName) {
+		sink.writeAscii("{\"categoryId\":");
+		sink.writeLong(categoryId);
+		sink.writeAscii(",\"categoryName\":");
+		writeString(categoryName);
+		sink.writeByte('}');
+	}
+
+	@Override
+	void writeRecordEnd() {
+		sink.writeAscii("}\n");
+	}
+
+
+
+	// writeString method to write a JSON string literal, or null, escaping quotes, backslashes and control characters
+	private void writeString(String text) {
+		if (Objects.isNull(text)) {
+			sink.writeAscii("null");
+			return;
+		}
+
+		sink.writeByte('"');
+
+		for (int i = 0; i < text.length();) {
+			int c = text.codePointAt(i);
+			i += Character.charCount(c);
+
+			if (c == '"' || c == '\\') {
+				sink.writeByte('\\');
+				sink.writeByte(c);
+			} else if (c == '\n') {
+				sink.writeAscii("\\n");
+			} else if (c == '\r') {
+				sink.writeAscii("\\r");
+			} else if (c == '\t') {
+				sink.writeAscii("\\t");
+			} else if (c < 0x20) {
+				sink.writeAscii("\\u00");
+				sink.writeByte(HEX[c >> 4]);
+				sink.writeByte(HEX[c & 0xF]);
+			} else {
+				sink.writeCodePoint(c);
+			}
+		}
+
+		sink.writeByte('"');
+	}
+}
@@ -0,0 +1,19 @@
+package projects.export;
+
+import java.math.BigDecimal;
+
+// Receives the rows of an export as they come off the database cursors, one project at a time: startProject, then the
+// project's materials, its steps in step order and its categories, then endProject. Values are handed over as plain
+// columns so no entity has to be built per row. Nullable columns arrive as null.
+public interface ProjectExportHandler {
+	void startProject(int projectId, String projectName, BigDecimal estimatedHours, BigDecimal actualHours,
+			Integer difficulty, String notes);
+
+	void material(int materialId, String materialName, Integer numRequired, BigDecimal cost);
+
+	void step(int stepId, String stepText, int stepOrder);
+
+	void category(int categoryId, String categoryName);
+
+	void endProject();
+}
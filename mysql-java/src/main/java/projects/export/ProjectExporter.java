@@ -0,0 +1,113 @@
+package projects.export;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+import projects.dao.DbConnection;
+import projects.dao.ExportDao;
+
+// Writes every project with its materials, steps and categories to a file, for the nightly export.
+//
+// ExportDao streams the four tables through cursors ordered by project_id and joins the children to their project in
+// a single merge pass, handing the columns to a format writer that encodes them into one reusable buffer. The buffer
+// is written to a FileChannel as it fills, so memory use is the same for ten projects or ten million. Without gzip the
+// buffer is a direct one and goes to the file without a heap copy; with gzip it passes through a GZIPOutputStream.
+//
+// The export is written to <file>.tmp and moved over the file only once complete, so a failed run never leaves a
+// truncated export in place. The buffer size can be set with -Dprojects.export.bufferSize (default 64 KiB).
+public class ProjectExporter {
+	private static final int BUFFER_SIZE = Integer.getInteger("projects.export.bufferSize", 1 << 16);
+
+	private final ExportDao exportDao;
+
+
+
+	public ProjectExporter() {
+		this(new ExportDao());
+	}
+
+	public ProjectExporter(ExportDao exportDao) {
+		this.exportDao = exportDao;
+	}
+
+
+
+	// export method to write all projects to the file in the given format, gzipped if requested
+	public ExportSummary export(Path file, ExportFormat format, boolean gzip) {
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		long start = System.nanoTime();
+
+		try {
+			RecordWriter writer;
+			long encodedBytes;
+
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				WritableByteChannel target = gzip
+						? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE))
+						: channel;
+
+				try (ByteSink sink = new ByteSink(target, BUFFER_SIZE, !gzip)) {
+					writer = format.newWriter(sink);
+					writer.writeHeader();
+					exportDao.exportAll(writer);
+					sink.flush();
+					encodedBytes = sink.getBytesWritten();
+				}
+			}
+
+			long fileBytes = Files.size(temp);
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			return new ExportSummary(file, writer.getProjectCount(), writer.getMaterialCount(), writer.getStepCount(),
+					encodedBytes, fileBytes, (System.nanoTime() - start) / 1_000_000);
+
+		} catch (IOException e) {
+			deleteQuietly(temp);
+			throw new UncheckedIOException(e);
+
+		} catch (RuntimeException e) {
+			deleteQuietly(temp);
+			throw e;
+		}
+	} // END of export
+
+
+
+	private static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			// The temporary file is overwritten by the next run anyway
+		}
+	}
+
+
+
+	// main method for scheduled exports: java projects.export.ProjectExporter <file>. The format follows the file name
+	// (.csv for CSV, anything else JSON Lines) and a name ending in .gz is gzipped.
+	public static void main(String[] args) {
+		if (args.length != 1) {
+			System.err.println("Usage: ProjectExporter <file>[.jsonl|.csv][.gz]");
+			System.exit(2);
+		}
+
+		Path file = Paths.get(args[0]);
+		String name = file.getFileName().toString();
+
+		try {
+			System.out.println(new ProjectExporter().export(file, ExportFormat.forFileName(name), name.toLowerCase().endsWith(".gz")));
+		} finally {
+			DbConnection.shutdown();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package projects.export;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+// Base of the export formats. Both formats write one record per project with the project's materials, steps and
+// categories as three lists in that order, so this class tracks which list is open: each child opens its list (and
+// writes empty lists for any skipped before it) or separates itself from the previous item, and endProject closes the
+// open list and writes the ones that never got an item. Subclasses only say how lists, items and values are written.
+abstract class RecordWriter implements ProjectExportHandler {
+	static final int MATERIALS = 0;
+	static final int STEPS = 1;
+	static final int CATEGORIES = 2;
+	private static final int END = 3;
+
+	final ByteSink sink;
+
+	private int openList = -1;
+
+	private long projectCount;
+	private long materialCount;
+	private long stepCount;
+
+
+
+	RecordWriter(ByteSink sink) {
+		this.sink = sink;
+	}
+
+
+
+	// writeHeader method for anything the format writes before the first record
+	void writeHeader() {
+	}
+
+	abstract void writeProject(int projectId, String projectName, BigDecimal estimatedHours, BigDecimal actualHours,
+			Integer difficulty, String notes);
+
+	abstract void openList(int list);
+
+	abstract void closeList(int list);
+
+	abstract void writeItemSeparator(int list);
+
+	abstract void writeMaterial(int materialId, String materialName, Integer numRequired, BigDecimal cost);
+
+	abstract void writeStep(int stepId, String stepText, int stepOrder);
+
+	abstract void writeCategory(int categoryId, String categoryName);
+
+	abstract void writeRecordEnd();
+
+
+
+	@Override
+	public final void startProject(int projectId, String projectName, BigDecimal estimatedHours, BigDecimal actualHours,
+			Integer difficulty, String notes) {
+		projectCount++;
+		openList = -1;
+		writeProject(projectId, projectName, estimatedHours, actualHours, difficulty, notes);
+	}
+
+	@Override
+	public final void material(int materialId, String materialName, Integer numRequired, BigDecimal cost) {
+		materialCount++;
+		item(MATERIALS);
+		writeMaterial(materialId, materialName, numRequired, cost);
+	}
+
+	@Override
+	public final void step(int stepId, String stepText, int stepOrder) {
+		stepCount++;
+		item(STEPS);
+		writeStep(stepId, stepText, stepOrder);
+	}
+
+	@Override
+	public final void category(int categoryId, String categoryName) {
+		item(CATEGORIES);
+		writeCategory(categoryId, categoryName);
+	}
+
+	@Override
+	public final void endProject() {
+		moveTo(END);
+		writeRecordEnd();
+	}
+
+
+
+	long getProjectCount() {
+		return projectCount;
+	}
+
+	long getMaterialCount() {
+		return materialCount;
+	}
+
+	long getStepCount() {
+		return stepCount;
+	}
+
+
+
+	// Helpers for the subclasses: text, numbers and nullable values
+
+	void writeNullable(Integer value, String nullText) {
+		if (Objects.isNull(value)) {
+			sink.writeAscii(nullText);
+		} else {
+			sink.writeLong(value);
+		}
+	}
+
+	void writeNullable(BigDecimal value, String nullText) {
+		if (Objects.isNull(value)) {
+			sink.writeAscii(nullText);
+		} else {
+			sink.writeDecimal(value);
+		}
+	}
+
+
+
+	// item method to open the list for its first item, or separate a further item from the one before
+	private void item(int list) {
+		if (openList == list) {
+			writeItemSeparator(list);
+		} else {
+			moveTo(list);
+		}
+	}
+
+	// moveTo method to close the open list and open every list up to the target, leaving the ones in between empty
+	private void moveTo(int list) {
+		while (openList < list) {
+			if (openList >= 0) {
+				closeList(openList);
+			}
+
+			openList++;
+
+			if (openList < END) {
+				openList(openList);
+			}
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package projects.importer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Parses CSV lines (RFC 4180) straight from the bytes of a mapped chunk into rows for one table. Fields may be quoted,
+// with doubled quotes inside and line breaks allowed; an empty unquoted field or \N is NULL. Every line is one row and
+// a point the import can resume from. Values stay strings and the database converts them to the column types.
+final class CsvRecordParser {
+	private final ByteBuffer chunk;
+	private final long offset;
+	private final int limit;
+	private final String table;
+	private final String[] columns;
+	private int pos;
+
+	private byte[] scratch = new byte[256];
+
+
+
+	CsvRecordParser(ByteBuffer chunk, long offset, String table, String[] columns) {
+		this.chunk = chunk;
+		this.offset = offset;
+		this.limit = chunk.limit();
+		this.table = table;
+		this.columns = columns;
+	}
+
+
+
+	List<ImportRecord> parse() {
+		List<ImportRecord> records = new ArrayList<>();
+
+		while (pos < limit) {
+			if (skipBlankLine()) {
+				continue;
+			}
+
+			String[] fields = readLine();
+
+			if (fields.length != columns.length) {
+				throw new IllegalArgumentException(
+						"Expected " + columns.length + " fields but found " + fields.length + " in the line ending at byte " + (offset + pos));
+			}
+
+			records.add(new ImportRecord(table, columns, fields, offset + pos));
+		}
+
+		return records;
+	}
+
+
+
+	// readHeader method to read the column names from the first line of the file; returns them and sets the position
+	// of the first data line in headerEnd[0]
+	static String[] readHeader(ByteBuffer file, int[] headerEnd) {
+		int end = nextLineEnd(file, 0, file.limit());
+		CsvRecordParser parser = new CsvRecordParser(file.slice(0, end), 0, null, null);
+		String[] names = parser.readLine();
+
+		for (int i = 0; i < names.length; i++) {
+			if (names[i] == null || names[i].isBlank()) {
+				throw new IllegalArgumentException("Column " + (i + 1) + " of the CSV header has no name");
+			}
+
+			names[i] = names[i].trim();
+		}
+
+		headerEnd[0] = end;
+		return names;
+	}
+
+
+
+	// nextLineEnd method to find the offset just past the line break that ends the line at from, ignoring line breaks
+	// inside quoted fields. Returns limit if the line doesn't end before it.
+	static int nextLineEnd(ByteBuffer data, int from, int limit) {
+		boolean quoted = false;
+
+		for (int i = from; i < limit; i++) {
+			int c = data.get(i);
+
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (c == '\n' && !quoted) {
+				return i + 1;
+			}
+		}
+
+		return limit;
+	}
+
+
+
+	private String[] readLine() {
+		List<String> fields = new ArrayList<>(columns == null ? 8 : columns.length);
+
+		while (true) {
+			fields.add(readField());
+
+			if (pos >= limit) {
+				break;
+			}
+
+			int c = chunk.get(pos++);
+
+			if (c == '\n') {
+				break;
+			}
+
+			if (c == '\r') {
+				if (pos < limit && chunk.get(pos) == '\n') {
+					pos++;
+				}
+
+				break;
+			}
+
+			if (c != ',') {
+				throw new IllegalArgumentException("Expected , or the end of the line at byte " + (offset + pos - 1));
+			}
+		}
+
+		return fields.toArray(new String[0]);
+	}
+
+
+
+	private String readField() {
+		int length = 0;
+
+		if (pos < limit && chunk.get(pos) == '"') {
+			pos++;
+
+			while (true) {
+				if (pos >= limit) {
+					throw new IllegalArgumentException("Unterminated quoted field at byte " + (offset + pos));
+				}
+
+				int c = chunk.get(pos++);
+
+				if (c == '"') {
+					if (pos < limit && chunk.get(pos) == '"') {
+						pos++;
+					} else {
+						break;
+					}
+				}
+
+				length = append(length, c);
+			}
+
+			return new String(scratch, 0, length, StandardCharsets.UTF_8);
+		}
+
+		while (pos < limit) {
+			int c = chunk.get(pos);
+
+			if (c == ',' || c == '\n' || c == '\r') {
+				break;
+			}
+
+			length = append(length, c);
+			pos++;
+		}
+
+		if (length == 0 || length == 2 && scratch[0] == '\\' && scratch[1] == 'N') {
+			return null;
+		}
+
+		return new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+
+
+
+	private int append(int length, int c) {
+		if (length == scratch.length) {
+			scratch = Arrays.copyOf(scratch, length * 2);
+		}
+
+		scratch[length] = (byte) c;
+		return length + 1;
+	}
+
+
+
+	// skipBlankLine method to move past an empty line; returns false if the line has content
+	private boolean skipBlankLine() {
+		int c = chunk.get(pos);
+
+		if (c == '\n') {
+			pos++;
+			return true;
+		}
+
+		if (c == '\r' && pos + 1 < limit && chunk.get(pos + 1) == '\n') {
+			pos += 2;
+			return true;
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,107 @@
+package projects.importer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+// Progress of an import, kept next to the input in <file>.checkpoint: the offset just past the last statement or line
+// that was committed, the rows committed so far, and the size and modification time of the input so a checkpoint is
+// never applied to a different file. It is replaced atomically after every commit and deleted when the import ends.
+//
+// The checkpoint is written right after the commit it describes. A crash between the two makes a resumed import
+// repeat the rows of that last commit interval.
+final class ImportCheckpoint {
+	private final Path file;
+	private final Path input;
+	private long offset;
+	private long rows;
+
+
+
+	private ImportCheckpoint(Path input) {
+		this.input = input;
+		this.file = input.resolveSibling(input.getFileName() + ".checkpoint");
+	}
+
+
+
+	// load method to read the checkpoint of the input, or start at offset 0 if there is none
+	static ImportCheckpoint load(Path input) {
+		ImportCheckpoint checkpoint = new ImportCheckpoint(input);
+
+		if (!Files.exists(checkpoint.file)) {
+			return checkpoint;
+		}
+
+		Properties properties = new Properties();
+
+		try (Reader reader = Files.newBufferedReader(checkpoint.file)) {
+			properties.load(reader);
+
+			if (Long.parseLong(properties.getProperty("size")) != Files.size(input) || Long.parseLong(
+					properties.getProperty("lastModified")) != Files.getLastModifiedTime(input).toMillis()) {
+				throw new IllegalStateException(checkpoint.file + " belongs to a different version of " + input
+						+ "; delete it to import the file from the start");
+			}
+
+			checkpoint.offset = Long.parseLong(properties.getProperty("offset"));
+			checkpoint.rows = Long.parseLong(properties.getProperty("rows"));
+			return checkpoint;
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+
+
+	// save method to record that everything before offset, rows in all, is committed
+	void save(long committedOffset, long committedRows) {
+		offset = committedOffset;
+		rows = committedRows;
+
+		Properties properties = new Properties();
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try {
+			properties.setProperty("offset", Long.toString(offset));
+			properties.setProperty("rows", Long.toString(rows));
+			properties.setProperty("size", Long.toString(Files.size(input)));
+			properties.setProperty("lastModified", Long.toString(Files.getLastModifiedTime(input).toMillis()));
+
+			try (Writer writer = Files.newBufferedWriter(temp)) {
+				properties.store(writer, "Import progress of " + input.getFileName());
+			}
+
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+
+
+	void delete() {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+
+
+	long getOffset() {
+		return offset;
+	}
+
+	long getRows() {
+		return rows;
+	}
+}
@@ -0,0 +1,51 @@
+package projects.importer;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+// The file formats ProjectImporter reads
+public enum ImportFormat {
+	// INSERT statements, one or more rows each, as written by hand or by mysqldump. Other statements and comments are
+	// skipped.
+	SQL {
+		@Override
+		int nextBoundary(ByteBuffer file, int from, int limit) {
+			return SqlRecordParser.nextStatementEnd(file, from, limit);
+		}
+
+		@Override
+		List<ImportRecord> parse(ByteBuffer chunk, long offset, String table, String[] header) {
+			return new SqlRecordParser(chunk, offset).parse();
+		}
+	},
+
+	// RFC 4180 CSV with a header line of column names, for one table. An empty unquoted field or \N is NULL.
+	CSV {
+		@Override
+		int nextBoundary(ByteBuffer file, int from, int limit) {
+			return CsvRecordParser.nextLineEnd(file, from, limit);
+		}
+
+		@Override
+		List<ImportRecord> parse(ByteBuffer chunk, long offset, String table, String[] header) {
+			return new CsvRecordParser(chunk, offset, table, header).parse();
+		}
+	};
+
+
+
+	// nextBoundary method to find the end of the record that contains or follows position from: the offset just past
+	// it, or limit if the data ends first
+	abstract int nextBoundary(ByteBuffer file, int from, int limit);
+
+	// parse method to turn a chunk that starts and ends on record boundaries into rows. offset is the position of the
+	// chunk in the file.
+	abstract List<ImportRecord> parse(ByteBuffer chunk, long offset, String table, String[] header);
+
+
+
+	// forFileName method to pick the format from a file name: .csv is CSV, anything else SQL
+	public static ImportFormat forFileName(String fileName) {
+		return fileName.toLowerCase().endsWith(".csv") ? CSV : SQL;
+	}
+}
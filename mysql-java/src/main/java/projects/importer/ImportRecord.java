@@ -0,0 +1,21 @@
+package projects.importer;
+
+// One row parsed from an import file: its table, its column names (null for all columns in table order) and its
+// values, as String, Long, BigDecimal or null. endOffset is the file offset just past the statement or line the row
+// came from, or -1 if more rows of the same statement follow; the import can only commit and checkpoint after a row
+// with an end offset, so a resumed import never loads half a statement twice.
+final class ImportRecord {
+	final String table;
+	final String[] columns;
+	final Object[] values;
+	final long endOffset;
+
+
+
+	ImportRecord(String table, String[] columns, Object[] values, long endOffset) {
+		this.table = table;
+		this.columns = columns;
+		this.values = values;
+		this.endOffset = endOffset;
+	}
+}
@@ -0,0 +1,56 @@
+package projects.importer;
+
+import java.nio.file.Path;
+
+// What an import loaded and how long it took
+public class ImportSummary {
+	private final Path file;
+	private final long rowsLoaded;
+	private final long totalRows;
+	private final long resumedFromOffset;
+	private final long elapsedMillis;
+
+
+
+	ImportSummary(Path file, long rowsLoaded, long totalRows, long resumedFromOffset, long elapsedMillis) {
+		this.file = file;
+		this.rowsLoaded = rowsLoaded;
+		this.totalRows = totalRows;
+		this.resumedFromOffset = resumedFromOffset;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+
+
+	public Path getFile() {
+		return file;
+	}
+
+	// getRowsLoaded method to get the rows loaded by this run
+	public long getRowsLoaded() {
+		return rowsLoaded;
+	}
+
+	// getTotalRows method to get the rows loaded from the file by this run and the runs it resumed
+	public long getTotalRows() {
+		return totalRows;
+	}
+
+	// getResumedFromOffset method to get the file offset this run started at; 0 unless it resumed from a checkpoint
+	public long getResumedFromOffset() {
+		return resumedFromOffset;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d rows in %d ms (%.0f rows/s)%s", file, rowsLoaded, elapsedMillis,
+				rowsLoaded * 1000.0 / Math.max(elapsedMillis, 1),
+				resumedFromOffset > 0 ? ", resumed at byte " + resumedFromOffset + ", " + totalRows + " rows in all" : "");
+	}
+}
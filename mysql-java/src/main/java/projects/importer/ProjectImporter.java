@@ -0,0 +1,182 @@
+package projects.importer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import projects.dao.BulkLoader;
+import projects.dao.DbConnection;
+import projects.exception.DbException;
+
+// Bulk import of seed and migration data from SQL files of INSERT statements (like Insert_Into_Projects.sql or a
+// mysqldump) or from CSV files with a header line.
+//
+// The file is memory-mapped and cut into chunks of about -Dprojects.import.chunkBytes (default 4 MiB) that end on a
+// statement or line boundary. The chunks are parsed in parallel on -Dprojects.import.threads threads (default: one per
+// core), at most two per thread ahead of the loader, while the calling thread loads the parsed rows in file order
+// through a BulkLoader: JDBC batches of -Dprojects.import.batchSize rows (default 1000) that the driver sends as
+// multi-row INSERTs, committed every -Dprojects.import.commitRows rows (default 50000, rounded up to the end of a
+// statement).
+//
+// After every commit the position in the file is saved in an ImportCheckpoint. If an import fails, running it again
+// on the same file continues after the last commit; the checkpoint is deleted once the whole file is loaded.
+//
+// LOAD DATA LOCAL INFILE would need local_infile enabled on the server and allowLoadLocalInfile on the driver, and only
+// takes delimited files, so the batched INSERTs are used for both formats.
+public class ProjectImporter {
+	private static final int BATCH_SIZE = Integer.getInteger("projects.import.batchSize", 1000);
+	private static final int COMMIT_ROWS = Integer.getInteger("projects.import.commitRows", 50_000);
+	private static final int CHUNK_BYTES = Integer.getInteger("projects.import.chunkBytes", 4 << 20);
+	private static final int THREADS = Integer.getInteger("projects.import.threads",
+			Runtime.getRuntime().availableProcessors());
+
+
+
+	// importFile method to load the file. For CSV, table names the target table; null takes it from the file name
+	// (material.csv loads the material table). It is ignored for SQL files, whose statements name their tables.
+	public ImportSummary importFile(Path file, ImportFormat format, String table) {
+		long start = System.nanoTime();
+		ImportCheckpoint checkpoint = ImportCheckpoint.load(file);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+
+			if (size > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException(file + " is larger than 2 GiB; split it into smaller files");
+			}
+
+			MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			String csvTable = Objects.nonNull(table) ? table : tableOf(file);
+			String[] header = null;
+			int dataStart = 0;
+
+			if (format == ImportFormat.CSV && size > 0) {
+				int[] headerEnd = new int[1];
+				header = CsvRecordParser.readHeader(data, headerEnd);
+				dataStart = headerEnd[0];
+			}
+
+			int from = (int) Math.max(dataStart, checkpoint.getOffset());
+			long resumedRows = checkpoint.getRows();
+			long rows = load(data, from, format, csvTable, header, checkpoint);
+
+			checkpoint.delete();
+			return new ImportSummary(file, rows - resumedRows, rows, from > dataStart ? from : 0,
+					(System.nanoTime() - start) / 1_000_000);
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	} // END of importFile
+
+
+
+	// load method to parse the chunks from position from on in parallel and load their rows in order. Returns the rows
+	// loaded in all, including those of earlier runs.
+	private long load(ByteBuffer data, int from, ImportFormat format, String table, String[] header,
+			ImportCheckpoint checkpoint) {
+		ExecutorService parsers = Executors.newFixedThreadPool(THREADS, runnable -> {
+			Thread thread = new Thread(runnable, "projects-import-parser");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		Deque<Future<List<ImportRecord>>> parsing = new ArrayDeque<>();
+		long rows = checkpoint.getRows();
+		long rowsSinceCommit = 0;
+		int next = from;
+		int limit = data.limit();
+
+		try (BulkLoader loader = new BulkLoader(BATCH_SIZE)) {
+			while (next < limit || !parsing.isEmpty()) {
+				while (next < limit && parsing.size() < 2 * THREADS) {
+					int end = next;
+					int target = (int) Math.min((long) next + CHUNK_BYTES, limit);
+
+					do {
+						end = format.nextBoundary(data, end, limit);
+					} while (end < target);
+
+					ByteBuffer chunk = data.slice(next, end - next);
+					long offset = next;
+					parsing.add(parsers.submit(() -> format.parse(chunk, offset, table, header)));
+					next = end;
+				}
+
+				for (ImportRecord record : take(parsing.poll())) {
+					loader.add(record.table, record.columns, record.values);
+					rows++;
+					rowsSinceCommit++;
+
+					if (record.endOffset >= 0 && rowsSinceCommit >= COMMIT_ROWS) {
+						loader.commit();
+						checkpoint.save(record.endOffset, rows);
+						rowsSinceCommit = 0;
+					}
+				}
+			}
+
+			loader.commit();
+			return rows;
+
+		} finally {
+			parsers.shutdownNow();
+		}
+	} // END of load
+
+
+
+	private static List<ImportRecord> take(Future<List<ImportRecord>> chunk) {
+		try {
+			return chunk.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException("Import interrupted", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw cause instanceof RuntimeException ? (RuntimeException) cause : new DbException(cause);
+		}
+	}
+
+
+
+	private static String tableOf(Path file) {
+		String name = file.getFileName().toString();
+		int dot = name.indexOf('.');
+		return dot < 0 ? name : name.substring(0, dot);
+	}
+
+
+
+	// main method for loading a file from the command line: java projects.importer.ProjectImporter <file> [table].
+	// Files ending in .csv are read as CSV into the given table (default: the file name up to the first dot), all
+	// others as SQL.
+	public static void main(String[] args) {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: ProjectImporter <file.sql|file.csv> [table]");
+			System.exit(2);
+		}
+
+		Path file = Paths.get(args[0]);
+
+		try {
+			System.out.println(new ProjectImporter().importFile(file,
+					ImportFormat.forFileName(file.getFileName().toString()), args.length > 1 ? args[1] : null));
+		} finally {
+			DbConnection.shutdown();
+		}
+	}
+}
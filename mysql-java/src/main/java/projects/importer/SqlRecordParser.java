@@ -0,0 +1,419 @@
+package projects.importer;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Parses INSERT statements straight from the bytes of a mapped chunk:
+//
+//   INSERT [IGNORE] INTO table [(column, ...)] VALUES (value, ...)[, (value, ...)]...;
+//
+// Values may be quoted strings ('...' or "..." with backslash escapes or doubled quotes), numbers, NULL, TRUE or FALSE.
+// Any other statement, like the SET, LOCK TABLES and CREATE TABLE statements of a mysqldump file, is skipped along with
+// comments. Strings are decoded as UTF-8 from a reusable scratch array, and table and column names are shared between
+// the rows of consecutive statements that use the same ones.
+final class SqlRecordParser {
+	private final ByteBuffer chunk;
+	private final long offset;
+	private final int limit;
+	private int pos;
+
+	private byte[] scratch = new byte[256];
+	private String lastTable;
+	private String[] lastColumns;
+
+
+
+	SqlRecordParser(ByteBuffer chunk, long offset) {
+		this.chunk = chunk;
+		this.offset = offset;
+		this.limit = chunk.limit();
+	}
+
+
+
+	List<ImportRecord> parse() {
+		List<ImportRecord> records = new ArrayList<>();
+
+		while (skipSpaceAndComments()) {
+			if (chunk.get(pos) == ';') {
+				pos++;
+			} else if (matchKeyword("INSERT")) {
+				parseInsert(records);
+			} else {
+				pos = nextStatementEnd(chunk, pos, limit);
+			}
+		}
+
+		return records;
+	}
+
+
+
+	// nextStatementEnd method to find the offset just past the semicolon that ends the statement at from, skipping
+	// semicolons inside quotes and comments. Returns limit if the statement doesn't end before it.
+	static int nextStatementEnd(ByteBuffer data, int from, int limit) {
+		int quote = 0;
+
+		for (int i = from; i < limit; i++) {
+			int c = data.get(i);
+
+			if (quote != 0) {
+				if (c == '\\' && quote != '`') {
+					i++;
+				} else if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '\'' || c == '"' || c == '`') {
+				quote = c;
+			} else if (c == ';') {
+				return i + 1;
+			} else if (c == '#' || c == '-' && i + 2 < limit && data.get(i + 1) == '-' && isSpace(data.get(i + 2))) {
+				while (i < limit && data.get(i) != '\n') {
+					i++;
+				}
+			} else if (c == '/' && i + 1 < limit && data.get(i + 1) == '*') {
+				for (i += 2; i + 1 < limit && !(data.get(i) == '*' && data.get(i + 1) == '/'); i++) {
+				}
+
+				i++;
+			}
+		}
+
+		return limit;
+	}
+
+
+
+	private void parseInsert(List<ImportRecord> records) {
+		skipSpaceAndComments();
+		matchKeyword("IGNORE");
+		skipSpaceAndComments();
+		expectKeyword("INTO");
+		skipSpaceAndComments();
+
+		String table = identifier();
+		String[] columns = null;
+
+		if (table.equals(lastTable)) {
+			table = lastTable;
+		}
+
+		skipSpaceAndComments();
+
+		if (peek() == '(') {
+			pos++;
+			List<String> names = new ArrayList<>();
+
+			do {
+				skipSpaceAndComments();
+				names.add(identifier());
+				skipSpaceAndComments();
+			} while (consume(','));
+
+			expect(')');
+			columns = names.toArray(new String[0]);
+
+			if (Arrays.equals(columns, lastColumns)) {
+				columns = lastColumns;
+			}
+		}
+
+		lastTable = table;
+		lastColumns = columns;
+
+		skipSpaceAndComments();
+
+		if (!matchKeyword("VALUES") && !matchKeyword("VALUE")) {
+			throw error("Expected VALUES");
+		}
+
+		List<Object[]> rows = new ArrayList<>();
+
+		do {
+			skipSpaceAndComments();
+			expect('(');
+
+			List<Object> values = new ArrayList<>(columns == null ? 8 : columns.length);
+
+			do {
+				skipSpaceAndComments();
+				values.add(value());
+				skipSpaceAndComments();
+			} while (consume(','));
+
+			expect(')');
+			rows.add(values.toArray());
+			skipSpaceAndComments();
+		} while (consume(','));
+
+		if (pos < limit && !consume(';')) {
+			throw error("Expected ; after the values");
+		}
+
+		// Only the last row of the statement marks a point the import can resume from
+		for (int i = 0; i < rows.size(); i++) {
+			records.add(new ImportRecord(table, columns, rows.get(i), i == rows.size() - 1 ? offset + pos : -1));
+		}
+	} // END of parseInsert
+
+
+
+	private Object value() {
+		int c = peek();
+
+		if (c == '\'' || c == '"') {
+			return string();
+		}
+
+		if (c == '-' || c == '+' || c == '.' || c >= '0' && c <= '9') {
+			return number();
+		}
+
+		if (matchKeyword("NULL")) {
+			return null;
+		}
+
+		if (matchKeyword("TRUE")) {
+			return 1L;
+		}
+
+		if (matchKeyword("FALSE")) {
+			return 0L;
+		}
+
+		throw error("Unsupported value");
+	}
+
+
+
+	private String string() {
+		int quote = chunk.get(pos++);
+		int length = 0;
+
+		while (true) {
+			if (pos >= limit) {
+				throw error("Unterminated string");
+			}
+
+			int c = chunk.get(pos++);
+
+			if (c == quote) {
+				if (pos < limit && chunk.get(pos) == quote) {
+					pos++;
+				} else {
+					break;
+				}
+			} else if (c == '\\' && pos < limit) {
+				c = unescape(chunk.get(pos++));
+			}
+
+			if (length == scratch.length) {
+				scratch = Arrays.copyOf(scratch, length * 2);
+			}
+
+			scratch[length++] = (byte) c;
+		}
+
+		return new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+
+
+
+	private static int unescape(int c) {
+		switch (c) {
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case '0':
+			return 0;
+		case 'b':
+			return '\b';
+		case 'Z':
+			return 26;
+		default:
+			return c;
+		}
+	}
+
+
+
+	// number method to read an integer into a Long without creating a string, or anything with a fraction, exponent or
+	// more than 18 digits into a BigDecimal
+	private Object number() {
+		int start = pos;
+		boolean negative = false;
+		boolean integer = true;
+		long value = 0;
+		int digits = 0;
+
+		if (peek() == '-' || peek() == '+') {
+			negative = chunk.get(pos++) == '-';
+		}
+
+		while (pos < limit) {
+			int c = chunk.get(pos);
+
+			if (c >= '0' && c <= '9') {
+				value = value * 10 + (c - '0');
+				digits++;
+			} else if (c == '.' || c == 'e' || c == 'E' || (c == '-' || c == '+') && !integer) {
+				integer = false;
+			} else {
+				break;
+			}
+
+			pos++;
+		}
+
+		if (digits == 0) {
+			throw error("Invalid number");
+		}
+
+		if (integer && digits <= 18) {
+			return negative ? -value : value;
+		}
+
+		char[] text = new char[pos - start];
+
+		for (int i = 0; i < text.length; i++) {
+			text[i] = (char) chunk.get(start + i);
+		}
+
+		try {
+			return new BigDecimal(text);
+		} catch (NumberFormatException e) {
+			throw error("Invalid number");
+		}
+	}
+
+
+
+	private String identifier() {
+		int start;
+		int end;
+
+		if (peek() == '`') {
+			start = ++pos;
+
+			while (pos < limit && chunk.get(pos) != '`') {
+				pos++;
+			}
+
+			end = pos;
+			expect('`');
+		} else {
+			start = pos;
+
+			while (pos < limit && isIdentifierChar(chunk.get(pos))) {
+				pos++;
+			}
+
+			end = pos;
+		}
+
+		if (end == start) {
+			throw error("Expected a name");
+		}
+
+		byte[] name = new byte[end - start];
+		chunk.get(start, name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+
+
+	// skipSpaceAndComments method to move past white space and comments; returns false at the end of the chunk
+	private boolean skipSpaceAndComments() {
+		while (pos < limit) {
+			int c = chunk.get(pos);
+
+			if (isSpace(c)) {
+				pos++;
+			} else if (c == '#' || c == '-' && pos + 2 < limit && chunk.get(pos + 1) == '-' && isSpace(chunk.get(pos + 2))) {
+				while (pos < limit && chunk.get(pos) != '\n') {
+					pos++;
+				}
+			} else if (c == '/' && pos + 1 < limit && chunk.get(pos + 1) == '*') {
+				pos += 2;
+
+				while (pos + 1 < limit && !(chunk.get(pos) == '*' && chunk.get(pos + 1) == '/')) {
+					pos++;
+				}
+
+				pos = Math.min(pos + 2, limit);
+			} else {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+
+
+	// matchKeyword method to consume the keyword (any case) if it is next and not just the start of a longer word
+	private boolean matchKeyword(String keyword) {
+		int end = pos + keyword.length();
+
+		if (end > limit || end < limit && isIdentifierChar(chunk.get(end))) {
+			return false;
+		}
+
+		for (int i = 0; i < keyword.length(); i++) {
+			if (Character.toUpperCase(chunk.get(pos + i)) != keyword.charAt(i)) {
+				return false;
+			}
+		}
+
+		pos = end;
+		return true;
+	}
+
+	private void expectKeyword(String keyword) {
+		if (!matchKeyword(keyword)) {
+			throw error("Expected " + keyword);
+		}
+	}
+
+	private boolean consume(char c) {
+		if (pos < limit && chunk.get(pos) == c) {
+			pos++;
+			return true;
+		}
+
+		return false;
+	}
+
+	private void expect(char c) {
+		if (!consume(c)) {
+			throw error("Expected " + c);
+		}
+	}
+
+	private int peek() {
+		return pos < limit ? chunk.get(pos) : -1;
+	}
+
+
+
+	private static boolean isSpace(int c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+	}
+
+	private static boolean isIdentifierChar(int c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '$' || c < 0;
+	}
+
+
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at byte " + (offset + pos));
+	}
+}
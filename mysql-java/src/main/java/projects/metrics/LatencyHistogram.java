@@ -0,0 +1,121 @@
+package projects.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free histogram of latencies in nanoseconds. Values are counted in log-linear buckets: every power of two is
+// split into SUB_BUCKETS equal buckets, so a recorded value lands in a bucket at most 1/SUB_BUCKETS (12.5%) wider than
+// the value itself, over the whole range of long. Recording is one atomic increment plus two adders and never blocks.
+//
+// Percentiles are read from a snapshot of the bucket counts and report the upper bound of the bucket that holds the
+// requested rank. Reads that race with recording may be off by the samples recorded meanwhile.
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+
+
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+
+		buckets.incrementAndGet(bucketOf(value));
+		count.increment();
+		totalNanos.add(value);
+		maxNanos.accumulate(value);
+	}
+
+
+
+	// percentileNanos method to get the latency at or below which the given fraction (e.g. 0.99) of samples fall
+	public long percentileNanos(double fraction) {
+		long[] snapshot = new long[BUCKET_COUNT];
+		long total = 0;
+
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			snapshot[bucket] = buckets.get(bucket);
+			total += snapshot[bucket];
+		}
+
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(fraction * total));
+		long seen = 0;
+
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			seen += snapshot[bucket];
+
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(bucket), maxNanos.get());
+			}
+		}
+
+		return maxNanos.get();
+	}
+
+
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	public double getMeanNanos() {
+		long samples = count.sum();
+		return samples == 0 ? 0.0 : (double) totalNanos.sum() / samples;
+	}
+
+
+
+	// reset method to clear the histogram. Samples recorded while it runs may be partly kept.
+	public void reset() {
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			buckets.set(bucket, 0);
+		}
+
+		count.reset();
+		totalNanos.reset();
+		maxNanos.reset();
+	}
+
+
+
+	// Values below SUB_BUCKETS get a bucket each. Above that, the bucket is picked by the position of the highest set
+	// bit and the SUB_BUCKET_BITS bits below it.
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+
+
+	static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+}
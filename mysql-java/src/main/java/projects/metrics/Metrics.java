@@ -0,0 +1,117 @@
+package projects.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Registry of the per-operation metrics of the DAO and service layers.
+//
+// Each operation is registered as an MBean (projects:type=Operation,name=<Class.method>) on the platform MBean server,
+// so jconsole or any JMX client can read it; -Dprojects.metrics.jmx=false turns that off. Setting
+// -Dprojects.metrics.logSeconds to a positive number also writes every operation that has been called to the log
+// at that interval.
+public class Metrics {
+	private static final Logger LOG = Logger.getLogger(Metrics.class.getName());
+
+	private static final String DOMAIN = "projects";
+	private static final boolean JMX_ENABLED = Boolean.parseBoolean(System.getProperty("projects.metrics.jmx", "true"));
+	private static final long LOG_SECONDS = Long.getLong("projects.metrics.logSeconds", 0);
+
+	private static final Map<String, OperationMetrics> OPERATIONS = new ConcurrentHashMap<>();
+
+	static {
+		if (LOG_SECONDS > 0) {
+			startLogDump(LOG_SECONDS);
+		}
+	}
+
+
+
+	// operation method to get the metrics of the named operation, creating and registering them on first use
+	public static OperationMetrics operation(String name) {
+		return OPERATIONS.computeIfAbsent(name, Metrics::register);
+	}
+
+
+
+	// getOperations method to list every operation by name
+	public static Collection<OperationMetrics> getOperations() {
+		List<OperationMetrics> operations = new ArrayList<>(OPERATIONS.values());
+		operations.sort(Comparator.comparing(OperationMetrics::getName));
+		return Collections.unmodifiableList(operations);
+	}
+
+
+
+	// report method to describe every operation that has been called, one per line
+	public static String report() {
+		StringBuilder report = new StringBuilder();
+
+		for (OperationMetrics operation : getOperations()) {
+			if (operation.getCallCount() > 0) {
+				report.append("\n   ").append(operation);
+			}
+		}
+
+		return report.toString();
+	}
+
+
+
+	public static void resetAll() {
+		OPERATIONS.values().forEach(OperationMetrics::reset);
+	}
+
+
+
+	private static OperationMetrics register(String name) {
+		OperationMetrics operation = new OperationMetrics(name);
+
+		if (JMX_ENABLED) {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName objectName = new ObjectName(DOMAIN + ":type=Operation,name=" + name);
+
+				if (!server.isRegistered(objectName)) {
+					server.registerMBean(operation, objectName);
+				}
+			} catch (JMException e) {
+				LOG.log(Level.WARNING, "Unable to register metrics MBean for " + name, e);
+			}
+		}
+
+		return operation;
+	}
+
+
+
+	private static void startLogDump(long seconds) {
+		ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "projects-metrics-log");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		dumper.scheduleAtFixedRate(() -> {
+			String report = report();
+
+			if (!report.isEmpty()) {
+				LOG.info("Operation metrics:" + report);
+			}
+		}, seconds, seconds, TimeUnit.SECONDS);
+	}
+}
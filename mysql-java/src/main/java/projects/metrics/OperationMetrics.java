@@ -0,0 +1,144 @@
+package projects.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+// Call count, error count, rows mapped and latency histogram of one DAO or service operation. Every recorder is an
+// adder or a lock-free histogram, so concurrent callers never contend on a lock. Get an instance from
+// Metrics.operation(name) and keep it in a static field.
+public class OperationMetrics implements OperationMetricsMBean {
+	private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+	private final String name;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder errorCount = new LongAdder();
+	private final LongAdder rowCount = new LongAdder();
+
+
+
+	OperationMetrics(String name) {
+		this.name = name;
+	}
+
+
+
+	// time method to run the call, recording its latency and whether it threw
+	public <T> T time(Supplier<T> call) {
+		return time(call, null);
+	}
+
+
+
+	// time method that also records the number of rows the result holds, as counted by rowCounter
+	public <T> T time(Supplier<T> call, ToIntFunction<? super T> rowCounter) {
+		long start = System.nanoTime();
+		boolean failed = true;
+
+		try {
+			T result = call.get();
+
+			if (rowCounter != null && result != null) {
+				rowCount.add(rowCounter.applyAsInt(result));
+			}
+
+			failed = false;
+			return result;
+
+		} finally {
+			record(System.nanoTime() - start, failed);
+		}
+	}
+
+
+
+	public void time(Runnable call) {
+		time(() -> {
+			call.run();
+			return null;
+		});
+	}
+
+
+
+	public void record(long nanos, boolean failed) {
+		latency.record(nanos);
+
+		if (failed) {
+			errorCount.increment();
+		}
+	}
+
+
+
+	public void addRows(long rows) {
+		rowCount.add(rows);
+	}
+
+
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getCallCount() {
+		return latency.getCount();
+	}
+
+	@Override
+	public long getErrorCount() {
+		return errorCount.sum();
+	}
+
+	@Override
+	public long getRowCount() {
+		return rowCount.sum();
+	}
+
+	@Override
+	public double getRowsPerCall() {
+		long calls = getCallCount();
+		return calls == 0 ? 0.0 : (double) getRowCount() / calls;
+	}
+
+	@Override
+	public double getMeanMillis() {
+		return latency.getMeanNanos() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getP50Millis() {
+		return latency.percentileNanos(0.50) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getP99Millis() {
+		return latency.percentileNanos(0.99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getP999Millis() {
+		return latency.percentileNanos(0.999) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return latency.getMaxNanos() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public void reset() {
+		latency.reset();
+		errorCount.reset();
+		rowCount.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: calls=%d, errors=%d, rows=%d, mean=%.3fms, p50=%.3fms, p99=%.3fms, p999=%.3fms, max=%.3fms",
+				name, getCallCount(), getErrorCount(), getRowCount(), getMeanMillis(), getP50Millis(), getP99Millis(),
+				getP999Millis(), getMaxMillis());
+	}
+}
@@ -0,0 +1,26 @@
+package projects.metrics;
+
+// JMX view of one operation's metrics. Registered as projects:type=Operation,name=<Class.method>.
+public interface OperationMetricsMBean {
+	String getName();
+
+	long getCallCount();
+
+	long getErrorCount();
+
+	long getRowCount();
+
+	double getRowsPerCall();
+
+	double getMeanMillis();
+
+	double getP50Millis();
+
+	double getP99Millis();
+
+	double getP999Millis();
+
+	double getMaxMillis();
+
+	void reset();
+}
@@ -0,0 +1,109 @@
+package projects.search;
+
+import java.util.Arrays;
+
+// The projects a term occurs in, as two parallel primitive arrays: project IDs sorted ascending and the term's weight in
+// each project (its occurrences, multiplied by the weight of the field they were found in). Sorted IDs let a query
+// intersect lists with binary searches and keep a list at two ints per project instead of a boxed map entry.
+//
+// While the index is being built, postings are appended in whatever order the projects arrive and sorted once by
+// seal(); afterwards add and remove keep the arrays sorted. Not thread-safe; SearchIndex guards every list with its lock.
+final class PostingList {
+	private int[] ids = new int[4];
+	private int[] weights = new int[4];
+	private int size;
+
+
+
+	// append method for the build: adds a project that is not in the list yet, without keeping the order
+	void append(int projectId, int weight) {
+		ensureCapacity(size + 1);
+		ids[size] = projectId;
+		weights[size] = weight;
+		size++;
+	}
+
+
+
+	// seal method to sort the postings appended during the build by project ID
+	void seal() {
+		long[] packed = new long[size];
+
+		for (int i = 0; i < size; i++) {
+			packed[i] = (long) ids[i] << 32 | weights[i] & 0xFFFFFFFFL;
+		}
+
+		Arrays.sort(packed);
+
+		for (int i = 0; i < size; i++) {
+			ids[i] = (int) (packed[i] >>> 32);
+			weights[i] = (int) packed[i];
+		}
+	}
+
+
+
+	// add method to insert a project at its sorted position, or add to its weight if it is already in the list
+	void add(int projectId, int weight) {
+		int index = indexOf(projectId);
+
+		if (index >= 0) {
+			weights[index] += weight;
+			return;
+		}
+
+		int insertAt = -index - 1;
+		ensureCapacity(size + 1);
+		System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+		System.arraycopy(weights, insertAt, weights, insertAt + 1, size - insertAt);
+		ids[insertAt] = projectId;
+		weights[insertAt] = weight;
+		size++;
+	}
+
+
+
+	// remove method to drop a project from the list; returns true if the list is empty afterwards
+	boolean remove(int projectId) {
+		int index = indexOf(projectId);
+
+		if (index >= 0) {
+			System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+			System.arraycopy(weights, index + 1, weights, index, size - index - 1);
+			size--;
+		}
+
+		return size == 0;
+	}
+
+
+
+	// indexOf method to find a project with a binary search; a negative result is -(insertion point) - 1
+	int indexOf(int projectId) {
+		return Arrays.binarySearch(ids, 0, size, projectId);
+	}
+
+
+
+	int idAt(int index) {
+		return ids[index];
+	}
+
+	int weightAt(int index) {
+		return weights[index];
+	}
+
+	int size() {
+		return size;
+	}
+
+
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > ids.length) {
+			int newLength = Math.max(capacity, ids.length + (ids.length >> 1));
+			ids = Arrays.copyOf(ids, newLength);
+			weights = Arrays.copyOf(weights, newLength);
+		}
+	}
+}
@@ -0,0 +1,390 @@
+package projects.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+// In-memory inverted index over the text of every project: its name and notes, the text of its steps and the names of
+// its materials. Each term maps to a PostingList of the projects it occurs in, so a search only touches the lists of
+// the query's terms and never the database.
+//
+// A search matches the projects that contain every query term and ranks them by the sum, over the terms, of
+// (1 + ln weight) * ln(1 + projects / projects containing the term): a term counts for more the more often it occurs in
+// the project and the rarer it is overall. Occurrences are weighted by field, so a match in the project name outranks
+// one in a material, which outranks one in the notes or steps.
+//
+// The index is built in one pass over the projects handed to rebuild, then kept current by the service layer calling
+// index and remove after each write. Writes that arrive while a build is running are queued and applied when it
+// finishes, so none is lost to a build that read the project before it changed. Before the first build the index is
+// inactive and ignores writes.
+public class SearchIndex {
+	// Weight of one occurrence of a term in each field
+	private static final int NAME_WEIGHT = 4;
+	private static final int MATERIAL_WEIGHT = 2;
+	private static final int STEP_WEIGHT = 1;
+	private static final int NOTES_WEIGHT = 1;
+
+	private enum State {
+		INACTIVE, BUILDING, READY
+	}
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Object buildLock = new Object();
+
+	// Guarded by lock
+	private Map<String, PostingList> postings = new HashMap<>();
+	private Map<Integer, Document> documents = new HashMap<>();
+	private State state = State.INACTIVE;
+	private final List<Runnable> pendingWrites = new ArrayList<>();
+
+
+
+	// ensureBuilt method to build the index from the source the first time it is needed. The source hands every
+	// project, with its materials and steps, to the consumer it is given.
+	public void ensureBuilt(Consumer<Consumer<Project>> source) {
+		synchronized (buildLock) {
+			if (!isReady()) {
+				rebuild(source);
+			}
+		}
+	}
+
+
+
+	// rebuild method to index every project from the source in one pass and then swap the new index in. Searches keep
+	// using the previous index while the build runs.
+	public void rebuild(Consumer<Consumer<Project>> source) {
+		synchronized (buildLock) {
+			State previous = setState(State.BUILDING);
+
+			Map<String, PostingList> newPostings = new HashMap<>();
+			Map<Integer, Document> newDocuments = new HashMap<>();
+
+			try {
+				source.accept(project -> {
+					Document document = Document.of(project);
+
+					if (Objects.nonNull(newDocuments.put(project.getProjectId(), document))) {
+						throw new IllegalStateException("Project " + project.getProjectId() + " was handed to the index twice");
+					}
+
+					for (int i = 0; i < document.terms.length; i++) {
+						newPostings.computeIfAbsent(document.terms[i], term -> new PostingList()).append(project.getProjectId(),
+								document.weights[i]);
+					}
+				});
+
+				newPostings.values().forEach(PostingList::seal);
+
+			} catch (RuntimeException e) {
+				lock.writeLock().lock();
+
+				try {
+					// The previous index is still the one searched, so the writes queued during the failed build must
+					// reach it; an inactive index has nothing to apply them to
+					if (previous == State.READY) {
+						pendingWrites.forEach(Runnable::run);
+					}
+
+					state = previous;
+					pendingWrites.clear();
+				} finally {
+					lock.writeLock().unlock();
+				}
+
+				throw e;
+			}
+
+			lock.writeLock().lock();
+
+			try {
+				postings = newPostings;
+				documents = newDocuments;
+				pendingWrites.forEach(Runnable::run);
+				pendingWrites.clear();
+				state = State.READY;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	} // END of rebuild
+
+
+
+	// index method to add a project, or replace what is indexed for it, after it was written. The project must carry
+	// its materials and steps.
+	public void index(Project project) {
+		int projectId = project.getProjectId();
+		Document document = Document.of(project);
+
+		write(() -> {
+			removeDocument(projectId);
+			addDocument(projectId, document);
+		});
+	}
+
+
+
+	// remove method to drop a deleted project from the index
+	public void remove(int projectId) {
+		write(() -> removeDocument(projectId));
+	}
+
+
+
+	// search method to rank the projects that contain every term of the query and return the best limit of them
+	public List<SearchResult> search(String query, int limit) {
+		Set<String> terms = new LinkedHashSet<>();
+		Tokenizer.tokenize(query, terms::add);
+
+		if (terms.isEmpty() || limit < 1) {
+			return new ArrayList<>();
+		}
+
+		lock.readLock().lock();
+
+		try {
+			List<PostingList> lists = new ArrayList<>(terms.size());
+
+			for (String term : terms) {
+				PostingList list = postings.get(term);
+
+				if (Objects.isNull(list)) {
+					return new ArrayList<>();
+				}
+
+				lists.add(list);
+			}
+
+			// Start from the shortest list; every other list only has to be probed for its candidates
+			lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+			PostingList shortest = lists.get(0);
+			int[] candidates = new int[shortest.size()];
+			double[] scores = new double[shortest.size()];
+			int count = shortest.size();
+
+			for (int i = 0; i < count; i++) {
+				candidates[i] = shortest.idAt(i);
+				scores[i] = score(shortest.weightAt(i), shortest.size());
+			}
+
+			for (int l = 1; l < lists.size() && count > 0; l++) {
+				PostingList list = lists.get(l);
+				int kept = 0;
+
+				for (int i = 0; i < count; i++) {
+					int index = list.indexOf(candidates[i]);
+
+					if (index >= 0) {
+						candidates[kept] = candidates[i];
+						scores[kept] = scores[i] + score(list.weightAt(index), list.size());
+						kept++;
+					}
+				}
+
+				count = kept;
+			}
+
+			return topResults(candidates, scores, count, limit);
+
+		} finally {
+			lock.readLock().unlock();
+		}
+	} // END of search
+
+
+
+	public boolean isReady() {
+		lock.readLock().lock();
+
+		try {
+			return state == State.READY;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// isActive method to tell whether writes have to be reported to the index, i.e. it is built or being built
+	public boolean isActive() {
+		lock.readLock().lock();
+
+		try {
+			return state != State.INACTIVE;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int getProjectCount() {
+		lock.readLock().lock();
+
+		try {
+			return documents.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int getTermCount() {
+		lock.readLock().lock();
+
+		try {
+			return postings.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+
+
+	// score method for one term in one project. Called with the read lock held.
+	private double score(int weight, int projectsWithTerm) {
+		return (1 + Math.log(weight)) * Math.log(1 + (double) documents.size() / projectsWithTerm);
+	}
+
+
+
+	// topResults method to pick the limit best candidates with a bounded min-heap and return them best first. Ties go
+	// to the lower project ID so results are stable. Called with the read lock held.
+	private List<SearchResult> topResults(int[] candidates, double[] scores, int count, int limit) {
+		PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(count, limit) + 1,
+				(a, b) -> scores[a] != scores[b] ? Double.compare(scores[a], scores[b]) : Integer.compare(candidates[b], candidates[a]));
+
+		for (int i = 0; i < count; i++) {
+			heap.add(i);
+
+			if (heap.size() > limit) {
+				heap.poll();
+			}
+		}
+
+		SearchResult[] results = new SearchResult[heap.size()];
+
+		for (int i = results.length - 1; i >= 0; i--) {
+			int best = heap.poll();
+			results[i] = new SearchResult(candidates[best], documents.get(candidates[best]).projectName, scores[best]);
+		}
+
+		return new ArrayList<>(List.of(results));
+	}
+
+
+
+	// write method to apply a change now, queue it while a build runs, or skip it while the index is inactive
+	private void write(Runnable change) {
+		lock.writeLock().lock();
+
+		try {
+			switch (state) {
+			case READY:
+				change.run();
+				break;
+
+			case BUILDING:
+				pendingWrites.add(change);
+				break;
+
+			default:
+				break;
+			}
+
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+
+
+	private State setState(State newState) {
+		lock.writeLock().lock();
+
+		try {
+			State previous = state;
+			state = newState;
+			return previous;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+
+
+	// Called with the write lock held
+	private void addDocument(int projectId, Document document) {
+		documents.put(projectId, document);
+
+		for (int i = 0; i < document.terms.length; i++) {
+			postings.computeIfAbsent(document.terms[i], term -> new PostingList()).add(projectId, document.weights[i]);
+		}
+	}
+
+	// Called with the write lock held
+	private void removeDocument(int projectId) {
+		Document document = documents.remove(projectId);
+
+		if (Objects.isNull(document)) {
+			return;
+		}
+
+		for (String term : document.terms) {
+			PostingList list = postings.get(term);
+
+			if (Objects.nonNull(list) && list.remove(projectId)) {
+				postings.remove(term);
+			}
+		}
+	}
+
+
+
+	// What the index keeps per project: its name for the results, and its distinct terms with their weights so the
+	// project can be taken out of the posting lists again without re-reading its text
+	private static final class Document {
+		private final String projectName;
+		private final String[] terms;
+		private final int[] weights;
+
+		private Document(String projectName, Map<String, Integer> termWeights) {
+			this.projectName = projectName;
+			this.terms = new String[termWeights.size()];
+			this.weights = new int[termWeights.size()];
+
+			int i = 0;
+
+			for (Map.Entry<String, Integer> entry : termWeights.entrySet()) {
+				terms[i] = entry.getKey();
+				weights[i] = entry.getValue();
+				i++;
+			}
+		}
+
+		private static Document of(Project project) {
+			Map<String, Integer> termWeights = new HashMap<>();
+
+			Tokenizer.tokenize(project.getProjectName(), term -> termWeights.merge(term, NAME_WEIGHT, Integer::sum));
+			Tokenizer.tokenize(project.getNotes(), term -> termWeights.merge(term, NOTES_WEIGHT, Integer::sum));
+
+			for (Material material : project.getMaterials()) {
+				Tokenizer.tokenize(material.getMaterialName(), term -> termWeights.merge(term, MATERIAL_WEIGHT, Integer::sum));
+			}
+
+			for (Step step : project.getSteps()) {
+				Tokenizer.tokenize(step.getStepText(), term -> termWeights.merge(term, STEP_WEIGHT, Integer::sum));
+			}
+
+			return new Document(project.getProjectName(), termWeights);
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package projects.search;
+
+// One project matching a search, with its relevance score. Higher scores rank first.
+public class SearchResult {
+	private final int projectId;
+	private final String projectName;
+	private final double score;
+
+
+
+	public SearchResult(int projectId, String projectName, double score) {
+		this.projectId = projectId;
+		this.projectName = projectName;
+		this.score = score;
+	}
+
+
+
+	public int getProjectId() {
+		return projectId;
+	}
+
+	public String getProjectName() {
+		return projectName;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+
+
+	@Override
+	public String toString() {
+		return projectId + ": " + projectName + String.format(" (score %.2f)", score);
+	}
+}
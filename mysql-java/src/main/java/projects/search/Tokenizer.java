@@ -0,0 +1,53 @@
+package projects.search;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Splits text into search terms: runs of letters and digits, lower-cased. Terms shorter than MIN_TERM_LENGTH and a few
+// very common English words are dropped, since they would match almost every project and only make posting lists long.
+// The same tokenizer is used for indexing and for queries, so both sides agree on what a term is.
+public final class Tokenizer {
+	public static final int MIN_TERM_LENGTH = 2;
+
+	// @formatter:off
+	private static final Set<String> STOP_WORDS = Set.of(
+			"a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "into", "is", "it", "of", "on", "or",
+			"the", "then", "to", "with");
+	// @formatter:on
+
+
+
+	private Tokenizer() {
+	}
+
+
+
+	// tokenize method to hand every term of the text to the consumer, in the order they appear. Null text has no terms.
+	public static void tokenize(String text, Consumer<String> consumer) {
+		if (Objects.isNull(text)) {
+			return;
+		}
+
+		StringBuilder term = new StringBuilder();
+
+		for (int i = 0, length = text.length(); i <= length; i++) {
+			char c = i < length ? text.charAt(i) : ' ';
+
+			if (Character.isLetterOrDigit(c)) {
+				term.append(Character.toLowerCase(c));
+			} else if (term.length() > 0) {
+				emit(term.toString(), consumer);
+				term.setLength(0);
+			}
+		}
+	}
+
+
+
+	private static void emit(String term, Consumer<String> consumer) {
+		if (term.length() >= MIN_TERM_LENGTH && !STOP_WORDS.contains(term)) {
+			consumer.accept(term);
+		}
+	}
+}
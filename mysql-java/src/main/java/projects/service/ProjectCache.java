@@ -0,0 +1,316 @@
+package projects.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import projects.entity.CompactProject;
+import projects.entity.NameDictionary;
+import projects.entity.Project;
+
+// Bounded, in-process cache of fully loaded Project aggregates for the service layer.
+//
+// Entries are weighed by the size of the aggregate (the project plus its materials, steps and categories) and the
+// least recently used entries are evicted once the total weight passes maxWeight. Entries also expire ttlMillis after
+// they were loaded. The service invalidates an entry whenever it writes the project, so readers only see stale data
+// if the database is changed behind the application's back, and then for at most the TTL.
+//
+// Every caller gets its own Project, which it may change (e.g. to pass it to modifyProjectDetails) without affecting
+// the cached copy or other callers: the cache stores a copy of what was loaded and hands out a copy on every hit. In
+// compact mode the cache holds each aggregate as a CompactProject instead, with primitive child columns and material
+// and category names encoded in a dictionary shared by all entries, and a hit rebuilds the Project from it. The copy
+// or rebuild costs some allocation per hit; compact mode also fits several times as many projects in the same heap.
+public class ProjectCache {
+	// The compact entries' dictionary is rebuilt from the live entries once it holds more than this many times as many
+	// names as they refer to, and at least DICTIONARY_MIN_REBUILD_SIZE names
+	private static final int DICTIONARY_REBUILD_FACTOR = 2;
+	private static final int DICTIONARY_MIN_REBUILD_SIZE = 1024;
+
+	private final long maxWeight;
+	private final long ttlMillis;
+	private final boolean compact;
+
+	// Names of the compact entries. A dictionary only grows, so it keeps the names of evicted and invalidated entries
+	// until it is rebuilt (see rebuildDictionaryIfStale) or the cache is emptied.
+	private NameDictionary dictionary = new NameDictionary();
+
+	// Material and category names referred to by the compact entries, counting repeats: an upper bound on the number
+	// of dictionary names still in use
+	private long liveNameCount;
+
+	// Access-ordered, so iteration starts at the least recently used entry
+	private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+	private long currentWeight;
+
+	// Bumped by every invalidation. A load only populates the cache if no invalidation happened while it ran, so a
+	// load that raced with a write can't put the old version back.
+	private long invalidationGeneration;
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+	private final LongAdder expirationCount = new LongAdder();
+	private final LongAdder invalidationCount = new LongAdder();
+	private final LongAdder dictionaryRebuildCount = new LongAdder();
+
+
+
+	public ProjectCache(long maxWeight, long ttlMillis) {
+		this(maxWeight, ttlMillis, false);
+	}
+
+	public ProjectCache(long maxWeight, long ttlMillis, boolean compact) {
+		this.maxWeight = maxWeight;
+		this.ttlMillis = ttlMillis;
+		this.compact = compact;
+	}
+
+
+
+	// fromSystemProperties method to size the cache with -Dprojects.cache.maxWeight and -Dprojects.cache.ttlSeconds and
+	// switch on compact entries with -Dprojects.cache.compact=true
+	public static ProjectCache fromSystemProperties() {
+		return new ProjectCache(Long.getLong("projects.cache.maxWeight", 100_000),
+				Long.getLong("projects.cache.ttlSeconds", 300) * 1000, Boolean.getBoolean("projects.cache.compact"));
+	}
+
+
+
+	// getOrLoad method to return the cached aggregate, or load it with the loader and cache it on a miss
+	public Optional<Project> getOrLoad(Integer projectId, Function<Integer, Optional<Project>> loader) {
+		long generation;
+		CompactProject compactHit = null;
+		Project cachedHit = null;
+
+		synchronized (this) {
+			Entry entry = entries.get(projectId);
+
+			if (Objects.nonNull(entry)) {
+				if (System.currentTimeMillis() < entry.expiresAt) {
+					hitCount.increment();
+
+					if (Objects.nonNull(entry.project)) {
+						cachedHit = entry.project;
+					} else {
+						compactHit = entry.compactProject;
+					}
+				} else {
+					remove(projectId);
+					expirationCount.increment();
+				}
+			}
+
+			if (Objects.isNull(compactHit) && Objects.isNull(cachedHit)) {
+				missCount.increment();
+			}
+
+			generation = invalidationGeneration;
+		}
+
+		// Hits are copied or rebuilt outside the lock; the cached Project itself is never changed, so that is safe
+		if (Objects.nonNull(cachedHit)) {
+			return Optional.of(cachedHit.copy());
+		}
+
+		if (Objects.nonNull(compactHit)) {
+			return Optional.of(compactHit.toProject());
+		}
+
+		Optional<Project> loaded = loader.apply(projectId);
+		loaded.ifPresent(project -> putIfCurrent(project, generation));
+		return loaded;
+	} // END of getOrLoad
+
+
+
+	private synchronized void putIfCurrent(Project project, long generation) {
+		if (generation != invalidationGeneration || maxWeight <= 0) {
+			return;
+		}
+
+		long weight = weigh(project);
+		long expiresAt = System.currentTimeMillis() + ttlMillis;
+
+		remove(project.getProjectId());
+
+		Entry entry = compact
+				? new Entry(CompactProject.of(project, dictionary), weight, expiresAt, countNames(project))
+				: new Entry(project.copy(), weight, expiresAt);
+
+		entries.put(project.getProjectId(), entry);
+		currentWeight += weight;
+		liveNameCount += entry.nameCount;
+
+		Iterator<Map.Entry<Integer, Entry>> it = entries.entrySet().iterator();
+
+		while (currentWeight > maxWeight && it.hasNext()) {
+			Entry eldest = it.next().getValue();
+			it.remove();
+			currentWeight -= eldest.weight;
+			liveNameCount -= eldest.nameCount;
+			evictionCount.increment();
+		}
+
+		if (compact) {
+			rebuildDictionaryIfStale();
+		}
+	}
+
+
+
+	// rebuildDictionaryIfStale method to re-encode the compact entries into a new dictionary once most of the names in
+	// the current one belong to entries that are gone. Costs one pass over the entries, and at least as many new names
+	// have to be added again before the next rebuild. Hits in progress keep decoding with the old dictionary, which
+	// their CompactProject refers to. Called with the lock held.
+	private void rebuildDictionaryIfStale() {
+		int size = dictionary.size();
+
+		if (size < DICTIONARY_MIN_REBUILD_SIZE || size <= DICTIONARY_REBUILD_FACTOR * liveNameCount) {
+			return;
+		}
+
+		NameDictionary rebuilt = new NameDictionary();
+
+		for (Map.Entry<Integer, Entry> mapEntry : entries.entrySet()) {
+			Entry entry = mapEntry.getValue();
+			mapEntry.setValue(new Entry(CompactProject.of(entry.compactProject.toProject(), rebuilt), entry.weight,
+					entry.expiresAt, entry.nameCount));
+		}
+
+		dictionary = rebuilt;
+		dictionaryRebuildCount.increment();
+	}
+
+
+
+	// invalidate method to drop a project after it has been written
+	public synchronized void invalidate(Integer projectId) {
+		invalidationGeneration++;
+		invalidationCount.increment();
+		remove(projectId);
+	}
+
+
+
+	public synchronized void invalidateAll() {
+		invalidationGeneration++;
+		invalidationCount.increment();
+		entries.clear();
+		currentWeight = 0;
+		liveNameCount = 0;
+		dictionary = new NameDictionary();
+	}
+
+
+
+	private void remove(Integer projectId) {
+		Entry removed = entries.remove(projectId);
+
+		if (Objects.nonNull(removed)) {
+			currentWeight -= removed.weight;
+			liveNameCount -= removed.nameCount;
+		}
+	}
+
+
+
+	// weigh method to estimate the size of an aggregate as one unit for the project plus one per child row
+	private static long weigh(Project project) {
+		return 1L + project.getMaterials().size() + project.getSteps().size() + project.getCategories().size();
+	}
+
+	private static int countNames(Project project) {
+		return project.getMaterials().size() + project.getCategories().size();
+	}
+
+
+
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	public synchronized long getWeight() {
+		return currentWeight;
+	}
+
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	public boolean isCompact() {
+		return compact;
+	}
+
+	// getDictionarySize method to get the number of distinct material and category names held for compact entries
+	public synchronized int getDictionarySize() {
+		return dictionary.size();
+	}
+
+	public long getDictionaryRebuildCount() {
+		return dictionaryRebuildCount.sum();
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	public long getExpirationCount() {
+		return expirationCount.sum();
+	}
+
+	public long getInvalidationCount() {
+		return invalidationCount.sum();
+	}
+
+	public double getHitRatio() {
+		long hits = hitCount.sum();
+		long requests = hits + missCount.sum();
+		return requests == 0 ? 0.0 : (double) hits / requests;
+	}
+
+	@Override
+	public String toString() {
+		return "size=" + getSize() + (compact ? " (compact)" : "") + ", weight=" + getWeight() + "/" + maxWeight + ", hits=" + getHitCount() + ", misses="
+				+ getMissCount() + ", hitRatio=" + String.format("%.3f", getHitRatio()) + ", evictions=" + getEvictionCount()
+				+ ", expirations=" + getExpirationCount() + ", invalidations=" + getInvalidationCount();
+	}
+
+
+
+	// Holds either the shared project or, in compact mode, its compact copy
+	private static final class Entry {
+		private final Project project;
+		private final CompactProject compactProject;
+		private final long weight;
+		private final long expiresAt;
+		private final int nameCount;
+
+		private Entry(Project project, long weight, long expiresAt) {
+			this.project = project;
+			this.compactProject = null;
+			this.weight = weight;
+			this.expiresAt = expiresAt;
+			this.nameCount = 0;
+		}
+
+		private Entry(CompactProject compactProject, long weight, long expiresAt, int nameCount) {
+			this.project = null;
+			this.compactProject = compactProject;
+			this.weight = weight;
+			this.expiresAt = expiresAt;
+			this.nameCount = nameCount;
+		}
+	}
+}
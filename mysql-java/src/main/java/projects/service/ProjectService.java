@@ -1,43 +1,317 @@
 package projects.service;
 
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import projects.analytics.ProjectAnalytics;
+import projects.dao.AnalyticsDao;
+import projects.dao.CategoryCatalog;
 import projects.dao.ProjectDao;
+import projects.dao.ProjectPage;
+import projects.dao.StepDao;
+import projects.entity.Category;
 import projects.entity.Project;
+import projects.entity.Step;
 import projects.exception.DbException;
+import projects.export.ExportFormat;
+import projects.export.ExportSummary;
+import projects.export.ProjectExporter;
+import projects.importer.ImportFormat;
+import projects.importer.ImportSummary;
+import projects.importer.ProjectImporter;
+import projects.metrics.Metrics;
+import projects.metrics.OperationMetrics;
+import projects.search.SearchIndex;
+import projects.search.SearchResult;
+import projects.snapshot.SnapshotCatalog;
 
 public class ProjectService {
 
 	private static ProjectDao projectDao = new ProjectDao();
+	private static StepDao stepDao = new StepDao();
+	private static AnalyticsDao analyticsDao = new AnalyticsDao();
+	private static ProjectExporter projectExporter = new ProjectExporter();
+	private static ProjectImporter projectImporter = new ProjectImporter();
+	
+	// Read-through cache of fully loaded projects. Every write below invalidates the projects it touches.
+	private static ProjectCache projectCache = ProjectCache.fromSystemProperties();
+	
+	// Full-text index over project names, notes, steps and materials. Built on the first search; every write below
+	// reports the projects it touches once the index is active.
+	private static SearchIndex searchIndex = new SearchIndex();
+	
+	// Memory-mapped snapshot of every project, read by the cache on a miss before the database. Enabled with
+	// -Dprojects.snapshot.file; every write below invalidates the projects it touches here too.
+	private static SnapshotCatalog snapshotCatalog = SnapshotCatalog.fromSystemProperties(projectDao);
+	
+	static {
+		// A background step rebalance renumbers a project's steps after the call that scheduled it has returned
+		stepDao.setRebalanceListener(ProjectService::invalidate);
+	}
+	
+	private static final OperationMetrics ADD_PROJECT = Metrics.operation("ProjectService.addProject");
+	private static final OperationMetrics ADD_PROJECTS = Metrics.operation("ProjectService.addProjects");
+	private static final OperationMetrics FETCH_ALL_PROJECTS = Metrics.operation("ProjectService.fetchAllProjects");
+	private static final OperationMetrics STREAM_ALL_PROJECTS = Metrics.operation("ProjectService.streamAllProjects");
+	private static final OperationMetrics FOR_EACH_PROJECT = Metrics.operation("ProjectService.forEachProject");
+	private static final OperationMetrics FETCH_PROJECT_PAGE = Metrics.operation("ProjectService.fetchProjectPage");
+	private static final OperationMetrics FETCH_ALL_PROJECTS_WITH_DETAILS = Metrics.operation("ProjectService.fetchAllProjectsWithDetails");
+	private static final OperationMetrics FETCH_PROJECTS_BY_IDS = Metrics.operation("ProjectService.fetchProjectsByIds");
+	private static final OperationMetrics FETCH_PROJECT_BY_ID = Metrics.operation("ProjectService.fetchProjectById");
+	private static final OperationMetrics MODIFY_PROJECT_DETAILS = Metrics.operation("ProjectService.modifyProjectDetails");
+	private static final OperationMetrics DELETE_PROJECT = Metrics.operation("ProjectService.deleteProject");
+	private static final OperationMetrics ADD_STEP = Metrics.operation("ProjectService.addStep");
+	private static final OperationMetrics INSERT_STEP_AFTER = Metrics.operation("ProjectService.insertStepAfter");
+	private static final OperationMetrics MOVE_STEP = Metrics.operation("ProjectService.moveStep");
+	private static final OperationMetrics DELETE_STEP = Metrics.operation("ProjectService.deleteStep");
+	private static final OperationMetrics SEARCH_PROJECTS = Metrics.operation("ProjectService.searchProjects");
+	private static final OperationMetrics REBUILD_SEARCH_INDEX = Metrics.operation("ProjectService.rebuildSearchIndex");
+	private static final OperationMetrics LOAD_ANALYTICS = Metrics.operation("ProjectService.loadAnalytics");
+	private static final OperationMetrics EXPORT_PROJECTS = Metrics.operation("ProjectService.exportProjects");
+	private static final OperationMetrics IMPORT_FILE = Metrics.operation("ProjectService.importFile");
+	private static final OperationMetrics FETCH_ALL_CATEGORIES = Metrics.operation("ProjectService.fetchAllCategories");
+	private static final OperationMetrics ADD_CATEGORY = Metrics.operation("ProjectService.addCategory");
 	
 	
 	// addProject service layer method used to call the insertProject method from the DAO projectDao class
 	public Project addProject(Project project) {
-		return projectDao.insertProject(project);
+		return ADD_PROJECT.time(() -> {
+			Project dbProject = projectDao.insertProject(project);
+			invalidate(dbProject.getProjectId());
+			searchIndex.index(dbProject);
+			return dbProject;
+		});
+	}
+
+	// addProjects service layer method to insert many projects, with their materials, steps and categories, in one batched transaction
+	public List<Project> addProjects(Collection<Project> projects) {
+		return ADD_PROJECTS.time(() -> {
+			List<Project> dbProjects = projectDao.insertProjects(projects);
+			dbProjects.forEach(project -> invalidate(project.getProjectId()));
+			dbProjects.forEach(searchIndex::index);
+			return dbProjects;
+		}, List::size);
 	}
 
 	// fetchAllProjects service layer method used to call the fetchAllProjects method from the DAO projectDao class
 	public List<Project> fetchAllProjects() {
-		return projectDao.fetchAllProjects();
+		return FETCH_ALL_PROJECTS.time(() -> projectDao.fetchAllProjects(), List::size);
+	}
+
+	// streamAllProjects service layer method to read projects through a database cursor. The caller must close the stream.
+	// Only opening the cursor is timed, since the caller decides how long the stream is consumed.
+	public Stream<Project> streamAllProjects() {
+		return STREAM_ALL_PROJECTS.time(() -> projectDao.streamAllProjects());
+	}
+
+	// forEachProject service layer method to hand each project to the consumer as it arrives from the database
+	public void forEachProject(Consumer<Project> consumer) {
+		FOR_EACH_PROJECT.time(() -> {
+			int[] rows = { 0 };
+			projectDao.forEachProject(consumer.andThen(project -> rows[0]++));
+			return rows[0];
+		}, Integer::intValue);
+	}
+
+	// fetchProjectPage service layer method to get one page of projects. Pass null for the first page and the
+	// returned page's next page token for each following page.
+	public ProjectPage fetchProjectPage(String pageToken, int pageSize) {
+		return FETCH_PROJECT_PAGE.time(() -> projectDao.fetchProjectPage(pageToken, pageSize), page -> page.getProjects().size());
 	}
 
-	// fetchProjectById service layer method used to call the fetchProjectById method from the DAO layer projectDao class
+	// fetchAllProjectsWithDetails service layer method to list every project together with its materials, steps and categories
+	public List<Project> fetchAllProjectsWithDetails() {
+		return FETCH_ALL_PROJECTS_WITH_DETAILS.time(() -> projectDao.fetchAllProjects(true), List::size);
+	}
+
+	// fetchProjectsByIds service layer method to load the full details of many projects in a constant number of round trips
+	public List<Project> fetchProjectsByIds(Collection<Integer> projectIds) {
+		return FETCH_PROJECTS_BY_IDS.time(() -> projectDao.fetchProjectsByIds(projectIds), List::size);
+	}
+
+	// fetchProjectById service layer method used to call the fetchProjectById method from the DAO layer projectDao class.
+	// Served from the project cache when possible, and on a miss from the snapshot catalog if it holds the project.
 	public Project fetchProjectById(Integer projectId) {
-		return projectDao.fetchProjectById(projectId).orElseThrow(() -> new NoSuchElementException("Project with ID=" + projectId + " does not exist!"));
+		return FETCH_PROJECT_BY_ID.time(() -> projectCache.getOrLoad(projectId, id -> snapshotCatalog.fetchProjectById(id, projectDao::fetchProjectById)).orElseThrow(() -> new NoSuchElementException("Project with ID=" + projectId + " does not exist!")));
 	}
 
 	public void modifyProjectDetails(Project project) {
-		if (!projectDao.modifyProjectDetails(project)) {
-			throw new DbException("Project with ID= " + project.getProjectId() + "does not exist");
-		}
+		MODIFY_PROJECT_DETAILS.time(() -> {
+			try {
+				if (!projectDao.modifyProjectDetails(project)) {
+					throw new DbException("Project with ID= " + project.getProjectId() + "does not exist");
+				}
+			} finally {
+				invalidate(project.getProjectId());
+			}
+			
+			reindex(project.getProjectId());
+		});
 	}
 
 	public void deleteProject(Integer projectId) {
-		if(!projectDao.deleteProject(projectId)) {
-			throw new DbException("Project ID " + projectId + "does not exist!");
+		DELETE_PROJECT.time(() -> {
+			try {
+				if(!projectDao.deleteProject(projectId)) {
+					throw new DbException("Project ID " + projectId + "does not exist!");
+				}
+			} finally {
+				invalidate(projectId);
+			}
+			
+			searchIndex.remove(projectId);
+		});
+	}
+
+	// searchProjects service layer method to find the projects whose name, notes, steps or materials contain every word
+	// of the query, best matches first. Answered from the in-memory search index, which is built on the first call.
+	public List<SearchResult> searchProjects(String query, int limit) {
+		return SEARCH_PROJECTS.time(() -> {
+			searchIndex.ensureBuilt(this::forEachProjectWithDetails);
+			return searchIndex.search(query, limit);
+		}, List::size);
+	}
+
+	// rebuildSearchIndex service layer method to re-read every project into the search index, e.g. after the database
+	// was changed outside this application
+	public void rebuildSearchIndex() {
+		REBUILD_SEARCH_INDEX.time(() -> searchIndex.rebuild(this::forEachProjectWithDetails));
+	}
+
+	// getSearchIndex method to expose the index and its size
+	public SearchIndex getSearchIndex() {
+		return searchIndex;
+	}
+
+	// forEachProjectWithDetails method to feed the search index: from the snapshot catalog once it is mapped, which
+	// needs no database reads but for projects written since, otherwise from the database
+	private void forEachProjectWithDetails(Consumer<Project> consumer) {
+		snapshotCatalog.forEachProject(consumer, projectDao::forEachProjectWithDetails);
+	}
+
+	// reindex method to hand the current state of a project to the search index after a write, once the index is in use
+	private void reindex(Integer projectId) {
+		if (Objects.nonNull(projectId) && searchIndex.isActive()) {
+			projectDao.fetchProjectById(projectId).ifPresentOrElse(searchIndex::index, () -> searchIndex.remove(projectId));
 		}
 	}
 
-	
+	// loadAnalytics service layer method to take a columnar snapshot of the project, material and category numbers for
+	// cost, hours and difficulty reports. The snapshot does not follow later writes; load a new one to refresh it.
+	public ProjectAnalytics loadAnalytics() {
+		return LOAD_ANALYTICS.time(() -> analyticsDao.loadAnalytics(), ProjectAnalytics::getProjectCount);
+	}
+
+	// exportProjects service layer method to write every project with its materials, steps and categories to a file,
+	// streaming straight from the database
+	public ExportSummary exportProjects(Path file, ExportFormat format, boolean gzip) {
+		return EXPORT_PROJECTS.time(() -> projectExporter.export(file, format, gzip), summary -> (int) summary.getProjectCount());
+	}
+
+	// importFile service layer method to bulk load an SQL or CSV file (see ProjectImporter). The rows bypass the DAOs,
+	// so the project cache is cleared, the category catalog reloaded, the snapshot rebuilt in the background and the
+	// search index, if in use, rebuilt.
+	public ImportSummary importFile(Path file, String table) {
+		return IMPORT_FILE.time(() -> {
+			try {
+				return projectImporter.importFile(file, ImportFormat.forFileName(file.getFileName().toString()), table);
+			} finally {
+				projectCache.invalidateAll();
+				CategoryCatalog.shared().refresh();
+				snapshotCatalog.rebuild();
+				
+				if (searchIndex.isActive()) {
+					rebuildSearchIndex();
+				}
+			}
+		}, summary -> (int) summary.getRowsLoaded());
+	}
+
+	// getSnapshotCatalog method to expose the snapshot catalog, its state and its hit counters
+	public SnapshotCatalog getSnapshotCatalog() {
+		return snapshotCatalog;
+	}
+
+	// getProjectCache method to expose the cache and its hit, miss and eviction counters for sizing
+	public ProjectCache getProjectCache() {
+		return projectCache;
+	}
+
+	// fetchAllCategories service layer method to list the categories from the in-memory category catalog
+	public List<Category> fetchAllCategories() {
+		return FETCH_ALL_CATEGORIES.time(() -> CategoryCatalog.shared().getAll(), List::size);
+	}
+
+	// addCategory service layer method to create a category; the category catalog is refreshed right away
+	public Category addCategory(Category category) {
+		return ADD_CATEGORY.time(() -> CategoryCatalog.shared().insertCategory(category));
+	}
+
+	// addStep service layer method to append a step to the end of a project
+	public Step addStep(Integer projectId, String stepText) {
+		return ADD_STEP.time(() -> {
+			try {
+				return stepDao.appendStep(projectId, stepText);
+			} finally {
+				invalidate(projectId);
+				reindex(projectId);
+			}
+		});
+	}
+
+	// insertStepAfter service layer method to insert a step after previousStepId (null inserts it as the first step)
+	public Step insertStepAfter(Integer projectId, Integer previousStepId, String stepText) {
+		return INSERT_STEP_AFTER.time(() -> {
+			try {
+				return stepDao.insertStepAfter(projectId, previousStepId, stepText);
+			} finally {
+				invalidate(projectId);
+				reindex(projectId);
+			}
+		});
+	}
+
+	// moveStep service layer method to move a step after previousStepId (null moves it to the front). Only the step ID
+	// is given, so the step's project is looked up first and only that project is invalidated.
+	public void moveStep(Integer stepId, Integer previousStepId) {
+		MOVE_STEP.time(() -> {
+			Integer projectId = stepDao.fetchStepProjectId(stepId);
+
+			try {
+				if (!stepDao.moveStep(stepId, previousStepId)) {
+					throw new DbException("Step with ID=" + stepId + " does not exist!");
+				}
+			} finally {
+				invalidate(projectId);
+			}
+		});
+	}
+
+	public void deleteStep(Integer stepId) {
+		DELETE_STEP.time(() -> {
+			// Look up the step's project while the step still exists
+			Integer projectId = stepDao.fetchStepProjectId(stepId);
+
+			try {
+				if (!stepDao.deleteStep(stepId)) {
+					throw new DbException("Step with ID=" + stepId + " does not exist!");
+				}
+			} finally {
+				invalidate(projectId);
+				reindex(projectId);
+			}
+		});
+	}
+
+	// invalidate method to drop a project that was just written from the cache and the snapshot catalog
+	private static void invalidate(Integer projectId) {
+		projectCache.invalidate(projectId);
+		snapshotCatalog.invalidate(projectId);
+	}
+
 }
@@ -0,0 +1,210 @@
+package projects.service;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import projects.dao.ProjectPage;
+import projects.entity.Project;
+import projects.search.SearchResult;
+
+// Non-blocking facade over ProjectService. Every call is handed to an executor and answered with a CompletableFuture,
+// so callers can issue many requests at once without a thread of their own per request. The blocking work still
+// happens on the executor's threads, and the connection pool bounds how many of them talk to the database at a time;
+// the rest wait in the pool's fair queue.
+//
+// The executor is picked with -Dprojects.async.executor:
+//   auto     - virtual threads when the JDK has them (21+), otherwise the platform pool (default)
+//   virtual  - virtual threads; fails on a JDK without them
+//   platform - a fixed pool of -Dprojects.async.threads threads (default: -Dprojects.pool.maxSize, or 10) with a
+//              queue of -Dprojects.async.queueSize tasks (default 1000)
+//
+// Calls never block the caller. When the platform pool's queue is full, or once the facade is closed, a new call is
+// rejected: its future completes exceptionally with a RejectedExecutionException straight away, rather than the call
+// running on the caller's thread or never completing. Callers that see it are overloaded and should back off or shed
+// the request.
+//
+// Virtual threads are cheap to block, so there a thread per request costs little; the platform pool is sized to the
+// connection pool because more threads than connections would only wait.
+public class ProjectServiceAsync implements AutoCloseable {
+	private static final Logger LOG = Logger.getLogger(ProjectServiceAsync.class.getName());
+
+	private final ProjectService projectService;
+	private final ExecutorService executor;
+
+
+
+	public ProjectServiceAsync() {
+		this(new ProjectService(), createExecutor());
+	}
+
+
+
+	public ProjectServiceAsync(ProjectService projectService, ExecutorService executor) {
+		this.projectService = projectService;
+		this.executor = executor;
+	}
+
+
+
+	public CompletableFuture<Project> addProject(Project project) {
+		return submit(() -> projectService.addProject(project));
+	}
+
+	public CompletableFuture<List<Project>> addProjects(Collection<Project> projects) {
+		return submit(() -> projectService.addProjects(projects));
+	}
+
+	public CompletableFuture<List<Project>> fetchAllProjects() {
+		return submit(projectService::fetchAllProjects);
+	}
+
+	public CompletableFuture<List<Project>> fetchAllProjectsWithDetails() {
+		return submit(projectService::fetchAllProjectsWithDetails);
+	}
+
+	public CompletableFuture<ProjectPage> fetchProjectPage(String pageToken, int pageSize) {
+		return submit(() -> projectService.fetchProjectPage(pageToken, pageSize));
+	}
+
+	public CompletableFuture<List<Project>> fetchProjectsByIds(Collection<Integer> projectIds) {
+		return submit(() -> projectService.fetchProjectsByIds(projectIds));
+	}
+
+	// fetchProjectById method; the future completes exceptionally with NoSuchElementException if there is no such project
+	public CompletableFuture<Project> fetchProjectById(Integer projectId) {
+		return submit(() -> projectService.fetchProjectById(projectId));
+	}
+
+	public CompletableFuture<List<SearchResult>> searchProjects(String query, int limit) {
+		return submit(() -> projectService.searchProjects(query, limit));
+	}
+
+	public CompletableFuture<Void> modifyProjectDetails(Project project) {
+		return submit(() -> {
+			projectService.modifyProjectDetails(project);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> deleteProject(Integer projectId) {
+		return submit(() -> {
+			projectService.deleteProject(projectId);
+			return null;
+		});
+	}
+
+
+
+	// submit method to hand a call to the executor; a rejected call fails its future instead of throwing
+	private <T> CompletableFuture<T> submit(Supplier<T> call) {
+		try {
+			return CompletableFuture.supplyAsync(call, executor);
+		} catch (RejectedExecutionException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+
+
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+
+
+	// close method to stop taking new calls and wait briefly for the ones already submitted
+	@Override
+	public void close() {
+		executor.shutdown();
+
+		try {
+			if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+
+	// createExecutor method to build the executor selected by -Dprojects.async.executor
+	public static ExecutorService createExecutor() {
+		String kind = System.getProperty("projects.async.executor", "auto");
+
+		if (!"platform".equals(kind)) {
+			ExecutorService virtual = newVirtualThreadExecutor();
+
+			if (virtual != null) {
+				return virtual;
+			}
+
+			if ("virtual".equals(kind)) {
+				throw new IllegalStateException("Virtual threads need JDK 21 or later; running on " + Runtime.version());
+			}
+		}
+
+		int threads = Integer.getInteger("projects.async.threads", Integer.getInteger("projects.pool.maxSize", 10));
+		int queueSize = Integer.getInteger("projects.async.queueSize", 1000);
+
+		LOG.fine(() -> "Using a platform pool of " + threads + " threads for async project calls");
+
+		return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueSize),
+				new DaemonThreadFactory(), new RejectWithReason());
+	}
+
+
+
+	// newVirtualThreadExecutor method to call Executors.newVirtualThreadPerTaskExecutor() where it exists. The build
+	// targets Java 17, so it is looked up reflectively; returns null on older JDKs.
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+
+
+
+	// Rejects a task that doesn't fit, like AbortPolicy, but says whether the queue was full or the facade closed. The
+	// exception fails the call's future in submit.
+	private static final class RejectWithReason implements RejectedExecutionHandler {
+		@Override
+		public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("The async project service has been closed");
+			}
+
+			throw new RejectedExecutionException("The async project service is overloaded: its queue of "
+					+ (executor.getQueue().size() + executor.getQueue().remainingCapacity()) + " calls is full");
+		}
+	}
+
+
+
+	private static final class DaemonThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "projects-async-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package projects.snapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import projects.entity.Category;
+import projects.entity.CompactProject;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+// A snapshot file mapped read-only. Opening one only maps the file and checks its header, so it takes the same few
+// milliseconds for ten projects or a million; projects are decoded from the mapping when they are looked up, and the
+// operating system pages the file in as it is read.
+//
+// Layout, big-endian:
+//
+//   header   magic "PRJSNAP1", format version, project count, taken-at database time (epoch ms), highest project ID,
+//            name count, index offset, names offset, file length and a CRC32 of the header, HEADER_SIZE bytes
+//   records  one per project in ascending ID order: project ID, version, estimated and actual hours (hundredths),
+//            difficulty, name, notes, then the materials (ID, name code, num_required, cost in hundredths), the steps
+//            (ID, step_order, text) and the category links (ID, name code), each list prefixed by its length
+//   index    the sorted project IDs, then (8-byte aligned) the offset of each project's record
+//   names    the offset of each name relative to the section, then the names; material and category names are
+//            stored once and referred to by their code
+//
+// Strings are a length followed by UTF-8 bytes, with -1 for null; null numbers use the CompactProject sentinels. A
+// file written by a different format version is rejected, and the caller builds a new one.
+//
+// A mapping can't be unmapped explicitly; it is released when the CatalogSnapshot is garbage collected. Replacing the
+// file (SnapshotWriter moves a new one over it) does not disturb an existing mapping.
+public class CatalogSnapshot {
+	static final long MAGIC = 0x50524A534E415031L;
+	static final int FORMAT_VERSION = 1;
+	static final int HEADER_SIZE = 64;
+	static final int HEADER_CRC_OFFSET = 56;
+
+	private final Path file;
+	private final MappedByteBuffer buffer;
+	private final int projectCount;
+	private final long takenAt;
+	private final int maxProjectId;
+	private final int nameCount;
+	private final int idsOffset;
+	private final int offsetsOffset;
+	private final int namesOffset;
+
+	// Names decoded so far, by code. Racy but benign: a name decoded twice is the same string.
+	private final String[] names;
+
+
+
+	private CatalogSnapshot(Path file, MappedByteBuffer buffer) {
+		this.file = file;
+		this.buffer = buffer;
+
+		if (buffer.capacity() < HEADER_SIZE || buffer.getLong(0) != MAGIC) {
+			throw new IllegalStateException(file + " is not a project snapshot");
+		}
+
+		if (buffer.getInt(8) != FORMAT_VERSION) {
+			throw new IllegalStateException(file + " has snapshot format " + buffer.getInt(8) + ", expected "
+					+ FORMAT_VERSION);
+		}
+
+		byte[] header = new byte[HEADER_CRC_OFFSET];
+		buffer.get(0, header);
+
+		CRC32 crc = new CRC32();
+		crc.update(header);
+
+		if ((int) crc.getValue() != buffer.getInt(HEADER_CRC_OFFSET) || buffer.getLong(48) != buffer.capacity()) {
+			throw new IllegalStateException(file + " is damaged or truncated");
+		}
+
+		projectCount = buffer.getInt(12);
+		takenAt = buffer.getLong(16);
+		maxProjectId = buffer.getInt(24);
+		nameCount = buffer.getInt(28);
+		idsOffset = (int) buffer.getLong(32);
+		offsetsOffset = align8(idsOffset + 4 * projectCount);
+		namesOffset = (int) buffer.getLong(40);
+		names = new String[nameCount];
+	}
+
+
+
+	// open method to map a snapshot file read-only and check its header. Throws IllegalStateException if the file is
+	// not a snapshot of the current format.
+	public static CatalogSnapshot open(Path file) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IllegalStateException(file + " is larger than the 2 GiB that can be mapped");
+			}
+
+			return new CatalogSnapshot(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+
+
+	public Path getFile() {
+		return file;
+	}
+
+	public int getProjectCount() {
+		return projectCount;
+	}
+
+	// getTakenAt method to get the database time, in epoch milliseconds, up to which the snapshot has every change
+	public long getTakenAt() {
+		return takenAt;
+	}
+
+	public int getMaxProjectId() {
+		return maxProjectId;
+	}
+
+	public SnapshotInfo getInfo() {
+		return new SnapshotInfo(file, projectCount, nameCount, buffer.capacity(), takenAt);
+	}
+
+
+
+	// projectIdAt method to get the ID of the project at a position, 0 to getProjectCount() - 1, in ascending ID order
+	public int projectIdAt(int position) {
+		return buffer.getInt(idsOffset + 4 * position);
+	}
+
+	// positionOf method to binary search the index for a project ID; negative if the snapshot doesn't hold the project
+	public int positionOf(int projectId) {
+		int low = 0;
+		int high = projectCount - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midId = projectIdAt(mid);
+
+			if (midId < projectId) {
+				low = mid + 1;
+			} else if (midId > projectId) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+
+		return -(low + 1);
+	}
+
+
+
+	// find method to decode a project with its materials, steps and categories, if the snapshot holds it
+	public Optional<Project> find(int projectId) {
+		int position = positionOf(projectId);
+		return position < 0 ? Optional.empty() : Optional.of(projectAt(position));
+	}
+
+
+
+	// forEach method to decode every project in ascending ID order
+	public void forEach(Consumer<Project> consumer) {
+		for (int position = 0; position < projectCount; position++) {
+			consumer.accept(projectAt(position));
+		}
+	}
+
+
+
+	// projectAt method to decode the project at a position in the index
+	public Project projectAt(int position) {
+		Reader reader = new Reader((int) buffer.getLong(offsetsOffset + 8 * position));
+		Project project = new Project();
+
+		project.setProjectId(reader.nextInt());
+		project.setVersion(toInteger(reader.nextInt()));
+		project.setEstimatedHours(CompactProject.toDecimal(reader.nextLong()));
+		project.setActualHours(CompactProject.toDecimal(reader.nextLong()));
+		project.setDifficulty(toInteger(reader.nextInt()));
+		project.setProjectName(reader.nextString());
+		project.setNotes(reader.nextString());
+		project.clearChangedColumns();
+
+		for (int count = reader.nextInt(); count > 0; count--) {
+			Material material = new Material();
+			material.setMaterialId(toInteger(reader.nextInt()));
+			material.setProjectId(project.getProjectId());
+			material.setMaterialName(name(reader.nextInt()));
+			material.setNumRequired(toInteger(reader.nextInt()));
+			material.setCost(CompactProject.toDecimal(reader.nextLong()));
+			project.getMaterials().add(material);
+		}
+
+		for (int count = reader.nextInt(); count > 0; count--) {
+			Step step = new Step();
+			step.setStepId(toInteger(reader.nextInt()));
+			step.setProjectId(project.getProjectId());
+			step.setStepOrder(toInteger(reader.nextInt()));
+			step.setStepText(reader.nextString());
+			project.getSteps().add(step);
+		}
+
+		for (int count = reader.nextInt(); count > 0; count--) {
+			Category category = new Category();
+			category.setCategoryId(toInteger(reader.nextInt()));
+			category.setCategoryName(name(reader.nextInt()));
+			project.getCategories().add(category);
+		}
+
+		return project;
+	} // END of projectAt
+
+
+
+	private String name(int code) {
+		if (code < 0) {
+			return null;
+		}
+
+		String name = names[code];
+
+		if (Objects.isNull(name)) {
+			name = new Reader(namesOffset + buffer.getInt(namesOffset + 4 * code)).nextString();
+			names[code] = name;
+		}
+
+		return name;
+	}
+
+
+
+	private static Integer toInteger(int value) {
+		return value == CompactProject.NULL_INT ? null : Integer.valueOf(value);
+	}
+
+	private static int align8(int offset) {
+		return (offset + 7) & ~7;
+	}
+
+
+
+	// Reads one record with absolute gets, so any number of threads can decode from the shared mapping at once
+	private final class Reader {
+		private int position;
+
+		private Reader(int position) {
+			this.position = position;
+		}
+
+		private int nextInt() {
+			int value = buffer.getInt(position);
+			position += 4;
+			return value;
+		}
+
+		private long nextLong() {
+			long value = buffer.getLong(position);
+			position += 8;
+			return value;
+		}
+
+		private String nextString() {
+			int length = nextInt();
+
+			if (length < 0) {
+				return null;
+			}
+
+			byte[] bytes = new byte[length];
+			buffer.get(position, bytes);
+			position += length;
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,518 @@
+package projects.snapshot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import projects.dao.DbConnection;
+import projects.dao.ProjectDao;
+import projects.dao.SnapshotDao;
+import projects.dao.SqlStatement;
+import projects.entity.CompactProject;
+import projects.entity.NameDictionary;
+import projects.entity.Project;
+import projects.entity.Step;
+import projects.metrics.Metrics;
+import projects.metrics.OperationMetrics;
+
+// Serves fully loaded projects from a memory-mapped snapshot file (-Dprojects.snapshot.file), so a restarted process
+// answers lookups as soon as the file is mapped instead of after re-reading the project, material, step and category
+// tables. Without the property the catalog is disabled and every lookup goes to the loader it is given.
+//
+// On start the file is mapped (see CatalogSnapshot) and lookups are served from it right away. A background thread then
+// reconciles the snapshot with the database, at once and every -Dprojects.snapshot.reconcileSeconds (default 60):
+//
+//   - projects whose updated_at is at or after the last reconciled database time, less -Dprojects.snapshot.skewSeconds
+//     (default 60) for transactions that committed after their timestamp, are reloaded;
+//   - the project IDs of the database and the snapshot are compared, which finds inserted and deleted projects.
+//
+// Reloaded projects go into an overlay of CompactProjects and deleted ones into a set of tombstones; both are checked
+// before the mapped file. Once the overlay holds -Dprojects.snapshot.rewriteThreshold projects (default 10000) a new
+// file is written from the snapshot and the overlay, mapped, and swapped in with an empty overlay. A missing, damaged
+// or outdated file is rebuilt from the database in the background, during which lookups go to the loader.
+//
+// Until the first reconciliation completes, lookups see the database as of the snapshot; changes made by this process
+// are never served stale, because the service invalidates every project it writes. An invalidated project is read
+// through the loader until a reconciliation or rewrite that started after the invalidation has picked up its new state.
+// Builds, reconciliations and rewrites read from the primary even when reads otherwise go to a replica
+// (DbConnection.readFromPrimary): a replica that is behind would hand back the state from before this process's write,
+// and the invalidation would be dropped with that stale copy in the overlay.
+public class SnapshotCatalog {
+	private static final Logger LOG = Logger.getLogger(SnapshotCatalog.class.getName());
+
+	private static final long RECONCILE_SECONDS = Long.getLong("projects.snapshot.reconcileSeconds", 60);
+	private static final long SKEW_MILLIS = Long.getLong("projects.snapshot.skewSeconds", 60) * 1000;
+	private static final int REWRITE_THRESHOLD = Integer.getInteger("projects.snapshot.rewriteThreshold", 10_000);
+
+	private static final OperationMetrics OPEN = Metrics.operation("SnapshotCatalog.open");
+	private static final OperationMetrics BUILD = Metrics.operation("SnapshotCatalog.build");
+	private static final OperationMetrics RECONCILE = Metrics.operation("SnapshotCatalog.reconcile");
+	private static final OperationMetrics REWRITE = Metrics.operation("SnapshotCatalog.rewrite");
+
+	private final Path file;
+	private final ProjectDao projectDao;
+	private final SnapshotDao snapshotDao;
+
+	// The mapped snapshot with its overlay; null until a snapshot is mapped. Replaced as a whole by a build or rewrite.
+	private volatile View view;
+
+	// Projects written by this process, each with the number of the invalidation that marked it
+	private final Map<Integer, Long> invalidated = new ConcurrentHashMap<>();
+	private final AtomicLong invalidationCount = new AtomicLong();
+
+	// Database time up to which every change is in the view; changes from here on are picked up by reconciliation
+	private volatile long reconciledThrough;
+	private volatile boolean reconciled;
+
+	private ScheduledExecutorService worker;
+
+	private final LongAdder snapshotHits = new LongAdder();
+	private final LongAdder overlayHits = new LongAdder();
+	private final LongAdder loaderCalls = new LongAdder();
+
+
+
+	public SnapshotCatalog(Path file, ProjectDao projectDao, SnapshotDao snapshotDao) {
+		this.file = file;
+		this.projectDao = projectDao;
+		this.snapshotDao = snapshotDao;
+	}
+
+
+
+	// fromSystemProperties method to create the catalog for -Dprojects.snapshot.file and start it; disabled if the
+	// property is not set
+	public static SnapshotCatalog fromSystemProperties(ProjectDao projectDao) {
+		String file = System.getProperty("projects.snapshot.file");
+		SnapshotCatalog catalog = new SnapshotCatalog(Objects.isNull(file) ? null : Paths.get(file), projectDao,
+				new SnapshotDao());
+
+		catalog.start();
+		return catalog;
+	}
+
+
+
+	// start method to map the snapshot file, if it is usable, and start the background reconciliation, or else the
+	// background build of a new file
+	public synchronized void start() {
+		if (!isEnabled() || Objects.nonNull(worker)) {
+			return;
+		}
+
+		worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "projects-snapshot");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		if (Files.exists(file)) {
+			try {
+				CatalogSnapshot snapshot = OPEN.time(() -> CatalogSnapshot.open(file));
+
+				reconciledThrough = snapshot.getTakenAt();
+				view = new View(snapshot);
+				LOG.info(() -> "Mapped " + snapshot.getInfo());
+
+			} catch (RuntimeException e) {
+				LOG.log(Level.WARNING, "Snapshot " + file + " can't be used; building a new one", e);
+			}
+		}
+
+		if (RECONCILE_SECONDS > 0) {
+			worker.scheduleWithFixedDelay(this::refresh, 0, RECONCILE_SECONDS, TimeUnit.SECONDS);
+		} else {
+			worker.execute(this::refresh);
+		}
+	} // END of start
+
+
+
+	// close method to stop the background work. The mapping is released once the catalog is unreachable.
+	public synchronized void close() {
+		if (Objects.nonNull(worker)) {
+			worker.shutdownNow();
+			worker = null;
+		}
+
+		view = null;
+	}
+
+
+
+	// fetchProjectById method to get a project from the snapshot or its overlay. Projects the catalog can't answer for
+	// (not mapped yet, invalidated, or not in the snapshot) come from the loader.
+	public Optional<Project> fetchProjectById(Integer projectId, Function<Integer, Optional<Project>> loader) {
+		View current = view;
+
+		if (Objects.isNull(current) || invalidated.containsKey(projectId)) {
+			loaderCalls.increment();
+			return loader.apply(projectId);
+		}
+
+		CompactProject changed = current.changed.get(projectId);
+
+		if (Objects.nonNull(changed)) {
+			overlayHits.increment();
+			return Optional.of(changed.toProject());
+		}
+
+		if (current.deleted.contains(projectId)) {
+			overlayHits.increment();
+			return Optional.empty();
+		}
+
+		int position = current.snapshot.positionOf(projectId);
+
+		if (position < 0) {
+			loaderCalls.increment();
+			return loader.apply(projectId);
+		}
+
+		snapshotHits.increment();
+		return Optional.of(current.snapshot.projectAt(position));
+	} // END of fetchProjectById
+
+
+
+	// forEachProject method to hand every project with its details to the consumer, in ascending ID order, from the
+	// snapshot and its overlay. Invalidated projects are reloaded. Until a snapshot is mapped, the projects come from
+	// the fallback instead.
+	public void forEachProject(Consumer<Project> consumer, Consumer<Consumer<Project>> fallback) {
+		View current = view;
+
+		if (Objects.isNull(current)) {
+			fallback.accept(consumer);
+		} else {
+			forEachProject(current, Set.copyOf(invalidated.keySet()), consumer);
+		}
+	}
+
+
+
+	// invalidate method to stop serving a project from the snapshot after this process wrote it
+	public void invalidate(Integer projectId) {
+		if (isEnabled() && Objects.nonNull(projectId)) {
+			invalidated.put(projectId, invalidationCount.incrementAndGet());
+		}
+	}
+
+
+
+	// rebuild method to replace the snapshot with a new one read from the database, in the background, e.g. after rows
+	// were loaded without going through the DAOs. Lookups go to the loader until the new file is mapped.
+	public void rebuild() {
+		ScheduledExecutorService current = worker;
+
+		if (Objects.nonNull(current)) {
+			view = null;
+			current.execute(this::refresh);
+		}
+	}
+
+
+
+	// refresh method run by the worker: reconcile the mapped snapshot, or build one if none is mapped. A failure is
+	// logged and the work is tried again on the next run.
+	private void refresh() {
+		try {
+			DbConnection.readFromPrimary(() -> {
+				if (Objects.isNull(view)) {
+					build();
+				} else {
+					reconcile();
+				}
+
+				return null;
+			});
+		} catch (Exception e) {
+			LOG.log(Level.WARNING, "Snapshot " + (isReady() ? "reconciliation" : "build") + " of " + file
+					+ " failed; trying again on the next run", e);
+		}
+	}
+
+
+
+	// build method to write a new snapshot file from the database in project ID order and map it
+	private void build() {
+		BUILD.time(() -> {
+			Map<Integer, Long> handled = new HashMap<>(invalidated);
+			long takenAt = snapshotDao.fetchDatabaseTime();
+			int[] projectIds = snapshotDao.fetchProjectIds();
+
+			try (SnapshotWriter writer = new SnapshotWriter(file, takenAt)) {
+				for (int from = 0; from < projectIds.length; from += SqlStatement.MAX_IN_LIST_SIZE) {
+					int to = Math.min(projectIds.length, from + SqlStatement.MAX_IN_LIST_SIZE);
+					loadSorted(Arrays.copyOfRange(projectIds, from, to)).forEach(writer::write);
+				}
+
+				SnapshotInfo info = writer.finish();
+				LOG.info(() -> "Built " + info);
+			}
+
+			swapIn(CatalogSnapshot.open(file), takenAt, handled);
+		});
+	}
+
+
+
+	// reconcile method to bring the overlay up to date with the projects changed, inserted and deleted since the last
+	// reconciliation, and rewrite the file once the overlay has grown past the threshold
+	private void reconcile() {
+		View current = view;
+
+		RECONCILE.time(() -> {
+			Map<Integer, Long> handled = new HashMap<>(invalidated);
+			long now = snapshotDao.fetchDatabaseTime();
+			int[] changedIds = snapshotDao.fetchProjectIdsChangedSince(reconciledThrough - SKEW_MILLIS);
+			int[] databaseIds = snapshotDao.fetchProjectIds();
+			CatalogSnapshot snapshot = current.snapshot;
+
+			// Projects missing from the snapshot are new, unless the overlay already has them; snapshot and overlay
+			// projects missing from the database are deleted
+			List<Integer> toLoad = new ArrayList<>();
+			Arrays.stream(changedIds).forEach(toLoad::add);
+
+			for (int projectId : databaseIds) {
+				if (snapshot.positionOf(projectId) < 0 && !current.changed.containsKey(projectId)
+						&& Arrays.binarySearch(changedIds, projectId) < 0) {
+					toLoad.add(projectId);
+				}
+			}
+
+			int deletedCount = 0;
+
+			for (int position = 0; position < snapshot.getProjectCount(); position++) {
+				int projectId = snapshot.projectIdAt(position);
+
+				if (Arrays.binarySearch(databaseIds, projectId) < 0 && current.deleted.add(projectId)) {
+					current.changed.remove(projectId);
+					deletedCount++;
+				}
+			}
+
+			for (Integer projectId : List.copyOf(current.changed.keySet())) {
+				if (Arrays.binarySearch(databaseIds, projectId) < 0) {
+					current.changed.remove(projectId);
+					deletedCount++;
+				}
+			}
+
+			int[] loadIds = toLoad.stream().mapToInt(Integer::intValue).sorted().toArray();
+
+			for (int from = 0; from < loadIds.length; from += SqlStatement.MAX_IN_LIST_SIZE) {
+				int[] chunk = Arrays.copyOfRange(loadIds, from, Math.min(loadIds.length, from + SqlStatement.MAX_IN_LIST_SIZE));
+				Set<Integer> missing = new HashSet<>();
+				IntStream.of(chunk).forEach(missing::add);
+
+				for (Project project : loadSorted(chunk)) {
+					Integer projectId = project.getProjectId();
+					int position = snapshot.positionOf(projectId);
+					missing.remove(projectId);
+
+					// Projects reloaded only because they fall in the skew window are usually unchanged
+					if (position >= 0 && !current.changed.containsKey(projectId) && !current.deleted.contains(projectId)
+							&& sameProject(snapshot.projectAt(position), project)) {
+						continue;
+					}
+
+					current.changed.put(projectId, CompactProject.of(project, current.names));
+					current.deleted.remove(projectId);
+				}
+
+				// Deleted between reading the IDs and loading them
+				for (Integer projectId : missing) {
+					if (snapshot.positionOf(projectId) >= 0) {
+						current.deleted.add(projectId);
+					}
+
+					current.changed.remove(projectId);
+				}
+			}
+
+			reconciledThrough = now;
+			reconciled = true;
+			handled.forEach(invalidated::remove);
+
+			if (loadIds.length > 0 || deletedCount > 0) {
+				int loaded = loadIds.length;
+				int deleted = deletedCount;
+				LOG.fine(() -> "Reconciled snapshot: " + loaded + " projects reloaded, " + deleted + " deleted");
+			}
+
+			if (current.changed.size() + current.deleted.size() >= REWRITE_THRESHOLD) {
+				rewrite(current);
+			}
+		});
+	} // END of reconcile
+
+
+
+	// rewrite method to write the snapshot and its overlay to a new file and swap it in with an empty overlay
+	private void rewrite(View current) {
+		REWRITE.time(() -> {
+			Map<Integer, Long> handled = new HashMap<>(invalidated);
+			long takenAt = reconciledThrough;
+
+			try (SnapshotWriter writer = new SnapshotWriter(file, takenAt)) {
+				forEachProject(current, handled.keySet(), writer::write);
+
+				SnapshotInfo info = writer.finish();
+				LOG.info(() -> "Rewrote " + info);
+			}
+
+			swapIn(CatalogSnapshot.open(file), takenAt, handled);
+		});
+	}
+
+
+
+	private void swapIn(CatalogSnapshot snapshot, long takenAt, Map<Integer, Long> handled) {
+		reconciledThrough = takenAt;
+		reconciled = true;
+		view = new View(snapshot);
+
+		// Only the invalidations seen before the new file was started are in it; later ones stay
+		handled.forEach(invalidated::remove);
+	}
+
+
+
+	// forEachProject method to merge the snapshot, the overlay and the reloaded invalidated projects in ID order
+	private void forEachProject(View current, Set<Integer> reload, Consumer<Project> consumer) {
+		CatalogSnapshot snapshot = current.snapshot;
+		int[] overlayIds = IntStream.concat(current.changed.keySet().stream().mapToInt(Integer::intValue),
+				reload.stream().mapToInt(Integer::intValue)).sorted().distinct().toArray();
+		int position = 0;
+		int overlay = 0;
+
+		while (position < snapshot.getProjectCount() || overlay < overlayIds.length) {
+			int snapshotId = position < snapshot.getProjectCount() ? snapshot.projectIdAt(position) : Integer.MAX_VALUE;
+			int overlayId = overlay < overlayIds.length ? overlayIds[overlay] : Integer.MAX_VALUE;
+
+			if (overlayId <= snapshotId) {
+				Optional<Project> project = reload.contains(overlayId) ? projectDao.fetchProjectById(overlayId)
+						: Optional.ofNullable(current.changed.get(overlayId)).map(CompactProject::toProject);
+				project.ifPresent(consumer);
+
+				overlay++;
+
+				if (overlayId == snapshotId) {
+					position++;
+				}
+			} else {
+				if (!current.deleted.contains(snapshotId)) {
+					consumer.accept(snapshot.projectAt(position));
+				}
+
+				position++;
+			}
+		}
+	} // END of forEachProject
+
+
+
+	// sameProject method to compare two loads of a project: every rendered field plus the version and step orders
+	private static boolean sameProject(Project a, Project b) {
+		return Objects.equals(a.getVersion(), b.getVersion()) && a.toString().equals(b.toString())
+				&& a.getSteps().stream().map(Step::getStepOrder).toList()
+						.equals(b.getSteps().stream().map(Step::getStepOrder).toList());
+	}
+
+
+
+	private List<Project> loadSorted(int[] projectIds) {
+		List<Project> projects = new ArrayList<>(projectDao.fetchProjectsByIds(
+				IntStream.of(projectIds).boxed().toList()));
+		projects.sort(Comparator.comparing(Project::getProjectId));
+		return projects;
+	}
+
+
+
+	public boolean isEnabled() {
+		return Objects.nonNull(file);
+	}
+
+	// isReady method: true once a snapshot is mapped and lookups are served from it
+	public boolean isReady() {
+		return Objects.nonNull(view);
+	}
+
+	// isReconciled method: true once the mapped snapshot has been brought up to date with the database at least once
+	public boolean isReconciled() {
+		return reconciled && isReady();
+	}
+
+	public Optional<SnapshotInfo> getInfo() {
+		return Optional.ofNullable(view).map(current -> current.snapshot.getInfo());
+	}
+
+	public int getOverlaySize() {
+		View current = view;
+		return Objects.isNull(current) ? 0 : current.changed.size() + current.deleted.size();
+	}
+
+	public int getInvalidatedCount() {
+		return invalidated.size();
+	}
+
+	public long getSnapshotHits() {
+		return snapshotHits.sum();
+	}
+
+	public long getOverlayHits() {
+		return overlayHits.sum();
+	}
+
+	public long getLoaderCalls() {
+		return loaderCalls.sum();
+	}
+
+	@Override
+	public String toString() {
+		if (!isEnabled()) {
+			return "disabled";
+		}
+
+		return getInfo().map(SnapshotInfo::toString).orElse("not mapped") + ", reconciled=" + isReconciled()
+				+ ", overlay=" + getOverlaySize() + ", invalidated=" + getInvalidatedCount() + ", snapshotHits="
+				+ getSnapshotHits() + ", overlayHits=" + getOverlayHits() + ", loaderCalls=" + getLoaderCalls();
+	}
+
+
+
+	// A mapped snapshot and the changes reconciled on top of it. Only the worker thread writes the overlay; lookups
+	// read it concurrently.
+	private static final class View {
+		private final CatalogSnapshot snapshot;
+		private final NameDictionary names = new NameDictionary();
+		private final Map<Integer, CompactProject> changed = new ConcurrentHashMap<>();
+		private final Set<Integer> deleted = ConcurrentHashMap.newKeySet();
+
+		private View(CatalogSnapshot snapshot) {
+			this.snapshot = snapshot;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package projects.snapshot;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+// What a finished snapshot file holds: the number of projects and distinct names, its size and the database time it
+// reflects
+public class SnapshotInfo {
+	private final Path file;
+	private final int projectCount;
+	private final int nameCount;
+	private final long bytes;
+	private final long takenAt;
+
+
+
+	SnapshotInfo(Path file, int projectCount, int nameCount, long bytes, long takenAt) {
+		this.file = file;
+		this.projectCount = projectCount;
+		this.nameCount = nameCount;
+		this.bytes = bytes;
+		this.takenAt = takenAt;
+	}
+
+
+
+	public Path getFile() {
+		return file;
+	}
+
+	public int getProjectCount() {
+		return projectCount;
+	}
+
+	public int getNameCount() {
+		return nameCount;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	// getTakenAt method to get the database time, in epoch milliseconds, up to which the snapshot has every change
+	public long getTakenAt() {
+		return takenAt;
+	}
+
+
+
+	@Override
+	public String toString() {
+		return file + ": " + projectCount + " projects, " + nameCount + " names, " + bytes + " bytes, taken at "
+				+ Instant.ofEpochMilli(takenAt);
+	}
+}
@@ -0,0 +1,273 @@
+package projects.snapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+import projects.entity.Category;
+import projects.entity.CompactProject;
+import projects.entity.Material;
+import projects.entity.NameDictionary;
+import projects.entity.Project;
+import projects.entity.Step;
+
+// Writes a snapshot file in the layout described in CatalogSnapshot. Projects are added in ascending ID order and
+// their records are encoded into one reusable buffer that goes to the file as it fills; only the ID and offset of each
+// record and the name dictionary are kept in memory until finish() appends them and fills in the header.
+//
+// The file is written to <file>.tmp and moved over the file only once complete, so a reader never maps a half-written
+// snapshot. A mapping of the old file stays valid after the move.
+public class SnapshotWriter implements AutoCloseable {
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final Path file;
+	private final Path temp;
+	private final long takenAt;
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final NameDictionary names = new NameDictionary();
+
+	private int[] projectIds = new int[1024];
+	private long[] offsets = new long[1024];
+	private int projectCount;
+	private long position = CatalogSnapshot.HEADER_SIZE;
+	private boolean finished;
+
+
+
+	// SnapshotWriter constructor; takenAt is the database time the snapshot reflects, from which reconciliation
+	// picks up the changes
+	public SnapshotWriter(Path file, long takenAt) {
+		this.file = file;
+		this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+		this.takenAt = takenAt;
+
+		try {
+			channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			channel.position(CatalogSnapshot.HEADER_SIZE);
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+
+
+	// write method to add the next project with its materials, steps and categories
+	public void write(Project project) {
+		int projectId = project.getProjectId();
+
+		if (projectCount > 0 && projectId <= projectIds[projectCount - 1]) {
+			throw new IllegalArgumentException("Projects must be written in ascending ID order; got " + projectId
+					+ " after " + projectIds[projectCount - 1]);
+		}
+
+		if (projectCount == projectIds.length) {
+			projectIds = Arrays.copyOf(projectIds, projectCount * 2);
+			offsets = Arrays.copyOf(offsets, projectCount * 2);
+		}
+
+		projectIds[projectCount] = projectId;
+		offsets[projectCount] = position;
+		projectCount++;
+
+		putInt(projectId);
+		putInt(toInt(project.getVersion()));
+		putLong(CompactProject.toHundredths(project.getEstimatedHours()));
+		putLong(CompactProject.toHundredths(project.getActualHours()));
+		putInt(toInt(project.getDifficulty()));
+		putString(project.getProjectName());
+		putString(project.getNotes());
+
+		putInt(project.getMaterials().size());
+
+		for (Material material : project.getMaterials()) {
+			putInt(toInt(material.getMaterialId()));
+			putInt(names.encode(material.getMaterialName()));
+			putInt(toInt(material.getNumRequired()));
+			putLong(CompactProject.toHundredths(material.getCost()));
+		}
+
+		putInt(project.getSteps().size());
+
+		for (Step step : project.getSteps()) {
+			putInt(toInt(step.getStepId()));
+			putInt(toInt(step.getStepOrder()));
+			putString(step.getStepText());
+		}
+
+		putInt(project.getCategories().size());
+
+		for (Category category : project.getCategories()) {
+			putInt(toInt(category.getCategoryId()));
+			putInt(names.encode(category.getCategoryName()));
+		}
+	}
+
+
+
+	// finish method to append the index and the names, write the header and move the file into place
+	public SnapshotInfo finish() {
+		try {
+			// The index of long offsets starts on an 8-byte boundary
+			while (position % 8 != 0) {
+				put((byte) 0);
+			}
+
+			long indexOffset = position;
+
+			for (int i = 0; i < projectCount; i++) {
+				putInt(projectIds[i]);
+			}
+
+			while (position % 8 != 0) {
+				put((byte) 0);
+			}
+
+			for (int i = 0; i < projectCount; i++) {
+				putLong(offsets[i]);
+			}
+
+			long namesOffset = position;
+			int nameCount = names.size();
+			long nameOffset = namesOffset + 4L * nameCount;
+
+			for (int code = 0; code < nameCount; code++) {
+				putInt((int) (nameOffset - namesOffset));
+				nameOffset += 4 + names.decode(code).getBytes(StandardCharsets.UTF_8).length;
+			}
+
+			for (int code = 0; code < nameCount; code++) {
+				putString(names.decode(code));
+			}
+
+			flush();
+
+			long fileLength = position;
+
+			if (fileLength > Integer.MAX_VALUE) {
+				throw new IllegalStateException("Snapshot of " + projectCount + " projects is " + fileLength
+						+ " bytes, more than the 2 GiB that can be mapped");
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(CatalogSnapshot.HEADER_SIZE);
+			header.putLong(CatalogSnapshot.MAGIC);
+			header.putInt(CatalogSnapshot.FORMAT_VERSION);
+			header.putInt(projectCount);
+			header.putLong(takenAt);
+			header.putInt(projectCount == 0 ? 0 : projectIds[projectCount - 1]);
+			header.putInt(nameCount);
+			header.putLong(indexOffset);
+			header.putLong(namesOffset);
+			header.putLong(fileLength);
+
+			CRC32 crc = new CRC32();
+			crc.update(header.array(), 0, CatalogSnapshot.HEADER_CRC_OFFSET);
+			header.putInt((int) crc.getValue());
+			header.flip();
+
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+
+			channel.force(true);
+			channel.close();
+			finished = true;
+
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return new SnapshotInfo(file, projectCount, nameCount, fileLength, takenAt);
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	} // END of finish
+
+
+
+	// close method to drop the temporary file of a snapshot that was not finished
+	@Override
+	public void close() {
+		if (finished) {
+			return;
+		}
+
+		try {
+			channel.close();
+			Files.deleteIfExists(temp);
+		} catch (IOException e) {
+			// The temporary file is overwritten by the next snapshot anyway
+		}
+	}
+
+
+
+	private void putString(String value) {
+		if (Objects.isNull(value)) {
+			putInt(-1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		putInt(bytes.length);
+
+		for (int from = 0; from < bytes.length;) {
+			ensure(1);
+			int length = Math.min(buffer.remaining(), bytes.length - from);
+			buffer.put(bytes, from, length);
+			from += length;
+			position += length;
+		}
+	}
+
+	private void putInt(int value) {
+		ensure(4);
+		buffer.putInt(value);
+		position += 4;
+	}
+
+	private void putLong(long value) {
+		ensure(8);
+		buffer.putLong(value);
+		position += 8;
+	}
+
+	private void put(byte value) {
+		ensure(1);
+		buffer.put(value);
+		position++;
+	}
+
+	private void ensure(int bytes) {
+		if (buffer.remaining() < bytes) {
+			flush();
+		}
+	}
+
+	private void flush() {
+		buffer.flip();
+
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		buffer.clear();
+	}
+
+	private static int toInt(Integer value) {
+		return Objects.isNull(value) ? CompactProject.NULL_INT : value;
+	}
+}
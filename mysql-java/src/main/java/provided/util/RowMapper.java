@@ -0,0 +1,314 @@
+/**
+ *
+ */
+package provided.util;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * This class maps result set rows to entity objects without per-row reflection. It is the engine
+ * behind {@link DaoBase#extract(ResultSet, Class)} and {@link DaoBase#rowMapper(ResultSet, Class)}.
+ *
+ * The first time an entity class is seen with a given result set shape (the ordered list of column
+ * labels), a plan is compiled:
+ * <ol>
+ * <li>A {@link Supplier} for the zero-argument constructor is spun with {@link LambdaMetafactory}.</li>
+ * <li>Each field name is converted to snake case and matched against the column labels once. Fields
+ * that have no matching column are simply left out of the plan, so a missing column costs nothing
+ * and never throws.</li>
+ * <li>Each matched field gets the column index, a typed reader (getInt, getBigDecimal, ...) and a
+ * {@link MethodHandle} field setter.</li>
+ * </ol>
+ *
+ * Plans are cached per class in a {@link ClassValue} and per shape inside that, so mapping a row is
+ * just a constructor call plus one typed read and one setter invocation per matched column.
+ *
+ * Like the original reflective implementation, fields are assigned directly (setters are not
+ * called) and null column values leave the field's initial value untouched.
+ *
+ * @param <T> The entity type produced by this mapper
+ */
+public final class RowMapper<T> {
+  private static final MethodType SETTER_TYPE =
+      MethodType.methodType(void.class, Object.class, Object.class);
+
+  private static final ClassValue<Template<?>> TEMPLATES = new ClassValue<>() {
+    @Override
+    protected Template<?> computeValue(Class<?> type) {
+      return new Template<>(type);
+    }
+  };
+
+  private final Supplier<T> constructor;
+  private final Column[] columns;
+
+  private RowMapper(Supplier<T> constructor, Column[] columns) {
+    this.constructor = constructor;
+    this.columns = columns;
+  }
+
+  /**
+   * Returns the compiled mapper for the given entity class and the shape of the given result set.
+   *
+   * @param <T> The entity type
+   * @param rs The result set. Only its metadata is read.
+   * @param classType The entity class. It must have a zero-argument constructor.
+   * @return The cached (or newly compiled) mapper
+   */
+  @SuppressWarnings("unchecked")
+  static <T> RowMapper<T> forResultSet(ResultSet rs, Class<T> classType) {
+    return ((Template<T>)TEMPLATES.get(classType)).mapperFor(rs);
+  }
+
+  /**
+   * Creates an entity from the current row of the result set. The caller must position the result
+   * set on the row.
+   *
+   * @param rs The result set
+   * @return A populated entity
+   */
+  public T map(ResultSet rs) {
+    T obj = constructor.get();
+
+    try {
+      for(Column column : columns) {
+        Object value = column.reader.read(rs, column.index);
+
+        if(value != null) {
+          column.setter.invokeExact((Object)obj, value);
+        }
+      }
+
+      return obj;
+    }
+    catch(Throwable e) {
+      throw new DaoBase.DaoException(
+          "Unable to create object of type " + obj.getClass().getName(), e);
+    }
+  }
+
+  /**
+   * Per-class state: the constructor supplier, the settable fields and the compiled mappers keyed by
+   * result set shape. The last result set seen is remembered so that {@link DaoBase#extract} can skip
+   * the shape lookup for consecutive rows of the same result set.
+   */
+  private static final class Template<T> {
+    private final Class<T> classType;
+    private final Supplier<T> constructor;
+    private final List<Field> fields = new ArrayList<>();
+    private final ConcurrentHashMap<String, RowMapper<T>> mappersByShape = new ConcurrentHashMap<>();
+    private volatile LastUse<T> lastUse;
+
+    private Template(Class<T> classType) {
+      this.classType = classType;
+      this.constructor = compileConstructor(classType);
+
+      for(Field field : classType.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+
+        if(!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)) {
+          fields.add(field);
+        }
+      }
+    }
+
+    private RowMapper<T> mapperFor(ResultSet rs) {
+      LastUse<T> last = lastUse;
+
+      if(last != null && last.resultSet.get() == rs) {
+        return last.mapper;
+      }
+
+      try {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columnCount = meta.getColumnCount();
+        String[] labels = new String[columnCount];
+
+        for(int index = 0; index < columnCount; index++) {
+          labels[index] = meta.getColumnLabel(index + 1).toLowerCase();
+        }
+
+        RowMapper<T> mapper =
+            mappersByShape.computeIfAbsent(String.join(",", labels), shape -> compile(labels));
+
+        lastUse = new LastUse<>(rs, mapper);
+        return mapper;
+      }
+      catch(SQLException e) {
+        throw new DaoBase.DaoException("Unable to read result set metadata", e);
+      }
+    }
+
+    private RowMapper<T> compile(String[] labels) {
+      List<Column> columns = new ArrayList<>();
+
+      for(Field field : fields) {
+        String colName = DaoBase.camelCaseToSnakeCase(field.getName()).toLowerCase();
+
+        for(int index = 0; index < labels.length; index++) {
+          if(labels[index].equals(colName)) {
+            columns.add(new Column(index + 1, readerFor(field.getType()), setterFor(field)));
+            break;
+          }
+        }
+      }
+
+      return new RowMapper<>(constructor, columns.toArray(new Column[0]));
+    }
+
+    private MethodHandle setterFor(Field field) {
+      try {
+        MethodHandles.Lookup lookup =
+            MethodHandles.privateLookupIn(classType, MethodHandles.lookup());
+        return lookup.unreflectSetter(field).asType(SETTER_TYPE);
+      }
+      catch(IllegalAccessException e) {
+        throw new DaoBase.DaoException("Unable to access field " + field, e);
+      }
+    }
+  }
+
+  /**
+   * Spins a {@link Supplier} that calls the zero-argument constructor directly. Falls back to a plain
+   * method handle when the constructor is not accessible to {@link LambdaMetafactory}.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> Supplier<T> compileConstructor(Class<T> classType) {
+    MethodHandle handle;
+
+    try {
+      MethodHandles.Lookup lookup =
+          MethodHandles.privateLookupIn(classType, MethodHandles.lookup());
+      handle = lookup.findConstructor(classType, MethodType.methodType(void.class));
+
+      return (Supplier<T>)LambdaMetafactory
+          .metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+              MethodType.methodType(Object.class), handle, MethodType.methodType(classType))
+          .getTarget().invokeExact();
+    }
+    catch(NoSuchMethodException | IllegalAccessException e) {
+      throw new DaoBase.DaoException(
+          "Class " + classType.getName() + " needs a zero-argument constructor", e);
+    }
+    catch(Throwable e) {
+      MethodHandle fallback = findConstructorHandle(classType);
+
+      return () -> {
+        try {
+          return (T)fallback.invoke();
+        }
+        catch(Throwable t) {
+          throw new DaoBase.DaoException("Unable to create object of type " + classType.getName(), t);
+        }
+      };
+    }
+  }
+
+  private static MethodHandle findConstructorHandle(Class<?> classType) {
+    try {
+      return MethodHandles.privateLookupIn(classType, MethodHandles.lookup())
+          .findConstructor(classType, MethodType.methodType(void.class));
+    }
+    catch(ReflectiveOperationException e) {
+      throw new DaoBase.DaoException(
+          "Class " + classType.getName() + " needs a zero-argument constructor", e);
+    }
+  }
+
+  /**
+   * Picks a typed column reader for the field type so that the common types avoid
+   * {@link ResultSet#getObject(int)} and the boxing and conversion that goes with it.
+   */
+  private static ColumnReader readerFor(Class<?> fieldType) {
+    if(Integer.class.equals(fieldType)) {
+      return (rs, index) -> {
+        int value = rs.getInt(index);
+        return rs.wasNull() ? null : value;
+      };
+    }
+
+    if(Long.class.equals(fieldType)) {
+      return (rs, index) -> {
+        long value = rs.getLong(index);
+        return rs.wasNull() ? null : value;
+      };
+    }
+
+    if(Double.class.equals(fieldType)) {
+      return (rs, index) -> {
+        double value = rs.getDouble(index);
+        return rs.wasNull() ? null : value;
+      };
+    }
+
+    if(String.class.equals(fieldType)) {
+      return ResultSet::getString;
+    }
+
+    if(BigDecimal.class.equals(fieldType)) {
+      return ResultSet::getBigDecimal;
+    }
+
+    if(LocalTime.class.equals(fieldType)) {
+      return (rs, index) -> {
+        Time value = rs.getTime(index);
+        return Objects.isNull(value) ? null : value.toLocalTime();
+      };
+    }
+
+    if(LocalDateTime.class.equals(fieldType)) {
+      return (rs, index) -> {
+        Timestamp value = rs.getTimestamp(index);
+        return Objects.isNull(value) ? null : value.toLocalDateTime();
+      };
+    }
+
+    return ResultSet::getObject;
+  }
+
+  @FunctionalInterface
+  private interface ColumnReader {
+    Object read(ResultSet rs, int index) throws SQLException;
+  }
+
+  private static final class Column {
+    private final int index;
+    private final ColumnReader reader;
+    private final MethodHandle setter;
+
+    private Column(int index, ColumnReader reader, MethodHandle setter) {
+      this.index = index;
+      this.reader = reader;
+      this.setter = setter;
+    }
+  }
+
+  private static final class LastUse<T> {
+    private final WeakReference<ResultSet> resultSet;
+    private final RowMapper<T> mapper;
+
+    private LastUse(ResultSet rs, RowMapper<T> mapper) {
+      this.resultSet = new WeakReference<>(rs);
+      this.mapper = mapper;
+    }
+  }
+}
@@ -1,4 +1,4 @@
-DROP TABLE IF EXISTS project_category, category, step, material, project;
+DROP TABLE IF EXISTS id_sequence, project_category, category, step, material, project;
 
 CREATE TABLE project(
 	project_id INT AUTO_INCREMENT NOT NULL,
@@ -7,7 +7,11 @@ CREATE TABLE project(
 	actual_hours DECIMAL(7, 2),
 	difficulty INT,
 	notes TEXT,
-	PRIMARY KEY (project_id)
+	version INT NOT NULL DEFAULT 0,
+	updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+	PRIMARY KEY (project_id),
+	KEY project_name_id (project_name, project_id),
+	KEY project_updated_at (updated_at)
 );
 
 
@@ -28,6 +32,7 @@ CREATE TABLE step(
 	step_text TEXT NOT NULL,
 	step_order INT NOT NULL,
 	PRIMARY KEY (step_id),
+	KEY project_step_order (project_id, step_order),
 	FOREIGN KEY (project_id) REFERENCES project (project_id) ON DELETE CASCADE
 );
 	
@@ -45,4 +50,11 @@ CREATE TABLE project_category(
 	FOREIGN KEY (project_id) REFERENCES project(project_id) ON DELETE CASCADE,
 	FOREIGN KEY (category_id) REFERENCES category(category_id) ON DELETE CASCADE,
 	UNIQUE KEY (project_id, category_id) 
-);
\ No newline at end of file
+);
+
+
+CREATE TABLE id_sequence(
+	sequence_name VARCHAR(64) NOT NULL,
+	next_id INT NOT NULL,
+	PRIMARY KEY (sequence_name)
+);
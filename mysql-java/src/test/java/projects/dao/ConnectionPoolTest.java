@@ -0,0 +1,152 @@
+package projects.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import projects.exception.DbException;
+
+// ConnectionPool against a fresh in-memory H2 database per test
+class ConnectionPoolTest {
+	private static final AtomicInteger DATABASES = new AtomicInteger();
+
+	private ConnectionPool pool;
+
+
+
+	@AfterEach
+	void closePool() {
+		if (pool != null) {
+			pool.close();
+		}
+	}
+
+
+
+	@Test
+	void returnedConnectionIsReused() throws SQLException {
+		pool = new ConnectionPool(config(1, 2));
+
+		try (Connection conn = pool.getConnection()) {
+			assertEquals(1, pool.getActiveCount());
+			assertEquals(0, pool.getIdleCount());
+		}
+
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(1, pool.getIdleCount());
+
+		try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+			stmt.execute("SELECT 1");
+		}
+
+		assertEquals(2, pool.getBorrowCount());
+		assertEquals(1, pool.getCreatedCount());
+		assertEquals(1, pool.getTotalCount());
+	}
+
+
+
+	@Test
+	void borrowTimesOutWhenEveryConnectionIsInUse() throws SQLException {
+		ConnectionPoolConfig config = config(0, 1);
+		config.setConnectionTimeoutMillis(100);
+		pool = new ConnectionPool(config);
+
+		try (Connection held = pool.getConnection()) {
+			long start = System.nanoTime();
+
+			assertThrows(DbException.class, pool::getConnection);
+			assertTrue(System.nanoTime() - start >= 90_000_000L, "gave up before the connection timeout");
+			assertEquals(1, pool.getActiveCount());
+		}
+
+		// The failed borrow must not have used up the permit
+		try (Connection conn = pool.getConnection()) {
+			assertEquals(1, pool.getActiveCount());
+		}
+	}
+
+
+
+	@Test
+	void releaseResetsSessionState() throws SQLException {
+		pool = new ConnectionPool(config(0, 1));
+
+		try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+			stmt.execute("CREATE TABLE item (item_id INT PRIMARY KEY)");
+		}
+
+		try (Connection conn = pool.getConnection()) {
+			conn.setAutoCommit(false);
+
+			try (Statement stmt = conn.createStatement()) {
+				stmt.execute("INSERT INTO item VALUES (1)");
+			}
+
+			conn.setReadOnly(true);
+		}
+
+		try (Connection conn = pool.getConnection();
+				Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM item")) {
+			assertTrue(conn.getAutoCommit());
+			assertFalse(conn.isReadOnly());
+
+			rs.next();
+			assertEquals(0, rs.getInt(1), "uncommitted insert survived the release");
+		}
+
+		assertEquals(1, pool.getCreatedCount());
+	}
+
+
+
+	@Test
+	void housekeepingEvictsIdleConnectionsDownToMinSize() throws Exception {
+		ConnectionPoolConfig config = config(1, 3);
+		config.setIdleTimeoutMillis(50);
+		config.setHousekeepingIntervalMillis(20);
+		pool = new ConnectionPool(config);
+
+		Connection first = pool.getConnection();
+		Connection second = pool.getConnection();
+		Connection third = pool.getConnection();
+
+		assertEquals(3, pool.getTotalCount());
+
+		first.close();
+		second.close();
+		third.close();
+
+		long deadline = System.currentTimeMillis() + 5_000;
+
+		while (pool.getTotalCount() > 1 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+
+		assertEquals(1, pool.getTotalCount());
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(2, pool.getEvictedCount());
+	}
+
+
+
+	// config method for a pool on its own in-memory database, so tests don't see each other's tables
+	private static ConnectionPoolConfig config(int minSize, int maxSize) {
+		ConnectionPoolConfig config = new ConnectionPoolConfig();
+		config.setUrl("jdbc:h2:mem:pool" + DATABASES.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+		config.setMinSize(minSize);
+		config.setMaxSize(maxSize);
+		return config;
+	}
+}
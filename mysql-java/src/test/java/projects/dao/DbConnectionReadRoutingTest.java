@@ -0,0 +1,150 @@
+package projects.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+// Read routing of DbConnection between two in-memory H2 databases standing in for the primary and a replica. Each
+// holds a one-row table naming it, so a test can tell where a connection goes.
+class DbConnectionReadRoutingTest {
+	private static final String PRIMARY_URL = "jdbc:h2:mem:routing_primary;MODE=MySQL;DB_CLOSE_DELAY=-1";
+	private static final String REPLICA_URL = "jdbc:h2:mem:routing_replica;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+	// Shorter than the 1000 ms default so the tests don't wait long for the window to close
+	private static final long PRIMARY_AFTER_WRITE_MILLIS = 200;
+
+	private static Connection primary;
+	private static Connection replica;
+
+
+
+	@BeforeAll
+	static void setUp() throws SQLException {
+		// Must be set before DbConnection is loaded, which reads the window once
+		System.setProperty("projects.db.read.primaryAfterWriteMillis", String.valueOf(PRIMARY_AFTER_WRITE_MILLIS));
+		System.setProperty("projects.db.url", PRIMARY_URL);
+		System.setProperty("projects.db.read.url", REPLICA_URL);
+
+		// Kept open for the whole class so the in-memory databases aren't dropped between pools
+		primary = createDatabase(PRIMARY_URL, "primary");
+		replica = createDatabase(REPLICA_URL, "replica");
+	}
+
+	@AfterAll
+	static void tearDown() throws SQLException {
+		DbConnection.shutdown();
+		System.clearProperty("projects.db.read.primaryAfterWriteMillis");
+		System.clearProperty("projects.db.url");
+		System.clearProperty("projects.db.read.url");
+		primary.close();
+		replica.close();
+	}
+
+
+
+	@Test
+	void readsGoToTheReadDatabase() throws Exception {
+		awaitWriteWindow();
+
+		assertEquals("replica", readFrom(DbConnection.getReadConnection()));
+		assertEquals("primary", readFrom(DbConnection.getConnection()));
+	}
+
+
+
+	@Test
+	void readsGoToThePrimaryRightAfterAWrite() throws Exception {
+		DbConnection.getConnection().close();
+
+		assertEquals("primary", readFrom(DbConnection.getReadConnection()));
+
+		awaitWriteWindow();
+
+		assertEquals("replica", readFrom(DbConnection.getReadConnection()));
+	}
+
+
+
+	@Test
+	void aWriteOnAnotherThreadLeavesReadsOnTheReadDatabase() throws Exception {
+		awaitWriteWindow();
+
+		Thread writer = new Thread(() -> {
+			try {
+				DbConnection.getConnection().close();
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		writer.start();
+		writer.join();
+
+		assertEquals("replica", readFrom(DbConnection.getReadConnection()));
+	}
+
+
+
+	@Test
+	void readsGoToThePrimaryWithoutAReadDatabase() throws Exception {
+		awaitWriteWindow();
+		System.clearProperty("projects.db.read.url");
+
+		try {
+			assertEquals("primary", readFrom(DbConnection.getReadConnection()));
+		} finally {
+			System.setProperty("projects.db.read.url", REPLICA_URL);
+		}
+	}
+
+
+
+	@Test
+	void readsInReadFromPrimaryGoToThePrimary() throws Exception {
+		awaitWriteWindow();
+
+		assertEquals("primary", DbConnection.readFromPrimary(() -> {
+			try {
+				return readFrom(DbConnection.getReadConnection());
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		}));
+		assertEquals("replica", readFrom(DbConnection.getReadConnection()));
+	}
+
+
+
+	private static Connection createDatabase(String url, String name) throws SQLException {
+		Connection conn = DriverManager.getConnection(url);
+
+		try (Statement stmt = conn.createStatement()) {
+			stmt.execute("CREATE TABLE IF NOT EXISTS database_name (name VARCHAR(16))");
+			stmt.execute("DELETE FROM database_name");
+			stmt.execute("INSERT INTO database_name VALUES ('" + name + "')");
+		}
+
+		return conn;
+	}
+
+	// readFrom method to name the database a connection is on, and give the connection back
+	private static String readFrom(Connection conn) throws SQLException {
+		try (conn; Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT name FROM database_name")) {
+			rs.next();
+			return rs.getString(1);
+		}
+	}
+
+	// awaitWriteWindow method to wait until this thread's last write connection is older than the read-after-write
+	// window
+	private static void awaitWriteWindow() throws InterruptedException {
+		Thread.sleep(PRIMARY_AFTER_WRITE_MILLIS + 50);
+	}
+}
@@ -0,0 +1,272 @@
+package projects.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import projects.entity.Step;
+
+// StepDao against an in-memory H2 database. Each test works on a project of its own.
+class StepDaoTest {
+	private static final String URL = "jdbc:h2:mem:steps;MODE=MySQL;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE";
+
+	private static Connection keepAlive;
+
+	private final BlockingQueue<Integer> rebalanced = new LinkedBlockingQueue<>();
+
+	private StepDao stepDao;
+	private int projectId;
+
+
+
+	@BeforeAll
+	static void setUp() throws SQLException, IOException {
+		System.setProperty("projects.db.url", URL);
+
+		// Kept open for the whole class so the in-memory database isn't dropped between pools
+		keepAlive = DriverManager.getConnection(URL);
+
+		try (InputStream schema = StepDaoTest.class.getResourceAsStream("/projects-schema.sql");
+				Statement stmt = keepAlive.createStatement()) {
+			for (String sql : new String(schema.readAllBytes(), StandardCharsets.UTF_8).split(";")) {
+				if (!sql.isBlank()) {
+					stmt.execute(sql);
+				}
+			}
+		}
+	}
+
+	@AfterAll
+	static void tearDown() throws SQLException {
+		DbConnection.shutdown();
+		System.clearProperty("projects.db.url");
+		keepAlive.close();
+	}
+
+	@BeforeEach
+	void createProject() throws SQLException {
+		stepDao = new StepDao(null);
+		stepDao.setRebalanceListener(rebalanced::add);
+
+		try (Statement stmt = keepAlive.createStatement()) {
+			stmt.executeUpdate("INSERT INTO project (project_name) VALUES ('Steps')", Statement.RETURN_GENERATED_KEYS);
+
+			try (ResultSet rs = stmt.getGeneratedKeys()) {
+				rs.next();
+				projectId = rs.getInt(1);
+			}
+		}
+	}
+
+
+
+	@Test
+	void insertTakesTheMidpointOfTheGap() throws SQLException {
+		Step first = stepDao.appendStep(projectId, "first");
+		Step last = stepDao.appendStep(projectId, "last");
+
+		Step middle = stepDao.insertStepAfter(projectId, first.getStepId(), "middle");
+		Step front = stepDao.insertStepAfter(projectId, null, "front");
+
+		assertEquals(StepDao.STEP_GAP, first.getStepOrder());
+		assertEquals(2 * StepDao.STEP_GAP, last.getStepOrder());
+		assertEquals(StepDao.STEP_GAP * 3 / 2, middle.getStepOrder());
+		assertEquals(StepDao.STEP_GAP / 2, front.getStepOrder());
+		assertEquals(List.of("front", "first", "middle", "last"), stepTexts());
+	}
+
+
+
+	@Test
+	void insertIntoAnExhaustedGapRebalancesInline() throws SQLException {
+		insertLegacySteps(1, 2);
+		List<Integer> legacy = stepIds();
+
+		Step inserted = stepDao.insertStepAfter(projectId, legacy.get(0), "inserted");
+
+		Map<String, Integer> orders = stepOrders();
+
+		assertEquals(List.of("legacy 1", "inserted", "legacy 2"), new ArrayList<>(orders.keySet()));
+		assertEquals(StepDao.STEP_GAP, orders.get("legacy 1"));
+		assertEquals(2 * StepDao.STEP_GAP, orders.get("legacy 2"));
+		assertEquals(orders.get("inserted"), inserted.getStepOrder());
+	}
+
+
+
+	@Test
+	void narrowGapIsRebalancedInTheBackground() throws Exception {
+		Step first = stepDao.appendStep(projectId, "first");
+		stepDao.appendStep(projectId, "last");
+
+		// Each insert right after the first step halves the gap, until it drops below MIN_GAP
+		for (int i = 0; i < 8 && rebalanced.isEmpty(); i++) {
+			stepDao.insertStepAfter(projectId, first.getStepId(), "inserted " + i);
+		}
+
+		assertEquals(projectId, rebalanced.poll(5, TimeUnit.SECONDS), "no background rebalance was reported");
+
+		// Reported only after commit, so the new ranks are visible to another connection
+		List<Integer> ranks = ranks();
+
+		for (int i = 0; i < ranks.size(); i++) {
+			assertEquals((i + 1) * StepDao.STEP_GAP, ranks.get(i));
+		}
+
+		assertEquals("first", stepTexts().get(0));
+		assertEquals("last", stepTexts().get(ranks.size() - 1));
+	}
+
+
+
+	@Test
+	void moveRewritesOnlyTheMovedStep() throws SQLException {
+		Step a = stepDao.appendStep(projectId, "a");
+		Step b = stepDao.appendStep(projectId, "b");
+		Step c = stepDao.appendStep(projectId, "c");
+
+		assertTrue(stepDao.moveStep(c.getStepId(), a.getStepId()));
+
+		Map<String, Integer> orders = stepOrders();
+
+		assertEquals(List.of("a", "c", "b"), new ArrayList<>(orders.keySet()));
+		assertEquals(a.getStepOrder(), orders.get("a"));
+		assertEquals(b.getStepOrder(), orders.get("b"));
+
+		assertTrue(stepDao.moveStep(b.getStepId(), null));
+		assertEquals(List.of("b", "a", "c"), stepTexts());
+
+		assertFalse(stepDao.moveStep(Integer.MAX_VALUE, null));
+	}
+
+
+
+	@Test
+	void deleteLeavesTheOtherRanksAlone() throws SQLException {
+		Step a = stepDao.appendStep(projectId, "a");
+		Step b = stepDao.appendStep(projectId, "b");
+		Step c = stepDao.appendStep(projectId, "c");
+
+		assertTrue(stepDao.deleteStep(b.getStepId()));
+		assertFalse(stepDao.deleteStep(b.getStepId()));
+
+		assertEquals(Map.of("a", a.getStepOrder(), "c", c.getStepOrder()), stepOrders());
+
+		Step appended = stepDao.appendStep(projectId, "d");
+
+		assertEquals(c.getStepOrder() + StepDao.STEP_GAP, appended.getStepOrder());
+	}
+
+
+
+	@Test
+	void insertAfterADuplicateLegacyRankLandsDirectlyAfterIt() throws SQLException {
+		// The old COUNT(*) numbering could give two steps the same order under concurrent appends; a deleted step left
+		// room after them, so the rank after the first 2 is not taken by its duplicate
+		insertLegacySteps(1, 2, 2, 4);
+		List<Integer> legacy = stepIds();
+
+		stepDao.insertStepAfter(projectId, legacy.get(1), "after the first 2");
+
+		assertEquals(List.of("legacy 1", "legacy 2", "after the first 2", "legacy 2", "legacy 4"), stepTexts());
+		assertEquals(5, ranks().stream().distinct().count(), "the duplicate ranks were not renumbered");
+
+		assertTrue(stepDao.moveStep(legacy.get(0), legacy.get(2)));
+		assertEquals(List.of("legacy 2", "after the first 2", "legacy 2", "legacy 1", "legacy 4"), stepTexts());
+	}
+
+
+
+	// insertLegacySteps method to write steps with the given orders directly, as the old numbering did
+	private void insertLegacySteps(int... orders) throws SQLException {
+		try (PreparedStatement stmt = keepAlive
+				.prepareStatement("INSERT INTO step (project_id, step_text, step_order) VALUES (?, ?, ?)")) {
+			for (int order : orders) {
+				stmt.setInt(1, projectId);
+				stmt.setString(2, "legacy " + order);
+				stmt.setInt(3, order);
+				stmt.executeUpdate();
+			}
+		}
+	}
+
+	private List<Integer> stepIds() throws SQLException {
+		List<Integer> stepIds = new ArrayList<>();
+
+		try (ResultSet rs = selectSteps()) {
+			while (rs.next()) {
+				stepIds.add(rs.getInt("step_id"));
+			}
+		}
+
+		return stepIds;
+	}
+
+	private List<String> stepTexts() throws SQLException {
+		List<String> texts = new ArrayList<>();
+
+		try (ResultSet rs = selectSteps()) {
+			while (rs.next()) {
+				texts.add(rs.getString("step_text"));
+			}
+		}
+
+		return texts;
+	}
+
+	private List<Integer> ranks() throws SQLException {
+		List<Integer> ranks = new ArrayList<>();
+
+		try (ResultSet rs = selectSteps()) {
+			while (rs.next()) {
+				ranks.add(rs.getInt("step_order"));
+			}
+		}
+
+		return ranks;
+	}
+
+	// stepOrders method to map each step's text to its rank, in step order
+	private Map<String, Integer> stepOrders() throws SQLException {
+		Map<String, Integer> orders = new LinkedHashMap<>();
+
+		try (ResultSet rs = selectSteps()) {
+			while (rs.next()) {
+				orders.put(rs.getString("step_text"), rs.getInt("step_order"));
+			}
+		}
+
+		return orders;
+	}
+
+	// selectSteps method to read the project's steps in the order the DAOs read them
+	private ResultSet selectSteps() throws SQLException {
+		PreparedStatement stmt = keepAlive
+				.prepareStatement("SELECT * FROM step WHERE project_id = ? ORDER BY step_order, step_id");
+		stmt.closeOnCompletion();
+		stmt.setInt(1, projectId);
+		return stmt.executeQuery();
+	}
+}
@@ -0,0 +1,175 @@
+package projects.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import projects.dao.DbConnection;
+import projects.dao.ProjectPage;
+import projects.entity.Project;
+
+// ProjectServiceAsync over a ProjectService on an in-memory H2 database, with the platform executor so the queue limit
+// can be reached
+class ProjectServiceAsyncTest {
+	private static final String URL = "jdbc:h2:mem:async;MODE=MySQL;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE";
+
+	private static Connection keepAlive;
+
+	private ProjectServiceAsync async;
+
+
+
+	@BeforeAll
+	static void setUp() throws SQLException, IOException {
+		System.setProperty("projects.db.url", URL);
+		System.setProperty("projects.async.executor", "platform");
+		System.setProperty("projects.async.threads", "1");
+		System.setProperty("projects.async.queueSize", "1");
+
+		// Kept open for the whole class so the in-memory database isn't dropped between pools
+		keepAlive = DriverManager.getConnection(URL);
+
+		try (InputStream schema = ProjectServiceAsyncTest.class.getResourceAsStream("/projects-schema.sql");
+				Statement stmt = keepAlive.createStatement()) {
+			for (String sql : new String(schema.readAllBytes(), StandardCharsets.UTF_8).split(";")) {
+				if (!sql.isBlank()) {
+					stmt.execute(sql);
+				}
+			}
+		}
+	}
+
+	@AfterAll
+	static void tearDown() throws SQLException {
+		DbConnection.shutdown();
+		System.clearProperty("projects.db.url");
+		System.clearProperty("projects.async.executor");
+		System.clearProperty("projects.async.threads");
+		System.clearProperty("projects.async.queueSize");
+		keepAlive.close();
+	}
+
+	@AfterEach
+	void closeAsync() {
+		if (async != null) {
+			async.close();
+		}
+	}
+
+
+
+	@Test
+	void callsCompleteWithTheServiceResults() {
+		async = new ProjectServiceAsync();
+
+		Project project = new Project();
+		project.setProjectName("Async deck");
+
+		Integer projectId = async.addProject(project).join().getProjectId();
+
+		assertEquals("Async deck", async.fetchProjectById(projectId).join().getProjectName());
+
+		async.deleteProject(projectId).join();
+
+		CompletionException failure = assertThrows(CompletionException.class, () -> async.fetchProjectById(projectId).join());
+		assertInstanceOf(NoSuchElementException.class, failure.getCause());
+	}
+
+
+
+	@Test
+	void callIsRejectedWithoutRunningOnTheCallerWhenTheQueueIsFull() {
+		async = new ProjectServiceAsync();
+		ExecutorService executor = async.getExecutor();
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Void> queued;
+
+		try {
+			// Occupy the only thread, then the only queue slot
+			executor.execute(() -> awaitQuietly(release));
+			queued = CompletableFuture.runAsync(() -> { }, executor);
+
+			CompletableFuture<ProjectPage> rejected = async.fetchProjectPage(null, 10);
+
+			// Failed on return: neither waited for room nor ran on this thread
+			assertTrue(rejected.isCompletedExceptionally(), "the call waited or ran instead of being rejected");
+
+			CompletionException failure = assertThrows(CompletionException.class, rejected::join);
+			assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+		} finally {
+			release.countDown();
+		}
+
+		// Once the backlog drains, calls are taken again
+		queued.join();
+		assertNotNull(async.fetchProjectPage(null, 10).orTimeout(5, TimeUnit.SECONDS).join());
+	}
+
+
+
+	@Test
+	void closeFinishesSubmittedCallsAndRejectsNewOnes() {
+		async = new ProjectServiceAsync();
+		CountDownLatch release = new CountDownLatch(1);
+
+		async.getExecutor().execute(() -> awaitQuietly(release));
+		CompletableFuture<?> submitted = async.fetchAllProjects();
+
+		// close waits for the submitted call, so let it go once close has started
+		new Thread(() -> {
+			sleepQuietly(100);
+			release.countDown();
+		}).start();
+
+		async.close();
+
+		assertTrue(submitted.isDone() && !submitted.isCompletedExceptionally(), "a call submitted before close was lost");
+
+		CompletableFuture<?> afterClose = async.fetchAllProjects();
+
+		assertTrue(afterClose.isCompletedExceptionally(), "a call after close was not rejected");
+
+		CompletionException failure = assertThrows(CompletionException.class, afterClose::join);
+		assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+	}
+
+
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void sleepQuietly(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}